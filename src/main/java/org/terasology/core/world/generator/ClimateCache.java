@@ -0,0 +1,284 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator;
+
+import com.google.common.io.BaseEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Stores the results of the {@link ClimateSimulator} on disk, so they are only computed once per height map.
+ * <p>
+ * Results are keyed by a SHA-256 hash of the height map and all simulation parameters. Each entry is a single
+ * binary file with a small header followed by the climate and humidity grids, which is read straight into the grids.
+ * Unreadable or outdated entries are ignored and recomputed.
+ * <p>
+ * Reading an entry marks it as used. Once the entries exceed the size limit, the least recently used ones are deleted.
+ */
+public class ClimateCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClimateCache.class);
+
+    private static final int MAGIC = 0x434c494d; // "CLIM"
+
+    /**
+     * Increase whenever the simulation changes its results, so that old entries are no longer used.
+     */
+    private static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private static final String EXTENSION = ".climate";
+
+    /**
+     * Room for a few dozen simulations of the largest climate grids
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory the directory to keep the cache files in, created if necessary
+     */
+    public ClimateCache(Path directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param directory the directory to keep the cache files in, created if necessary
+     * @param maxBytes the total size of the cache files, beyond which the least recently used ones are deleted
+     */
+    public ClimateCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reads the results for the given height map from the cache, or runs the simulation and stores its results.
+     *
+     * @param heightmap the height map, with sea level at 1
+     * @return the exact simulation results for the height map
+     */
+    public ClimateSimulator getOrCompute(FloatGrid heightmap) {
+        return getOrCompute(heightmap, 0);
+    }
+
+    /**
+     * Reads the results for the given height map from the cache, or runs the simulation and stores its results.
+     *
+     * @param heightmap the height map, with sea level at 1
+     * @param tolerance 0 for the exact simulation, otherwise the tolerance of the multiresolution simulation
+     * @return the simulation results for the height map
+     */
+    public ClimateSimulator getOrCompute(FloatGrid heightmap, float tolerance) {
+        return getOrCompute(heightmap, tolerance, progress -> { });
+    }
+
+    /**
+     * Reads the results for the given height map from the cache, or runs the simulation and stores its results.
+     *
+     * @param heightmap the height map, with sea level at 1
+     * @param tolerance 0 for the exact simulation, otherwise the tolerance of the multiresolution simulation
+     * @param progress called with the completed fraction of the simulation in [0..1], from any thread
+     * @return the simulation results for the height map
+     */
+    public ClimateSimulator getOrCompute(FloatGrid heightmap, float tolerance, DoubleConsumer progress) {
+        Path file = directory.resolve(key(heightmap, tolerance) + EXTENSION);
+
+        if (Files.isRegularFile(file)) {
+            try {
+                ClimateSimulator cached = read(file, heightmap);
+                touch(file);
+                progress.accept(1);
+                return cached;
+            } catch (IOException e) {
+                logger.warn("Could not read cached climate {}, computing it again", file, e);
+            }
+        }
+
+        ClimateSimulator simulator = new ClimateSimulator(heightmap, ForkJoinPool.commonPool(), tolerance, progress);
+        try {
+            write(file, simulator);
+            evict(file);
+        } catch (IOException e) {
+            logger.warn("Could not cache climate in {}", file, e);
+        }
+        return simulator;
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits into its size limit again.
+     *
+     * @param keep the entry that was just written, which is kept even if it alone exceeds the limit
+     */
+    private void evict(Path keep) throws IOException {
+        Map<Path, BasicFileAttributes> entries = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path entry : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                    entries.put(entry, attributes);
+                    total += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // deleted by another instance in the meantime
+                }
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        List<Path> oldestFirst = new ArrayList<>(entries.keySet());
+        oldestFirst.sort(Comparator.comparing(entry -> entries.get(entry).lastModifiedTime()));
+        for (Path entry : oldestFirst) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (!entry.equals(keep) && Files.deleteIfExists(entry)) {
+                logger.debug("Evicted cached climate {}", entry);
+                total -= entries.get(entry).size();
+            }
+        }
+    }
+
+    /**
+     * Marks an entry as used, so that it is evicted after the entries that were used before it.
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Could not mark cached climate {} as used", file, e);
+        }
+    }
+
+    private static ClimateSimulator read(Path file, FloatGrid heightmap) throws IOException {
+        int width = heightmap.getWidth();
+        int height = heightmap.getHeight();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long gridBytes = (long) width * height * Float.BYTES;
+            if (channel.size() != HEADER_BYTES + 2 * gridBytes) {
+                throw new IOException("Unexpected size of " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, file);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != width || header.getInt() != height) {
+                throw new IOException("Unexpected header in " + file);
+            }
+
+            // the simulator works on heap arrays, so the values are read into them directly instead of mapping the file
+            FloatGrid climate = new FloatGrid(width, height);
+            readGrid(channel, climate, file);
+            FloatGrid humidity = new FloatGrid(width, height);
+            readGrid(channel, humidity, file);
+            return new ClimateSimulator(heightmap, climate, humidity);
+        }
+    }
+
+    private void write(Path file, ClimateSimulator simulator) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "climate", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                FloatGrid climate = simulator.getClimate();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(climate.getWidth()).putInt(climate.getHeight()).flip();
+                writeFully(channel, header);
+                writeGrid(channel, climate);
+                writeGrid(channel, simulator.getHumidity());
+            }
+            // readers never see a partially written file
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeGrid(FileChannel channel, FloatGrid grid) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(grid.getWidth() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        float[] data = grid.getData();
+        for (int y = 0; y < grid.getHeight(); y++) {
+            row.clear();
+            row.asFloatBuffer().put(data, y * grid.getWidth(), grid.getWidth());
+            writeFully(channel, row);
+        }
+    }
+
+    private static void readGrid(FileChannel channel, FloatGrid grid, Path file) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(grid.getWidth() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        float[] data = grid.getData();
+        for (int y = 0; y < grid.getHeight(); y++) {
+            row.clear();
+            readFully(channel, row, file);
+            row.flip();
+            row.asFloatBuffer().get(data, y * grid.getWidth(), grid.getWidth());
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, Path file) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String key(FloatGrid heightmap, float tolerance) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        ByteBuffer parameters = ByteBuffer.allocate(8 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        parameters.putInt(VERSION)
+                .putInt(heightmap.getWidth())
+                .putInt(heightmap.getHeight())
+                .putFloat(ClimateSimulator.CLIMATE_HEIGHT_INFLUENCE)
+                .putFloat(ClimateSimulator.HUMIDITY_HEIGHT_INFLUENCE)
+                .putInt(ClimateSimulator.OVERLAY_STRENGTH)
+                .putInt(ClimateSimulator.OVERLAY_LOCATION_INFLUENCE)
+                .putFloat(tolerance);
+        digest.update(parameters.array());
+
+        ByteBuffer row = ByteBuffer.allocate(heightmap.getWidth() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        float[] data = heightmap.getData();
+        for (int y = 0; y < heightmap.getHeight(); y++) {
+            row.clear();
+            row.asFloatBuffer().put(data, y * heightmap.getWidth(), heightmap.getWidth());
+            digest.update(row.array());
+        }
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+}
@@ -16,56 +16,180 @@
 
 package org.terasology.core.world.generator;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+import java.util.stream.IntStream;
+
 /**
  * Climate simulation based on weighted distances
  *
  */
 public class ClimateSimulator {
-    private float[][] climate;
-    private float[][] humidity;
+    private static final Logger logger = LoggerFactory.getLogger(ClimateSimulator.class);
+
+    static final float CLIMATE_HEIGHT_INFLUENCE = 10;
+    static final float HUMIDITY_HEIGHT_INFLUENCE = 5;
+    static final int OVERLAY_STRENGTH = 0;
+    static final int OVERLAY_LOCATION_INFLUENCE = 0;
+
+    private FloatGrid climate;
+    private FloatGrid humidity;
     private ClimateSimulatorData climateDistanceData;
+    private final ForkJoinPool pool;
+
+    /**
+     * The distance fields that are updated by {@link #update(int, int, int, int)}, created by its first call
+     */
+    private DistanceField poles;
+    private DistanceField equator;
+    private DistanceField water;
+
+    /**
+     * Runs the exact simulation on the common fork/join pool.
+     *
+     * @param hm the height map, with sea level at 1
+     */
+    public ClimateSimulator(FloatGrid hm) {
+        this(hm, ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * Computes the distance fields concurrently on the given pool, with the passes over each field split into rows.
+     *
+     * @param hm the height map, with sea level at 1
+     * @param pool the pool to run the calculations on
+     * @param tolerance 0 for the exact calculation, otherwise the tolerance of the faster multiresolution
+     *         calculation, see {@link ClimateSimulatorData#distanceFrom(String, float, float)}
+     */
+    public ClimateSimulator(FloatGrid hm, ForkJoinPool pool, float tolerance) {
+        this(hm, pool, tolerance, progress -> { });
+    }
 
-    ClimateSimulator(float[][] hm) {
+    /**
+     * @param hm the height map, with sea level at 1
+     * @param pool the pool to run the calculations on
+     * @param tolerance 0 for the exact calculation, otherwise the tolerance of the faster multiresolution
+     *         calculation, see {@link ClimateSimulatorData#distanceFrom(String, float, float)}
+     * @param progress called with the completed fraction in [0..1] whenever one of the steps is done, from any thread
+     */
+    public ClimateSimulator(FloatGrid hm, ForkJoinPool pool, float tolerance, DoubleConsumer progress) {
 
-        climateDistanceData = new ClimateSimulatorData(hm, hm.length);
+        climateDistanceData = new ClimateSimulatorData(hm);
+        this.pool = pool;
+
+        // three distance fields and their combination
+        AtomicInteger stepsDone = new AtomicInteger();
+        Runnable stepDone = () -> progress.accept(stepsDone.incrementAndGet() / 4.0);
+
+        ForkJoinTask<FloatGrid> poles = pool.submit(() -> afterwards(stepDone,
+                climateDistanceData.distanceFrom("poles", CLIMATE_HEIGHT_INFLUENCE, tolerance)));
+        ForkJoinTask<FloatGrid> equator = pool.submit(() -> afterwards(stepDone,
+                climateDistanceData.distanceFrom("equator", CLIMATE_HEIGHT_INFLUENCE, tolerance)));
+        ForkJoinTask<FloatGrid> water = pool.submit(() -> afterwards(stepDone,
+                climateDistanceData.distanceFrom("water", HUMIDITY_HEIGHT_INFLUENCE, tolerance)));
 
         //Ready the Climate Map
-        climate = new float[climateDistanceData.getSize()][climateDistanceData.getSize()];
-        float[][] t1 = climateDistanceData.distanceFrom("poles", 10);
-        float[][] t2 = climateDistanceData.distanceFrom("equator", 10);
-        for (int width = 0; width < climateDistanceData.getSize(); width++) {
-            for (int height = 0; height < climateDistanceData.getSize(); height++) {
-                climate[width][height] = t1[width][height] + t2[width][height] - 1;
-            }
-        }
-        overlayHeight(0, 0);
+        climate = new FloatGrid(hm.getWidth(), hm.getHeight());
+        combineClimate(poles.join(), equator.join());
 
         //Ready the HumidityMap
-        humidity = climateDistanceData.distanceFrom("water", 5);
+        humidity = water.join();
+        stepDone.run();
+    }
+
+    private static FloatGrid afterwards(Runnable action, FloatGrid result) {
+        action.run();
+        return result;
+    }
 
+    /**
+     * Restores previously computed results, see {@link ClimateCache}.
+     */
+    ClimateSimulator(FloatGrid hm, FloatGrid climate, FloatGrid humidity) {
+        this.climateDistanceData = new ClimateSimulatorData(hm);
+        this.pool = ForkJoinPool.commonPool();
+        this.climate = climate;
+        this.humidity = humidity;
+    }
+
+    /**
+     * Updates the results after the height map that was passed to the constructor changed within the given rectangle.
+     * <p>
+     * The distances are only solved again as far as the change reaches and are kept everywhere else, which makes
+     * local edits much cheaper than a new simulation. Edits that change the distances across the whole map, e.g.
+     * a mountain range between the poles and the equator, still take as long as a full simulation. The first call
+     * solves the whole map once, as the intermediate results are not kept by the constructor.
+     * <p>
+     * The grids returned by {@link #getClimate()} and {@link #getHumidity()} may be updated in place, so this must not
+     * be called while other threads read them, and they should be retrieved again afterwards.
+     *
+     * @param minX the smallest x coordinate of the changed cells
+     * @param minY the smallest y coordinate of the changed cells
+     * @param sizeX the number of changed columns
+     * @param sizeY the number of changed rows
+     */
+    public void update(int minX, int minY, int sizeX, int sizeY) {
+        if (poles == null) {
+            ForkJoinTask<DistanceField> polesTask = pool.submit(() -> new DistanceField(climateDistanceData, "poles", CLIMATE_HEIGHT_INFLUENCE));
+            ForkJoinTask<DistanceField> equatorTask = pool.submit(() -> new DistanceField(climateDistanceData, "equator", CLIMATE_HEIGHT_INFLUENCE));
+            ForkJoinTask<DistanceField> waterTask = pool.submit(() -> new DistanceField(climateDistanceData, "water", HUMIDITY_HEIGHT_INFLUENCE));
+            poles = polesTask.join();
+            equator = equatorTask.join();
+            water = waterTask.join();
+        } else {
+            ForkJoinTask<Integer> polesTask = pool.submit(() -> poles.update(minX, minY, sizeX, sizeY));
+            ForkJoinTask<Integer> equatorTask = pool.submit(() -> equator.update(minX, minY, sizeX, sizeY));
+            ForkJoinTask<Integer> waterTask = pool.submit(() -> water.update(minX, minY, sizeX, sizeY));
+            logger.debug("Updated {}, {} and {} cells of the distance fields", polesTask.join(), equatorTask.join(), waterTask.join());
+        }
+
+        combineClimate(poles.getDistances(), equator.getDistances());
+        humidity = water.getDistances();
+    }
+
+    /**
+     * Combines the distances from the poles and the equator into the climate.
+     */
+    private void combineClimate(FloatGrid polesDist, FloatGrid equatorDist) {
+        float[] t1 = polesDist.getData();
+        float[] t2 = equatorDist.getData();
+        float[] climateArr = climate.getData();
+        pool.submit(() -> IntStream.range(0, climateArr.length).parallel().forEach(i -> {
+            climateArr[i] = t1[i] + t2[i] - 1;
+        })).join();
+        pool.submit(() -> overlayHeight(OVERLAY_STRENGTH, OVERLAY_LOCATION_INFLUENCE)).join();
     }
 
     private void overlayHeight(int strength, int locationInfluence) {
-        for (int width = 0; width < climateDistanceData.getSize(); width++) {
-            for (int height = 0; height < climateDistanceData.getSize(); height++) {
-                float distToEq = (float) (0.5f - Math.abs(((height / 512.) * 2) - 1)) * 2;
-                float heightFactor = climateDistanceData.getHeightmap()[height][width] - 1;
+        int width = climate.getWidth();
+        int height = climate.getHeight();
+        float[] heightmap = climateDistanceData.getHeightmap().getData();
+        float[] climateArr = climate.getData();
+        IntStream.range(0, height).parallel().forEach(y -> {
+            float distToEq = (float) (0.5f - Math.abs(((y / (double) height) * 2) - 1)) * 2;
+            for (int i = y * width; i < (y + 1) * width; i++) {
+                float heightFactor = heightmap[i] - 1;
 
                 if (heightFactor < 0) {  // sea
-                    climate[height][width] = distToEq * 0.4f;
+                    climateArr[i] = distToEq * 0.4f;
                 } else {                // land
-                    climate[height][width] = ((100 - strength) * climate[height][width]
+                    climateArr[i] = ((100 - strength) * climateArr[i]
                             + strength * ((distToEq * locationInfluence + (100 - locationInfluence) * 0.5f) * 0.01f - heightFactor * 0.05f)) * 0.01f;
                 }
             }
-        }
+        });
     }
 
-    public float[][] getClimate() {
+    public FloatGrid getClimate() {
         return climate;
     }
 
-    public float[][] getHumidity() {
+    public FloatGrid getHumidity() {
         return humidity;
     }
 }
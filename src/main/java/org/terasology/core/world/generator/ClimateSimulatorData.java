@@ -19,143 +19,405 @@ package org.terasology.core.world.generator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.stream.IntStream;
+
 /**
  * Encapsulates climate distance calculations for the climate simulator
  */
 public class ClimateSimulatorData {
     private static final Logger logger = LoggerFactory.getLogger(ClimateSimulator.class);
-    private float[][] heightmap;
-    private int size;
 
-    public ClimateSimulatorData(float[][] heightmap, int size) {
+    /**
+     * The largest side of the downsampled grid that a multiresolution calculation starts with
+     */
+    private static final int COARSE_SIZE = 256;
+
+    /**
+     * The side of the tiles that are refined, in cells of the downsampled grid
+     */
+    private static final int REFINE_TILE_SIZE = 4;
+
+    /**
+     * The number of cells of the downsampled grid around a refined tile that are solved again as well
+     */
+    private static final int REFINE_MARGIN = 2;
+
+    private FloatGrid heightmap;
+    private int width;
+    private int height;
+
+    /**
+     * The initial distance of cells that are not a source, which is also the number of sweeps
+     */
+    private int limit;
+
+    public ClimateSimulatorData(FloatGrid heightmap) {
         this.heightmap = heightmap;
-        this.size = size;
+        this.width = heightmap.getWidth();
+        this.height = heightmap.getHeight();
+        this.limit = Math.max(width, height);
     }
 
-    public float[][] getHeightmap() {
+    public FloatGrid getHeightmap() {
         return heightmap;
     }
 
-    public int getSize() {
-        return size;
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
     }
 
-    public float[][] initDist(String fromWhat) {
+    /**
+     * @return the initial distance of cells that are not a source
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return true if the given cell starts at distance 0 in {@link #initDist(String)}
+     */
+    boolean isSource(String fromWhat, int x, int y) {
+        switch (fromWhat) {
+        case "water":
+            return heightmap.get(x, y) - 1 < 0;
+        case "poles":
+            return y == 0;
+        case "equator":
+            return y == height / 2;
+        default:
+            return false;
+        }
+    }
 
-        float[][] distArr = new float[size][size];
+    public FloatGrid initDist(String fromWhat) {
+
+        FloatGrid dist = new FloatGrid(width, height);
         switch(fromWhat) {
         case "water":
-            distanceFromWater(distArr);
+            distanceFromWater(dist);
             break;
         case "poles":
-            distanceFromPoles(distArr);
+            distanceFromPoles(dist);
             break;
         case "equator":
-            distanceFromEquator(distArr);
+            distanceFromEquator(dist);
             break;
         }
 
-        return distArr;
+        return dist;
     }
 
-    private void distanceFromWater(float[][] distArr) {
-        for (int width = 0; width < size; width++) {
-            for (int height = 0; height < size; height++) {
-                float heightFactor = heightmap[height][width] - 1;
+    private void distanceFromWater(FloatGrid dist) {
+        float[] heights = heightmap.getData();
+        float[] distArr = dist.getData();
+        for (int i = 0; i < distArr.length; i++) {
+            float heightFactor = heights[i] - 1;
 
-                if (heightFactor < 0) {  // sea
-                    distArr[height][width] = 0;
-                } else {  // land
-                    distArr[height][width] = size;
-                }
+            if (heightFactor < 0) {  // sea
+                distArr[i] = 0;
+            } else {  // land
+                distArr[i] = limit;
             }
         }
     }
 
-    private void distanceFromPoles(float[][] distArr) {
-        for (int width = 0; width < size; width++) {
-            for (int height = 0; height < size; height++) {
+    private void distanceFromPoles(FloatGrid dist) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
 
-                if (height == 0) {  // topOfTheMap
-                    distArr[height][width] = 0;
+                if (y == 0) {  // topOfTheMap
+                    dist.set(x, y, 0);
                 } else {
-                    distArr[height][width] = size;
+                    dist.set(x, y, limit);
                 }
             }
         }
     }
 
-    private void distanceFromEquator(float[][] distArr) {
-        for (int width = 0; width < size; width++) {
-            for (int height = 0; height < size; height++) {
+    private void distanceFromEquator(FloatGrid dist) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
 
-                if (height == size / 2) {  // topOfTheMap
-                    distArr[height][width] = 0;
+                if (y == height / 2) {
+                    dist.set(x, y, 0);
                 } else {
-                    distArr[height][width] = size;
+                    dist.set(x, y, limit);
                 }
             }
         }
     }
 
-    public float[][] distanceFrom(String fromWhat, float heightInfluence) {
+    /**
+     * Computes the weighted distance of every cell from the cells selected by {@code fromWhat}, normalized to [0..1].
+     * <p>
+     * The result is the same as sweeping over the whole map once per integer distance and letting every unset cell
+     * take the distance of the first sweep in which one of its neighbours is close enough, with edges costing 1,
+     * corners costing 1.41421 and height differences adding {@code heightInfluence} per unit. Instead of sweeping,
+     * the sweep and position in which each cell would be set is computed directly and the cells are processed in
+     * that order, which is O(n log n) in the number of cells instead of O(n * size).
+     * <p>
+     * The normalization runs in parallel on the fork/join pool of the calling thread. Concurrent calls are safe.
+     *
+     * @param fromWhat "water", "poles" or "equator"
+     * @param heightInfluence the additional cost per unit of height difference
+     * @return the normalized distances, inverted for "equator"
+     */
+    public FloatGrid distanceFrom(String fromWhat, float heightInfluence) {
 
-        float[][] distArr = initDist(fromWhat);
-        float currentDistance = 0;
+        FloatGrid dist = initDist(fromWhat);
 
         logger.info("Starting distance calculation: {}", fromWhat);
-        while (currentDistance < size) {
-            for (int width = 0; width < size; width++) {
-                for (int height = 0; height < size; height++) {
-                    float currHeight = heightmap[width][height];
-                    if (distArr[width][height] == size) { //Block could update
-                        int posW = (width + 1) % size;
-                        int posH = (height + 1) % size;
-                        int negW = ((width - 1) + size) % size;
-                        int negH = (height - 1 + size) % size;
-
-                        if (distArr[posW][height] + (heightmap[posW][height] - currHeight) * heightInfluence <= currentDistance
-                                || distArr[width][posH] + (heightmap[width][posH] - currHeight) * heightInfluence <= currentDistance
-                                || distArr[negW][height] + (heightmap[negW][height] - currHeight) * heightInfluence <= currentDistance
-                                || distArr[width][negH] + (heightmap[width][negH] - currHeight) * heightInfluence <= currentDistance) {
-                            //Updates over an edge
-                            distArr[width][height] = currentDistance + 1;
-                        } else if (
-                                distArr[posW][posH] + (heightmap[posW][posH] - currHeight) * heightInfluence <= currentDistance + 0.41421
-                                        || distArr[negW][posH] + (heightmap[negW][posH] - currHeight) * heightInfluence <= currentDistance + 0.41421
-                                        || distArr[posW][negH] + (heightmap[posW][negH] - currHeight) * heightInfluence <= currentDistance + 0.41421
-                                        || distArr[negW][negH] + (heightmap[negW][negH] - currHeight) * heightInfluence <= currentDistance + 0.41421) {
-                            //Updates over the corner
-                            distArr[width][height] = currentDistance + 1.41421f;
-                        }
+        new DistancePropagation(heightmap.getData(), width, height, true, limit, heightInfluence).propagate(dist.getData());
+
+        normalize(dist, fromWhat.equals("equator"));
+        return dist;
+    }
+
+    /**
+     * Approximates {@link #distanceFrom(String, float)} for large maps.
+     * <p>
+     * The distances are first computed on a downsampled height map and interpolated back to full resolution. Only
+     * tiles where the interpolated result could be off by more than {@code tolerance} are then solved again at full
+     * resolution, using the interpolated distances around them as boundary. These are tiles that contain both source
+     * and other cells (e.g. coastlines), tiles whose relief adds more than the tolerance and tiles where the coarse
+     * distances bend too much for linear interpolation.
+     * <p>
+     * The tolerance only controls where the interpolated distances are refined. The coarse pass itself cannot see
+     * relief that is smaller than one of its cells, so the result is an approximation even with a small tolerance.
+     * It is meant for maps where the exact calculation is too slow, e.g. 4096 x 4096 cells and above.
+     *
+     * @param fromWhat "water", "poles" or "equator"
+     * @param heightInfluence the additional cost per unit of height difference
+     * @param tolerance the acceptable error in normalized distance, 0 for the exact calculation
+     * @return the normalized distances, inverted for "equator"
+     */
+    public FloatGrid distanceFrom(String fromWhat, float heightInfluence, float tolerance) {
+        int factor = coarseFactor();
+        int tileSize = REFINE_TILE_SIZE * factor;
+        int margin = REFINE_MARGIN * factor;
+        if (tolerance <= 0 || factor == 1 || Math.min(width, height) < tileSize + 2 * margin) {
+            return distanceFrom(fromWhat, heightInfluence);
+        }
+
+        logger.info("Starting multiresolution distance calculation: {}", fromWhat);
+        FloatGrid init = initDist(fromWhat);
+        ClimateSimulatorData coarse = new ClimateSimulatorData(downsample(heightmap, factor));
+        FloatGrid coarseDist = coarse.downsampleSources(init, factor);
+        // height differences add up to the same along a path at every resolution, while the steps get longer
+        new DistancePropagation(coarse.heightmap.getData(), coarse.width, coarse.height, true, coarse.limit, heightInfluence / factor)
+                .propagate(coarseDist.getData());
+
+        FloatGrid approx = upsample(coarseDist, factor);
+        FloatGrid dist = new FloatGrid(width, height, approx.getData().clone());
+
+        float maxDistance = 0;
+        for (float value : approx.getData()) {
+            maxDistance = Math.max(maxDistance, value);
+        }
+        float maxError = tolerance * maxDistance;
+
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int refined = (int) IntStream.range(0, tilesX * tilesY).parallel()
+                .filter(tile -> {
+                    int x0 = (tile % tilesX) * tileSize;
+                    int y0 = (tile / tilesX) * tileSize;
+                    int x1 = Math.min(x0 + tileSize, width);
+                    int y1 = Math.min(y0 + tileSize, height);
+                    if (!needsRefinement(x0, y0, x1, y1, init, coarseDist, factor, heightInfluence, maxError)) {
+                        return false;
                     }
+                    refine(x0, y0, x1, y1, margin, init, approx, dist, heightInfluence);
+                    return true;
+                })
+                .count();
+        logger.debug("Refined {} of {} tiles", refined, tilesX * tilesY);
+
+        normalize(dist, fromWhat.equals("equator"));
+        return dist;
+    }
+
+    /**
+     * @return the smallest power of two that reduces the map to at most {@link #COARSE_SIZE} cells along each side
+     */
+    private int coarseFactor() {
+        int factor = 1;
+        while (Math.max(width, height) > COARSE_SIZE * factor) {
+            factor *= 2;
+        }
+        return factor;
+    }
+
+    private boolean needsRefinement(int x0, int y0, int x1, int y1, FloatGrid init, FloatGrid coarseDist, int factor,
+                                    float heightInfluence, float maxError) {
+        boolean hasSource = false;
+        boolean hasOther = false;
+        float minHeight = Float.POSITIVE_INFINITY;
+        float maxHeight = Float.NEGATIVE_INFINITY;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (init.get(x, y) == 0) {
+                    hasSource = true;
+                } else {
+                    hasOther = true;
                 }
+                float h = heightmap.get(x, y);
+                minHeight = Math.min(minHeight, h);
+                maxHeight = Math.max(maxHeight, h);
+            }
+        }
+        if (hasSource && hasOther) {
+            return true;
+        }
+        if ((maxHeight - minHeight) * Math.abs(heightInfluence) > maxError) {
+            return true;
+        }
+
+        // the error of linear interpolation is bounded by an eighth of the second difference
+        int coarseWidth = coarseDist.getWidth();
+        int coarseHeight = coarseDist.getHeight();
+        float maxBend = 0;
+        for (int cy = y0 / factor - 1; cy <= (y1 - 1) / factor + 1; cy++) {
+            for (int cx = x0 / factor - 1; cx <= (x1 - 1) / factor + 1; cx++) {
+                float center = coarseDist.get(Math.floorMod(cx, coarseWidth), Math.floorMod(cy, coarseHeight));
+                float bendX = coarseDist.get(Math.floorMod(cx - 1, coarseWidth), Math.floorMod(cy, coarseHeight))
+                        + coarseDist.get(Math.floorMod(cx + 1, coarseWidth), Math.floorMod(cy, coarseHeight)) - 2 * center;
+                float bendY = coarseDist.get(Math.floorMod(cx, coarseWidth), Math.floorMod(cy - 1, coarseHeight))
+                        + coarseDist.get(Math.floorMod(cx, coarseWidth), Math.floorMod(cy + 1, coarseHeight)) - 2 * center;
+                maxBend = Math.max(maxBend, Math.max(Math.abs(bendX), Math.abs(bendY)));
+            }
+        }
+        return maxBend * factor / 8 > maxError;
+    }
+
+    /**
+     * Solves the given tile again at full resolution. The cells in a margin around it are solved as well, and the
+     * interpolated distances just outside of the margin are kept fixed.
+     */
+    private void refine(int x0, int y0, int x1, int y1, int margin, FloatGrid init, FloatGrid approx, FloatGrid dist,
+                        float heightInfluence) {
+        int windowX = x0 - margin - 1;
+        int windowY = y0 - margin - 1;
+        int windowWidth = x1 - x0 + 2 * margin + 2;
+        int windowHeight = y1 - y0 + 2 * margin + 2;
+
+        float[] windowHeights = new float[windowWidth * windowHeight];
+        float[] windowDist = new float[windowWidth * windowHeight];
+        for (int j = 0; j < windowHeight; j++) {
+            int y = Math.floorMod(windowY + j, height);
+            for (int i = 0; i < windowWidth; i++) {
+                int x = Math.floorMod(windowX + i, width);
+                boolean boundary = i == 0 || j == 0 || i == windowWidth - 1 || j == windowHeight - 1;
+                windowHeights[i + j * windowWidth] = heightmap.get(x, y);
+                windowDist[i + j * windowWidth] = boundary ? approx.get(x, y) : init.get(x, y);
             }
-            currentDistance++;
         }
 
-        //normalize Array
-        float max = 0;
-        for (int width = 0; width < size; width++) {
-            for (int height = 0; height < size; height++) {
-                max = distArr[width][height] > max ? distArr[width][height] : max;
+        new DistancePropagation(windowHeights, windowWidth, windowHeight, false, limit, heightInfluence).propagate(windowDist);
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                dist.set(x, y, windowDist[(x - windowX) + (y - windowY) * windowWidth]);
             }
         }
-        for (int width = 0; width < size; width++) {
-            for (int height = 0; height < size; height++) {
-                distArr[width][height] /= max;
+    }
+
+    /**
+     * Averages blocks of {@code factor} x {@code factor} cells. Blocks at the far edges may be smaller.
+     */
+    private static FloatGrid downsample(FloatGrid grid, int factor) {
+        int coarseWidth = (grid.getWidth() + factor - 1) / factor;
+        int coarseHeight = (grid.getHeight() + factor - 1) / factor;
+        FloatGrid coarse = new FloatGrid(coarseWidth, coarseHeight);
+        for (int cy = 0; cy < coarseHeight; cy++) {
+            for (int cx = 0; cx < coarseWidth; cx++) {
+                float sum = 0;
+                int count = 0;
+                for (int y = cy * factor; y < Math.min((cy + 1) * factor, grid.getHeight()); y++) {
+                    for (int x = cx * factor; x < Math.min((cx + 1) * factor, grid.getWidth()); x++) {
+                        sum += grid.get(x, y);
+                        count++;
+                    }
+                }
+                coarse.set(cx, cy, sum / count);
             }
         }
+        return coarse;
+    }
 
-        //invert if necessary
-        if (fromWhat.equals("equator")) {
-            for (int width = 0; width < size; width++) {
-                for (int height = 0; height < size; height++) {
-                    distArr[width][height] = 1 - distArr[width][height];
+    /**
+     * Marks every cell of this (coarse) grid as source if any cell of the corresponding block of the full grid is
+     * one, so that small lakes and islands are not lost.
+     */
+    private FloatGrid downsampleSources(FloatGrid init, int factor) {
+        FloatGrid coarseInit = new FloatGrid(width, height);
+        for (int cy = 0; cy < height; cy++) {
+            for (int cx = 0; cx < width; cx++) {
+                boolean source = false;
+                for (int y = cy * factor; y < Math.min((cy + 1) * factor, init.getHeight()) && !source; y++) {
+                    for (int x = cx * factor; x < Math.min((cx + 1) * factor, init.getWidth()) && !source; x++) {
+                        source = init.get(x, y) == 0;
+                    }
                 }
+                coarseInit.set(cx, cy, source ? 0 : limit);
             }
         }
+        return coarseInit;
+    }
+
+    /**
+     * Interpolates the coarse distances bilinearly at the center of every cell and scales them to full resolution.
+     */
+    private FloatGrid upsample(FloatGrid coarse, int factor) {
+        int coarseWidth = coarse.getWidth();
+        int coarseHeight = coarse.getHeight();
+        FloatGrid result = new FloatGrid(width, height);
+        IntStream.range(0, height).parallel().forEach(y -> {
+            double v = (y + 0.5) / factor - 0.5;
+            int cy = (int) Math.floor(v);
+            float fy = (float) (v - cy);
+            int cy0 = Math.floorMod(cy, coarseHeight);
+            int cy1 = Math.floorMod(cy + 1, coarseHeight);
+            for (int x = 0; x < width; x++) {
+                double u = (x + 0.5) / factor - 0.5;
+                int cx = (int) Math.floor(u);
+                float fx = (float) (u - cx);
+                int cx0 = Math.floorMod(cx, coarseWidth);
+                int cx1 = Math.floorMod(cx + 1, coarseWidth);
+                float top = coarse.get(cx0, cy0) + fx * (coarse.get(cx1, cy0) - coarse.get(cx0, cy0));
+                float bottom = coarse.get(cx0, cy1) + fx * (coarse.get(cx1, cy1) - coarse.get(cx0, cy1));
+                result.set(x, y, Math.min((top + fy * (bottom - top)) * factor, limit));
+            }
+        });
+        return result;
+    }
 
-        return distArr;
+    /**
+     * Scales the distances to [0..1] and inverts them if requested, one row per task.
+     */
+    private void normalize(FloatGrid dist, boolean invert) {
+        float[] distArr = dist.getData();
+        float max = (float) IntStream.range(0, height).parallel()
+                .mapToDouble(y -> {
+                    float rowMax = 0;
+                    for (int i = y * width; i < (y + 1) * width; i++) {
+                        rowMax = distArr[i] > rowMax ? distArr[i] : rowMax;
+                    }
+                    return rowMax;
+                })
+                .max().orElse(0);
+        IntStream.range(0, height).parallel().forEach(y -> {
+            for (int i = y * width; i < (y + 1) * width; i++) {
+                distArr[i] /= max;
+                //invert if necessary
+                if (invert) {
+                    distArr[i] = 1 - distArr[i];
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,183 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator;
+
+import java.util.stream.IntStream;
+
+/**
+ * The distances of all cells from one kind of source, as computed by {@link ClimateSimulatorData#distanceFrom(String, float)},
+ * which can be updated after parts of the height map changed.
+ * <p>
+ * The unnormalized distances are kept next to the normalized ones. After a change, a window around the changed cells
+ * is solved again, with the previous distances of its outermost ring as boundary. If the cells just inside the ring
+ * keep their previous distances, the change cannot reach any further and the result is exact. Otherwise the window
+ * grows until it does, or until it covers the whole map.
+ * <p>
+ * Instances are not thread-safe.
+ */
+final class DistanceField {
+
+    /**
+     * The number of cells around a changed rectangle that are solved again at first
+     */
+    private static final int INITIAL_MARGIN = 8;
+
+    private final ClimateSimulatorData data;
+    private final String fromWhat;
+    private final float heightInfluence;
+    private final int width;
+    private final int height;
+
+    private FloatGrid raw;
+    private final FloatGrid normalized;
+    private float max;
+
+    /**
+     * Computes the distances of the whole map.
+     *
+     * @param data the height map to compute the distances on
+     * @param fromWhat "water", "poles" or "equator"
+     * @param heightInfluence the additional cost per unit of height difference
+     */
+    DistanceField(ClimateSimulatorData data, String fromWhat, float heightInfluence) {
+        this.data = data;
+        this.fromWhat = fromWhat;
+        this.heightInfluence = heightInfluence;
+        this.width = data.getWidth();
+        this.height = data.getHeight();
+        this.normalized = new FloatGrid(width, height);
+        recomputeAll();
+    }
+
+    /**
+     * @return the normalized distances, inverted for "equator", updated in place by {@link #update(int, int, int, int)}
+     */
+    FloatGrid getDistances() {
+        return normalized;
+    }
+
+    /**
+     * Updates the distances after the heights of the given rectangle changed. Coordinates wrap around the map.
+     *
+     * @param minX the smallest x coordinate of the changed cells
+     * @param minY the smallest y coordinate of the changed cells
+     * @param sizeX the number of changed columns
+     * @param sizeY the number of changed rows
+     * @return the number of cells that were solved again
+     */
+    int update(int minX, int minY, int sizeX, int sizeY) {
+        for (int margin = INITIAL_MARGIN; ; margin *= 2) {
+            int windowWidth = sizeX + 2 * margin + 2;
+            int windowHeight = sizeY + 2 * margin + 2;
+            if (windowWidth > width || windowHeight > height) {
+                recomputeAll();
+                return width * height;
+            }
+            if (solveWindow(minX - margin - 1, minY - margin - 1, windowWidth, windowHeight)) {
+                return windowWidth * windowHeight;
+            }
+        }
+    }
+
+    /**
+     * Solves a window of the map again, keeping its outermost ring fixed.
+     *
+     * @return true if the result is final, false if the change reaches beyond the window
+     */
+    private boolean solveWindow(int windowX, int windowY, int windowWidth, int windowHeight) {
+        int limit = data.getLimit();
+        FloatGrid heightmap = data.getHeightmap();
+        float[] windowHeights = new float[windowWidth * windowHeight];
+        float[] windowDist = new float[windowWidth * windowHeight];
+        int[] order = new int[windowWidth * windowHeight];
+        for (int j = 0; j < windowHeight; j++) {
+            int y = Math.floorMod(windowY + j, height);
+            for (int i = 0; i < windowWidth; i++) {
+                int x = Math.floorMod(windowX + i, width);
+                int index = i + j * windowWidth;
+                boolean ring = i == 0 || j == 0 || i == windowWidth - 1 || j == windowHeight - 1;
+                windowHeights[index] = heightmap.get(x, y);
+                windowDist[index] = ring ? raw.get(x, y) : data.isSource(fromWhat, x, y) ? 0 : limit;
+                order[index] = raw.index(x, y);
+            }
+        }
+
+        new DistancePropagation(windowHeights, windowWidth, windowHeight, false, limit, heightInfluence)
+                .propagateWindow(windowDist, order);
+
+        float oldWindowMax = 0;
+        float newWindowMax = 0;
+        for (int j = 1; j < windowHeight - 1; j++) {
+            for (int i = 1; i < windowWidth - 1; i++) {
+                int index = order[i + j * windowWidth];
+                boolean innerRing = i == 1 || j == 1 || i == windowWidth - 2 || j == windowHeight - 2;
+                if (innerRing && raw.getData()[index] != windowDist[i + j * windowWidth]) {
+                    return false;
+                }
+                oldWindowMax = Math.max(oldWindowMax, raw.getData()[index]);
+                newWindowMax = Math.max(newWindowMax, windowDist[i + j * windowWidth]);
+            }
+        }
+
+        for (int j = 1; j < windowHeight - 1; j++) {
+            for (int i = 1; i < windowWidth - 1; i++) {
+                raw.getData()[order[i + j * windowWidth]] = windowDist[i + j * windowWidth];
+            }
+        }
+
+        float newMax;
+        if (newWindowMax >= max) {
+            newMax = newWindowMax;
+        } else if (oldWindowMax < max) {
+            newMax = max; // the largest distance lies outside of the window
+        } else {
+            newMax = findMax();
+        }
+
+        if (newMax != max) {
+            max = newMax;
+            normalizeAll();
+        } else {
+            for (int j = 1; j < windowHeight - 1; j++) {
+                for (int i = 1; i < windowWidth - 1; i++) {
+                    normalize(order[i + j * windowWidth]);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void recomputeAll() {
+        raw = data.initDist(fromWhat);
+        new DistancePropagation(data.getHeightmap().getData(), width, height, true, data.getLimit(), heightInfluence)
+                .propagate(raw.getData());
+        max = findMax();
+        normalizeAll();
+    }
+
+    private float findMax() {
+        float[] rawArr = raw.getData();
+        return (float) IntStream.range(0, height).parallel()
+                .mapToDouble(y -> {
+                    float rowMax = 0;
+                    for (int i = y * width; i < (y + 1) * width; i++) {
+                        rowMax = rawArr[i] > rowMax ? rawArr[i] : rowMax;
+                    }
+                    return rowMax;
+                })
+                .max().orElse(0);
+    }
+
+    private void normalizeAll() {
+        IntStream.range(0, height).parallel().forEach(y -> {
+            for (int i = y * width; i < (y + 1) * width; i++) {
+                normalize(i);
+            }
+        });
+    }
+
+    private void normalize(int index) {
+        float value = raw.getData()[index] / max;
+        normalized.getData()[index] = fromWhat.equals("equator") ? 1 - value : value;
+    }
+}
@@ -0,0 +1,318 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator;
+
+import java.util.Arrays;
+
+/**
+ * Propagates the weighted distances of the climate simulation over a grid.
+ * <p>
+ * The result is the same as sweeping over the whole grid once per integer distance, up to {@code limit} times,
+ * and letting every unset cell take the distance of the first sweep in which one of its neighbours is close enough:
+ * a cell becomes {@code c + 1} in sweep {@code c} if an edge neighbour satisfies
+ * {@code dist + (neighbourHeight - height) * heightInfluence <= c}, or {@code c + 1.41421} if a corner neighbour
+ * satisfies the same with {@code c + 0.41421}. Cells are visited in the order {@code y * width + x} and a value that
+ * is set in a sweep is seen by cells with a larger index in the same sweep.
+ * <p>
+ * Instead of sweeping, the sweep and position in which each cell would be set is computed directly and the cells
+ * are processed in that order from a priority queue, which is O(n log n) in the number of cells.
+ * <p>
+ * Instances are not thread-safe.
+ */
+final class DistancePropagation {
+
+    private final float[] heights;
+    private final int width;
+    private final int height;
+    private final boolean wrap;
+    private final int limit;
+    private final float heightInfluence;
+
+    private final int[] scheduleNeighbours = new int[8];
+
+    /**
+     * @param heights the heights of all cells, row by row
+     * @param width the number of columns
+     * @param height the number of rows
+     * @param wrap true if the grid wraps around its edges, false if cells at the edges have fewer neighbours
+     * @param limit the value of unset cells, which is also the number of sweeps
+     * @param heightInfluence the additional cost per unit of height difference
+     */
+    DistancePropagation(float[] heights, int width, int height, boolean wrap, int limit, float heightInfluence) {
+        this.heights = heights;
+        this.width = width;
+        this.height = height;
+        this.wrap = wrap;
+        this.limit = limit;
+        this.heightInfluence = heightInfluence;
+    }
+
+    /**
+     * Sets every cell that is exactly at {@code limit} to its distance. All other cells are kept as they are.
+     *
+     * @param distArr the distances of all cells, row by row
+     */
+    void propagate(float[] distArr) {
+        run(distArr, null, null, null);
+    }
+
+    /**
+     * Like {@link #propagate(float[])}, for a window of a larger grid whose outermost ring of cells is already solved.
+     * <p>
+     * The ring keeps its values, but each of them only becomes visible at the point of the sweep order at which it
+     * was set in the larger grid. The inner cells therefore get exactly the values of a solve of the larger grid,
+     * as long as that solve would not change the ring.
+     *
+     * @param distArr the distances of all cells, row by row: final values in the ring, 0 or {@code limit} inside
+     * @param order the position of every cell in the sweep order of the larger grid, i.e. its index there
+     */
+    void propagateWindow(float[] distArr, int[] order) {
+        int cellCount = width * height;
+        long[] sorted = new long[cellCount];
+        for (int index = 0; index < cellCount; index++) {
+            sorted[index] = (long) order[index] * cellCount + index;
+        }
+        Arrays.sort(sorted);
+        int[] positions = new int[cellCount];
+        int[] cells = new int[cellCount];
+        for (int position = 0; position < cellCount; position++) {
+            int index = (int) (sorted[position] % cellCount);
+            positions[index] = position;
+            cells[position] = index;
+        }
+
+        boolean[] ring = new boolean[cellCount];
+        for (int index = 0; index < cellCount; index++) {
+            int x = index % width;
+            int y = index / width;
+            ring[index] = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+        }
+        run(distArr, positions, cells, ring);
+    }
+
+    /**
+     * @param positions the position of every cell in the sweep order, null if it is the index
+     * @param cells the cell at every position of the sweep order, null if it is the index
+     * @param fixed the cells whose values are known and only revealed at their point of the sweep order, or null
+     */
+    private void run(float[] distArr, int[] positions, int[] cells, boolean[] fixed) {
+        int cellCount = width * height;
+        long[] scheduled = new long[cellCount];
+        LongHeap queue = new LongHeap(cellCount);
+
+        float[] hidden = fixed != null ? new float[cellCount] : null;
+        for (int index = 0; index < cellCount; index++) {
+            scheduled[index] = -1;
+            if (fixed != null && fixed[index]) {
+                float value = distArr[index];
+                if (value > 0 && value < limit) {
+                    // sweep c sets either c + 1 or c + 1.41421, until then the cell reads as unset
+                    hidden[index] = value;
+                    distArr[index] = limit;
+                    long key = ((long) Math.floor(value) - 1) * cellCount + position(positions, index);
+                    scheduled[index] = key;
+                    queue.add(key);
+                }
+            } else if (distArr[index] == limit) {
+                schedule(distArr, index, 0, scheduled, queue, positions);
+            }
+        }
+
+        int[] neighbours = new int[8];
+        while (!queue.isEmpty()) {
+            long key = queue.poll();
+            int position = (int) (key % cellCount);
+            int index = cells != null ? cells[position] : position;
+            if (scheduled[index] != key) {
+                continue; // rescheduled in the meantime
+            }
+            int sweep = (int) (key / cellCount);
+            if (sweep >= limit) {
+                break;
+            }
+            scheduled[index] = -1;
+
+            // all values that were set before this cell in the sweep order are visible now, as in a real sweep
+            neighbourIndices(index, neighbours);
+            if (fixed != null && fixed[index]) {
+                distArr[index] = hidden[index];
+                updateNeighbours(distArr, index, sweep, neighbours, scheduled, queue, positions, fixed);
+                continue;
+            }
+            float currentDistance = sweep;
+            if (edgeDistance(distArr, index, neighbours) <= currentDistance) {
+                //Updates over an edge
+                distArr[index] = currentDistance + 1;
+            } else if (cornerDistance(distArr, index, neighbours) <= currentDistance + 0.41421) {
+                //Updates over the corner
+                distArr[index] = currentDistance + 1.41421f;
+            } else {
+                schedule(distArr, index, sweep + 1, scheduled, queue, positions);
+                continue;
+            }
+            updateNeighbours(distArr, index, sweep, neighbours, scheduled, queue, positions, fixed);
+        }
+    }
+
+    /**
+     * Reschedules the unset neighbours of a cell that was just set, as they may be set earlier now.
+     */
+    private void updateNeighbours(float[] distArr, int index, int sweep, int[] neighbours, long[] scheduled, LongHeap queue,
+                                  int[] positions, boolean[] fixed) {
+        long cellCount = (long) width * height;
+        int position = position(positions, index);
+        for (int neighbour : neighbours) {
+            if (neighbour >= 0 && neighbour != index && distArr[neighbour] == limit && (fixed == null || !fixed[neighbour])) {
+                // the new value is visible to later cells of this sweep and to all cells in the next one
+                int visibleFrom = position(positions, neighbour) > position ? sweep : sweep + 1;
+                long current = scheduled[neighbour];
+                if (current < 0 || current / cellCount >= visibleFrom) {
+                    schedule(distArr, neighbour, visibleFrom, scheduled, queue, positions);
+                }
+            }
+        }
+    }
+
+    private static int position(int[] positions, int index) {
+        return positions != null ? positions[index] : index;
+    }
+
+    /**
+     * Finds the first sweep (not before {@code fromSweep}) in which the given cell would be set with the current
+     * values of its neighbours, and queues it.
+     */
+    private void schedule(float[] distArr, int index, int fromSweep, long[] scheduled, LongHeap queue, int[] positions) {
+        int[] neighbours = scheduleNeighbours;
+        neighbourIndices(index, neighbours);
+        float edge = edgeDistance(distArr, index, neighbours);
+        float corner = cornerDistance(distArr, index, neighbours);
+
+        // edge updates happen in the first sweep c with edge <= c
+        long edgeSweep = Math.max(fromSweep, (long) Math.ceil(edge));
+        // corner updates happen in the first sweep c with corner <= c + 0.41421, evaluated in double precision
+        long cornerSweep = Math.max(fromSweep, (long) Math.ceil(corner - 0.41421));
+        while (cornerSweep > fromSweep && corner <= (cornerSweep - 1) + 0.41421) {
+            cornerSweep--;
+        }
+        while (cornerSweep < limit && !(corner <= cornerSweep + 0.41421)) {
+            cornerSweep++;
+        }
+
+        long sweep = Math.min(edgeSweep, cornerSweep);
+        if (sweep >= limit) {
+            scheduled[index] = -1;
+            return;
+        }
+        long key = sweep * width * height + position(positions, index);
+        scheduled[index] = key;
+        queue.add(key);
+    }
+
+    private float edgeDistance(float[] distArr, int index, int[] neighbours) {
+        float currHeight = heights[index];
+        float result = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            int n = neighbours[i];
+            if (n >= 0) {
+                result = Math.min(result, distArr[n] + (heights[n] - currHeight) * heightInfluence);
+            }
+        }
+        return result;
+    }
+
+    private float cornerDistance(float[] distArr, int index, int[] neighbours) {
+        float currHeight = heights[index];
+        float result = Float.POSITIVE_INFINITY;
+        for (int i = 4; i < 8; i++) {
+            int n = neighbours[i];
+            if (n >= 0) {
+                result = Math.min(result, distArr[n] + (heights[n] - currHeight) * heightInfluence);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the four edge neighbours followed by the four corner neighbours, or -1 where there is no neighbour.
+     */
+    private void neighbourIndices(int index, int[] target) {
+        int x = index % width;
+        int y = index / width;
+        int posX = neighbour(x + 1, width);
+        int negX = neighbour(x - 1, width);
+        int posY = neighbour(y + 1, height);
+        int negY = neighbour(y - 1, height);
+
+        target[0] = cell(x, posY);
+        target[1] = cell(posX, y);
+        target[2] = cell(x, negY);
+        target[3] = cell(negX, y);
+        target[4] = cell(posX, posY);
+        target[5] = cell(posX, negY);
+        target[6] = cell(negX, posY);
+        target[7] = cell(negX, negY);
+    }
+
+    private int neighbour(int coordinate, int size) {
+        if (wrap) {
+            return Math.floorMod(coordinate, size);
+        }
+        return coordinate >= 0 && coordinate < size ? coordinate : -1;
+    }
+
+    private int cell(int x, int y) {
+        return x < 0 || y < 0 ? -1 : y * width + x;
+    }
+
+    /**
+     * A binary min-heap of primitive longs.
+     */
+    private static final class LongHeap {
+        private long[] values;
+        private int count;
+
+        LongHeap(int capacity) {
+            values = new long[Math.max(capacity, 1)];
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            int i = count++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (values[parent] <= value) {
+                    break;
+                }
+                values[i] = values[parent];
+                i = parent;
+            }
+            values[i] = value;
+        }
+
+        long poll() {
+            long result = values[0];
+            long last = values[--count];
+            int i = 0;
+            int half = count >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < count && values[child + 1] < values[child]) {
+                    child++;
+                }
+                if (last <= values[child]) {
+                    break;
+                }
+                values[i] = values[child];
+                i = child;
+            }
+            values[i] = last;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A rectangular grid of float values, stored row by row in a single array.
+ */
+public final class FloatGrid {
+
+    private final int width;
+    private final int height;
+    private final float[] data;
+
+    /**
+     * Creates a grid with all values set to zero.
+     *
+     * @param width the number of columns
+     * @param height the number of rows
+     */
+    public FloatGrid(int width, int height) {
+        this(width, height, new float[Math.multiplyExact(width, height)]);
+    }
+
+    /**
+     * Wraps an existing array without copying it.
+     *
+     * @param width the number of columns
+     * @param height the number of rows
+     * @param data the values, row by row, exactly {@code width * height} long
+     */
+    public FloatGrid(int width, int height, float[] data) {
+        Preconditions.checkArgument(width > 0 && height > 0, "grid must not be empty");
+        Preconditions.checkArgument(data.length == (long) width * height, "data does not match the grid size");
+        this.width = width;
+        this.height = height;
+        this.data = data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the backing array, row by row with x as the fastest-changing coordinate
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public float get(int x, int y) {
+        return data[y * width + x];
+    }
+
+    public void set(int x, int y, float value) {
+        data[y * width + x] = value;
+    }
+}
@@ -11,8 +11,6 @@ import org.terasology.core.world.CoreBiome;
 import org.terasology.core.world.generator.facets.BiomeFacet;
 import org.terasology.core.world.generator.facets.FloraFacet;
 import org.terasology.core.world.generator.rasterizers.FloraType;
-import org.terasology.engine.utilities.procedural.Noise;
-import org.terasology.engine.utilities.procedural.WhiteNoise;
 import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.Facet;
 import org.terasology.engine.world.generation.FacetBorder;
@@ -38,8 +36,6 @@ import java.util.Map;
 })
 public class DefaultFloraProvider extends SurfaceObjectProvider<Biome, FloraType> implements ConfigurableFacetProvider {
 
-    private Noise densityNoiseGen;
-
     private Configuration configuration = new Configuration();
 
     private Map<FloraType, Float> typeProbs = ImmutableMap.of(
@@ -81,22 +77,15 @@ public class DefaultFloraProvider extends SurfaceObjectProvider<Biome, FloraType
         this.configuration = configuration;
     }
 
-    @Override
-    public void setSeed(long seed) {
-        super.setSeed(seed);
-
-        densityNoiseGen = new WhiteNoise(seed);
-    }
-
     @Override
     public void process(GeneratingRegion region) {
         SurfacesFacet surfaces = region.getRegionFacet(SurfacesFacet.class);
         BiomeFacet biomeFacet = region.getRegionFacet(BiomeFacet.class);
 
-        FloraFacet facet = new FloraFacet(region.getRegion(), region.getBorderForFacet(FloraFacet.class));
+        FloraFacet facet = new FloraFacet(region.getRegion(), region.getBorderForFacet(FloraFacet.class), getSeed());
 
         List<Predicate<Vector3i>> filters = getFilters(region);
-        populateFacet(facet, surfaces, biomeFacet, filters);
+        populateFacet(facet, surfaces, biomeFacet, filters, densityFilter(configuration.density));
 
         region.setRegionFacet(FloraFacet.class, facet);
     }
@@ -107,8 +96,6 @@ public class DefaultFloraProvider extends SurfaceObjectProvider<Biome, FloraType
         SeaLevelFacet seaLevel = region.getRegionFacet(SeaLevelFacet.class);
         filters.add(PositionFilters.minHeight(seaLevel.getSeaLevel()));
 
-        filters.add(PositionFilters.probability(densityNoiseGen, configuration.density));
-
         return filters;
     }
 
@@ -11,8 +11,6 @@ import org.terasology.core.world.generator.facets.BiomeFacet;
 import org.terasology.core.world.generator.facets.TreeFacet;
 import org.terasology.core.world.generator.trees.TreeGenerator;
 import org.terasology.core.world.generator.trees.Trees;
-import org.terasology.engine.utilities.procedural.Noise;
-import org.terasology.engine.utilities.procedural.WhiteNoise;
 import org.terasology.engine.world.generation.Border3D;
 import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.Facet;
@@ -38,7 +36,6 @@ import java.util.List;
 })
 public class DefaultTreeProvider extends SurfaceObjectProvider<Biome, TreeGenerator> implements ConfigurableFacetProvider {
 
-    private Noise densityNoiseGen;
     private Configuration configuration = new Configuration();
 
     public DefaultTreeProvider() {
@@ -69,13 +66,6 @@ public class DefaultTreeProvider extends SurfaceObjectProvider<Biome, TreeGenera
         this.configuration = configuration;
     }
 
-    @Override
-    public void setSeed(long seed) {
-        super.setSeed(seed);
-
-        densityNoiseGen = new WhiteNoise(seed);
-    }
-
     @Override
     public void process(GeneratingRegion region) {
         SurfacesFacet surfaces = region.getRegionFacet(SurfacesFacet.class);
@@ -84,9 +74,9 @@ public class DefaultTreeProvider extends SurfaceObjectProvider<Biome, TreeGenera
         List<Predicate<Vector3i>> filters = getFilters(region);
 
         Border3D borderForTreeFacet = region.getBorderForFacet(TreeFacet.class);
-        TreeFacet facet = new TreeFacet(region.getRegion(), borderForTreeFacet.extendBy(0, Trees.MAXHEIGHT, Trees.MAXRADIUS));
+        TreeFacet facet = new TreeFacet(region.getRegion(), borderForTreeFacet.extendBy(0, Trees.MAXHEIGHT, Trees.MAXRADIUS), getSeed());
 
-        populateFacet(facet, surfaces, biome, filters);
+        populateFacet(facet, surfaces, biome, filters, densityFilter(configuration.density * 0.05f));
 
         region.setRegionFacet(TreeFacet.class, facet);
     }
@@ -97,8 +87,6 @@ public class DefaultTreeProvider extends SurfaceObjectProvider<Biome, TreeGenera
         SeaLevelFacet seaLevel = region.getRegionFacet(SeaLevelFacet.class);
         filters.add(PositionFilters.minHeight(seaLevel.getSeaLevel()));
 
-        filters.add(PositionFilters.probability(densityNoiseGen, configuration.density * 0.05f));
-
         SurfacesFacet surface = region.getRegionFacet(SurfacesFacet.class);
         filters.add(PositionFilters.flatness(surface, 1, 0));
 
@@ -30,15 +30,39 @@ import org.terasology.engine.world.generation.facets.SurfacesFacet;
     @Facet(SurfacesFacet.class)
 })
 public class DensityNoiseProvider implements ScalableFacetProvider {
-    private SubSampledNoise largeNoise;
-    private SubSampledNoise smallNoise;
+    private static final int SAMPLE_RATE = 4;
+
+    private final QualityBudget budget;
+
+    /**
+     * The noise of every quality tier, by ordinal. Only the sample rate depends on the tier.
+     */
+    private SubSampledNoise[] largeNoise;
+    private SubSampledNoise[] smallNoise;
+
+    public DensityNoiseProvider() {
+        this(QualityBudget.fullQuality());
+    }
+
+    /**
+     * @param budget chooses the quality of the noise
+     */
+    public DensityNoiseProvider(QualityBudget budget) {
+        this.budget = budget;
+    }
 
     @Override
     public void setSeed(long seed) {
         BrownianNoise unscaled = new BrownianNoise(new SimplexNoise(seed), 4);
         unscaled.setPersistence(1);
-        smallNoise = new SubSampledNoise(unscaled, new Vector3f(0.015f, 0.02f, 0.015f), 4);
-        largeNoise = new SubSampledNoise(unscaled, new Vector3f(0.005f, 0.007f, 0.005f), 4);
+        QualityTier[] tiers = QualityTier.values();
+        smallNoise = new SubSampledNoise[tiers.length];
+        largeNoise = new SubSampledNoise[tiers.length];
+        for (QualityTier tier : tiers) {
+            int sampleRate = tier.sampleRate(SAMPLE_RATE);
+            smallNoise[tier.ordinal()] = new SubSampledNoise(unscaled, new Vector3f(0.015f, 0.02f, 0.015f), sampleRate);
+            largeNoise[tier.ordinal()] = new SubSampledNoise(unscaled, new Vector3f(0.005f, 0.007f, 0.005f), sampleRate);
+        }
     }
 
     @Override
@@ -48,27 +72,32 @@ public class DensityNoiseProvider implements ScalableFacetProvider {
         SurfacesFacet surfacesFacet = region.getRegionFacet(SurfacesFacet.class);
 
         BlockRegion densityRegion = densityFacet.getWorldRegion();
-        float[] smallNoiseValues = smallNoise.noise(densityRegion, scale);
-        float[] largeNoiseValues = largeNoise.noise(densityRegion, scale);
+        QualityBlend blend = budget.blendFor(densityRegion, scale);
+        int layers = densityRegion.getSizeY();
+        float[] smallNoiseValues = blend.blend(tier -> smallNoise[tier.ordinal()].noise(densityRegion, scale), layers);
+        float[] largeNoiseValues = blend.blend(tier -> largeNoise[tier.ordinal()].noise(densityRegion, scale), layers);
         float[] densityValues = densityFacet.getInternal();
 
-        int x = densityRegion.minX();
-        int y = densityRegion.minY();
-        int z = densityRegion.minZ();
-        for (int i = 0; i < densityValues.length; i++) {
-            float intensity = Math.max(0f, surfaceRoughnessFacet.getWorld(x, z));
-            float smallIntensity = Math.min(intensity, (1 + intensity) / 2);
-            float largeIntensity = intensity - smallIntensity;
-            densityValues[i] += smallNoiseValues[i] * intensity * 20 + largeNoiseValues[i] * largeIntensity * 60;
+        // the intensities only depend on the column
+        int sizeX = densityRegion.getSizeX();
+        int sizeZ = densityRegion.getSizeZ();
+        float[] intensities = new float[sizeX * sizeZ];
+        float[] largeIntensities = new float[sizeX * sizeZ];
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                float intensity = Math.max(0f, surfaceRoughnessFacet.getWorld(densityRegion.minX() + x, densityRegion.minZ() + z));
+                float smallIntensity = Math.min(intensity, (1 + intensity) / 2);
+                intensities[x + z * sizeX] = intensity;
+                largeIntensities[x + z * sizeX] = intensity - smallIntensity;
+            }
+        }
 
-            x++;
-            if (x > densityRegion.maxX()) {
-                x = densityRegion.minX();
-                y++;
-                if (y > densityRegion.maxY()) {
-                    y = densityRegion.minY();
-                    z++;
-                }
+        int offset = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            for (int y = 0; y < densityRegion.getSizeY(); y++) {
+                FacetKernels.addDensityNoise(densityValues, offset, smallNoiseValues, largeNoiseValues,
+                        intensities, largeIntensities, z * sizeX, sizeX);
+                offset += sizeX;
             }
         }
 
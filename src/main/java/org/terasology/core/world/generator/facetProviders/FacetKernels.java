@@ -0,0 +1,87 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import org.terasology.math.TeraMath;
+
+/**
+ * The transforms that turn noise values into facet values, applied to whole arrays.
+ * <p>
+ * The loops have no branches and no calls that are not intrinsics, so that the JIT compiler can unroll them and
+ * process several values at a time. Each kernel gives exactly the same values as the scalar expression it replaces.
+ */
+public final class FacetKernels {
+
+    private FacetKernels() {
+    }
+
+    /**
+     * Maps noise to temperature or humidity, like {@code TeraMath.clamp((n * 2.11f + 1f) * 0.5f)} does for a single
+     * value.
+     *
+     * @param values the noise values, replaced with values in [0..1]
+     * @param length the number of values to map
+     * @see TeraMath#clamp(float)
+     */
+    public static void climateFromNoise(float[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            values[i] = Math.min(Math.max((values[i] * 2.11f + 1f) * 0.5f, 0f), 1f);
+        }
+    }
+
+    /**
+     * Maps noise to surface heights. Positive noise rises above sea level in a parabola, noise down to
+     * {@code -oceanFloorCutoff} slopes down to the ocean floor at height zero, and everything below is ocean floor.
+     *
+     * @param values the noise values, replaced with surface heights
+     * @param length the number of values to map
+     * @param seaLevel the height of the sea level
+     * @param beachSteepness the slope of the land right above sea level
+     * @param oceanFloorCutoff the noise value at which the ocean floor is reached
+     */
+    public static void surfaceFromNoise(float[] values, int length, float seaLevel, float beachSteepness, float oceanFloorCutoff) {
+        for (int i = 0; i < length; i++) {
+            float noise = values[i];
+            float land = seaLevel + noise * (noise + beachSteepness) * 1000;
+            // -1 below the cutoff, which gives exactly zero
+            float shore = Math.max(noise, -oceanFloorCutoff) / oceanFloorCutoff + 1;
+            values[i] = noise > 0 ? land : shore * shore * seaLevel;
+        }
+    }
+
+    /**
+     * Lowers the surface where the river noise is close to zero, by up to {@code maxDepth} where it is zero.
+     *
+     * @param noise the river noise
+     * @param noiseOffset the index of the first noise value
+     * @param heights the surface heights to lower
+     * @param heightOffset the index of the first surface height
+     * @param length the number of values
+     * @param maxDepth the depth of the rivers
+     */
+    public static void carveRivers(float[] noise, int noiseOffset, float[] heights, int heightOffset, int length, float maxDepth) {
+        for (int i = 0; i < length; i++) {
+            heights[heightOffset + i] += maxDepth * Math.min(0, Math.abs(noise[noiseOffset + i]) * 20f - 1);
+        }
+    }
+
+    /**
+     * Adds the small and large density noise to one row of densities, weighted with the intensity of the columns.
+     *
+     * @param densities the densities to change
+     * @param offset the index of the first density, small noise and large noise value of the row
+     * @param smallNoise the small-scale density noise
+     * @param largeNoise the large-scale density noise
+     * @param intensities the intensity of the small noise of every column
+     * @param largeIntensities the intensity of the large noise of every column
+     * @param columnOffset the index of the first column of the row
+     * @param length the number of values in the row
+     */
+    public static void addDensityNoise(float[] densities, int offset, float[] smallNoise, float[] largeNoise,
+                                       float[] intensities, float[] largeIntensities, int columnOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            densities[offset + i] += smallNoise[offset + i] * intensities[columnOffset + i] * 20
+                    + largeNoise[offset + i] * largeIntensities[columnOffset + i] * 60;
+        }
+    }
+}
@@ -0,0 +1,497 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.core.world.generator.ClimateCache;
+import org.terasology.core.world.generator.ClimateSimulator;
+import org.terasology.core.world.generator.FloatGrid;
+import org.terasology.core.world.generator.facetProviders.HeightMapSurfaceHeightProvider.HeightMapConfiguration;
+import org.terasology.core.world.generator.heightmap.HeightMap;
+import org.terasology.core.world.generator.heightmap.HeightMapPyramid;
+import org.terasology.core.world.generator.heightmap.HeightMapSampler;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.engine.world.generation.ConfigurableFacetProvider;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.Produces;
+import org.terasology.engine.world.generation.ScalableFacetProvider;
+import org.terasology.engine.world.generation.facets.SurfaceHumidityFacet;
+import org.terasology.engine.world.generation.facets.SurfaceTemperatureFacet;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Checkbox;
+import org.terasology.nui.properties.OneOf.Enum;
+import org.terasology.nui.properties.Range;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Defines surface temperature and humidity for a height map world, either from noise or from a {@link ClimateSimulator}
+ * run on the height map.
+ * <p>
+ * The simulation runs once per height map and its results are kept in a {@link ClimateCache}. Regions then only
+ * interpolate between the cells of the climate grids, which line up with the texels of the height map.
+ * <p>
+ * The simulation runs in the background. It first simulates a small version of the height map, which previews
+ * (regions generated at a scale above 1) use until the final result is done, and noise until even that is done.
+ * Chunks wait for the final result, so that the world does not depend on how fast the simulation was, but only up to
+ * {@link #FINAL_CLIMATE_TIMEOUT_SECONDS}. If the simulation takes longer, e.g. for a large map that is not cached yet,
+ * chunks use the coarse climate or noise until it is done rather than stalling all generation.
+ * <p>
+ * With a simulation tolerance above 0, the distances are calculated coarse-to-fine, which makes it feasible to simulate
+ * larger maps at full detail, see {@link ClimateSimulator#ClimateSimulator(FloatGrid, java.util.concurrent.ForkJoinPool, float)}.
+ */
+@Produces({SurfaceTemperatureFacet.class, SurfaceHumidityFacet.class})
+public class HeightMapClimateProvider implements ConfigurableFacetProvider, ScalableFacetProvider {
+
+    public enum ClimateSource {
+        NOISE,
+        SIMULATION
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(HeightMapClimateProvider.class);
+
+    /**
+     * Runs the simulations, so that generation can start before they are done.
+     */
+    private static final ExecutorService SIMULATOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("climate-simulation-%d").setDaemon(true).build());
+
+    /**
+     * Height maps with more texels along either side are simulated on a coarser level of their pyramid, and averaged
+     * further if no level is small enough.
+     */
+    private static final int MAX_CLIMATE_SIZE = 1024;
+
+    /**
+     * The largest size that is simulated with the coarse-to-fine calculation, which is only limited by memory.
+     */
+    private static final int MAX_APPROXIMATE_CLIMATE_SIZE = 4096;
+
+    /**
+     * The size of the coarse simulation that previews use until the final one is done.
+     */
+    private static final int PREVIEW_CLIMATE_SIZE = 128;
+
+    /**
+     * How long chunks wait for the final climate before they fall back to the coarse one.
+     */
+    private static final long FINAL_CLIMATE_TIMEOUT_SECONDS = 10;
+
+    private final HeightMapSurfaceHeightProvider heightProvider;
+    private final int seaLevel;
+
+    private final SimplexClimateProvider noise = new SimplexClimateProvider();
+
+    private volatile Configuration configuration = new Configuration();
+
+    /**
+     * The climate of the height map that was used most recently, replaced when the height map or its settings change.
+     */
+    private volatile Climate climate;
+
+    /**
+     * @param heightProvider the provider whose height map the climate is simulated on
+     * @param seaLevel the sea level of the world, in blocks
+     */
+    public HeightMapClimateProvider(HeightMapSurfaceHeightProvider heightProvider, int seaLevel) {
+        this.heightProvider = heightProvider;
+        this.seaLevel = seaLevel;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        noise.setSeed(seed);
+    }
+
+    @Override
+    public void initialize() {
+        if (configuration.source == ClimateSource.SIMULATION) {
+            currentClimate(); // starts the simulation before the first region is requested
+        }
+    }
+
+    @Override
+    public void process(GeneratingRegion region, float scale) {
+        if (configuration.source == ClimateSource.NOISE) {
+            noise.process(region, scale);
+            return;
+        }
+
+        // previews are not stored, chunks wait for the final climate so that they rarely depend on the simulation time
+        ClimateGrids current = scale > 1 ? currentClimate().getAvailable() : finalClimate();
+        if (current == null) {
+            noise.process(region, scale);
+            return;
+        }
+        SurfaceTemperatureFacet temperatureFacet = new SurfaceTemperatureFacet(region.getRegion(),
+                region.getBorderForFacet(SurfaceTemperatureFacet.class));
+        SurfaceHumidityFacet humidityFacet = new SurfaceHumidityFacet(region.getRegion(),
+                region.getBorderForFacet(SurfaceHumidityFacet.class));
+
+        // the simulated climate lies in [-1..1] and the distance to water in [0..1], interpolation stays within these bounds
+        BlockAreac area = temperatureFacet.getWorldArea();
+        current.climate.sample(area.minX() - current.offset, area.minY() - current.offset, area.getSizeX(), area.getSizeY(),
+                scale, 0.5f, 0.5f, temperatureFacet.getInternal());
+        area = humidityFacet.getWorldArea();
+        current.waterDistance.sample(area.minX() - current.offset, area.minY() - current.offset, area.getSizeX(),
+                area.getSizeY(), scale, 1f, -1f, humidityFacet.getInternal());
+
+        region.setRegionFacet(SurfaceTemperatureFacet.class, temperatureFacet);
+        region.setRegionFacet(SurfaceHumidityFacet.class, humidityFacet);
+    }
+
+    /**
+     * @return the completed fraction of the climate simulation for the current height map, in [0..1]
+     */
+    public float getSimulationProgress() {
+        Climate current = climate;
+        return current != null ? current.progress : 0;
+    }
+
+    /**
+     * Waits for the final climate of the current height map and settings. If they change while waiting, the climate
+     * of the new ones is waited for instead. Once waiting for a climate timed out, chunks no longer wait for it and
+     * use what is available instead.
+     *
+     * @return the final climate, or the coarse one or null if the simulation takes too long
+     * @throws CompletionException if the simulation failed
+     */
+    private ClimateGrids finalClimate() {
+        while (true) {
+            Climate current = currentClimate();
+            if (current.timedOut) {
+                return current.getAvailable();
+            }
+            try {
+                return current.result.get(FINAL_CLIMATE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (CancellationException e) {
+                // superseded, the next iteration picks up the replacement
+            } catch (TimeoutException e) {
+                if (!current.timedOut) {
+                    current.timedOut = true;
+                    logger.warn("The climate simulation takes longer than {} s, chunks use the coarse climate until it is done",
+                            FINAL_CLIMATE_TIMEOUT_SECONDS);
+                }
+                return current.getAvailable();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return current.getAvailable();
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the climate for the current height map and settings, starting a new simulation if necessary.
+     */
+    private Climate currentClimate() {
+        HeightMapConfiguration settings = (HeightMapConfiguration) heightProvider.getConfiguration();
+        float tolerance = configuration.simulationTolerance;
+        Climate current = climate;
+        // only compares the published height map, so that regions do not have to retain it
+        if (current != null && current.matches(heightProvider.peekHeightMap(), settings, tolerance)) {
+            return current;
+        }
+        synchronized (this) {
+            HeightMapPyramid heights = heightProvider.acquireHeightMap();
+            current = climate;
+            if (current != null && current.matches(heights, settings, tolerance)) {
+                heights.release();
+                return current;
+            }
+            // the simulation releases the height map when it is done
+            current = new Climate(heights, settings, tolerance);
+            climate = current;
+            Climate target = current;
+            SIMULATOR.execute(() -> simulate(target));
+            return current;
+        }
+    }
+
+    /**
+     * Simulates a small version of the height map, which only takes a few milliseconds once the texels are read.
+     */
+    private void simulatePreview(Climate target) {
+        int level = levelFor(target.heights, PREVIEW_CLIMATE_SIZE);
+        HeightMap map = target.heights.getLevel(level);
+        int factor = reductionFor(map, PREVIEW_CLIMATE_SIZE);
+        ClimateSimulator simulator = new ClimateSimulator(climateHeights(map, factor, target));
+        target.preview.complete(new ClimateGrids(simulator, factor << level, target));
+    }
+
+    /**
+     * Simulates the preview and then the height map at full detail, or at the detail of the largest level that is
+     * small enough. Runs on the {@link #SIMULATOR} thread.
+     */
+    private void simulate(Climate target) {
+        try {
+            if (isSuperseded(target)) {
+                return;
+            }
+            try {
+                simulatePreview(target);
+            } catch (RuntimeException e) {
+                // previews keep using noise
+                logger.warn("Could not simulate the coarse climate", e);
+            }
+            if (isSuperseded(target)) {
+                return;
+            }
+            simulateHeights(target);
+        } finally {
+            target.heights.release();
+        }
+    }
+
+    /**
+     * Cancels the simulation of a climate that was replaced by the one of a later height map or settings,
+     * so that chunks waiting for it move on to the replacement.
+     */
+    private boolean isSuperseded(Climate target) {
+        if (climate == target) {
+            return false;
+        }
+        target.result.cancel(false);
+        return true;
+    }
+
+    private void simulateHeights(Climate target) {
+        try {
+            int maxSize = target.tolerance > 0 ? MAX_APPROXIMATE_CLIMATE_SIZE : MAX_CLIMATE_SIZE;
+            int level = levelFor(target.heights, maxSize);
+            HeightMap map = target.heights.getLevel(level);
+            int factor = reductionFor(map, maxSize);
+            FloatGrid grid = climateHeights(map, factor, target);
+            logger.info("Simulating the climate of the height map on {} x {} cells with a tolerance of {}",
+                    grid.getWidth(), grid.getHeight(), target.tolerance);
+
+            ClimateCache cache = new ClimateCache(PathManager.getInstance().getHomePath().resolve("cache").resolve("climate"));
+            ClimateSimulator simulator = cache.getOrCompute(grid, target.tolerance, progress -> {
+                target.progress = (float) progress;
+                logger.info("Climate simulation {}% done", Math.round(progress * 100));
+            });
+            target.result.complete(new ClimateGrids(simulator, factor << level, target));
+        } catch (RuntimeException e) {
+            // chunks must not fall back to the coarse climate, or they would depend on the failure
+            logger.error("Could not simulate the climate", e);
+            target.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the first level of the pyramid that is at most {@code maxSize} texels large along both sides
+     */
+    private static int levelFor(HeightMapPyramid heights, int maxSize) {
+        int level = 0;
+        while (level + 1 < heights.getLevelCount()
+                && Math.max(heights.getLevel(level).getWidth(), heights.getLevel(level).getHeight()) > maxSize) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return the number of texels along each side that have to be averaged into one cell, so that the map is at most
+     *         {@code maxSize} cells large along both sides. 1 unless the pyramid had no level that is small enough.
+     */
+    private static int reductionFor(HeightMap map, int maxSize) {
+        int size = Math.max(map.getWidth(), map.getHeight());
+        return (size + maxSize - 1) / maxSize;
+    }
+
+    /**
+     * Converts the height map to the heights that the simulation expects, relative to the sea level with the sea level at 1.
+     * The map is read one row at a time, and blocks of {@code factor} x {@code factor} texels are averaged into one cell,
+     * so that no more than the resulting grid is ever held in memory.
+     */
+    private FloatGrid climateHeights(HeightMap map, int factor, Climate settings) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        FloatGrid grid = new FloatGrid((width + factor - 1) / factor, (height + factor - 1) / factor);
+        int[] columns = new int[width];
+        for (int x = 0; x < width; x++) {
+            columns[x] = x;
+        }
+        int[] row = new int[1];
+        float[] values = new float[width];
+        float[] sums = new float[grid.getWidth()];
+        for (int cellZ = 0; cellZ < grid.getHeight(); cellZ++) {
+            Arrays.fill(sums, 0);
+            int minZ = cellZ * factor;
+            int maxZ = Math.min(minZ + factor, height);
+            for (int z = minZ; z < maxZ; z++) {
+                row[0] = z;
+                map.read(columns, width, row, 1, values);
+                for (int x = 0; x < width; x++) {
+                    sums[x / factor] += values[x];
+                }
+            }
+            for (int cellX = 0; cellX < grid.getWidth(); cellX++) {
+                // the last cells of a row or column may cover fewer texels
+                int texels = (Math.min((cellX + 1) * factor, width) - cellX * factor) * (maxZ - minZ);
+                float mean = sums[cellX] / texels;
+                grid.set(cellX, cellZ, (settings.heightOffset + settings.heightScale * mean) / seaLevel);
+            }
+        }
+        return grid;
+    }
+
+    @Override
+    public String getConfigurationName() {
+        // the name of the humidity provider this replaced, so that saved humidity settings still apply
+        return "Humidity";
+    }
+
+    @Override
+    public Component getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void setConfiguration(Component configuration) {
+        Configuration config = (Configuration) configuration;
+        SimplexHumidityProvider.Configuration humidityConfig = new SimplexHumidityProvider.Configuration();
+        humidityConfig.octaves = config.octaves;
+        humidityConfig.scale = config.scale;
+        humidityConfig.rowNoise = config.rowNoise;
+        noise.setConfiguration(humidityConfig);
+        this.configuration = config;
+    }
+
+    private static HeightMap asHeightMap(FloatGrid grid) {
+        return new HeightMap() {
+            @Override
+            public int getWidth() {
+                return grid.getWidth();
+            }
+
+            @Override
+            public int getHeight() {
+                return grid.getHeight();
+            }
+
+            @Override
+            public float get(int x, int z) {
+                return grid.get(x, z);
+            }
+        };
+    }
+
+    /**
+     * The climate of one height map and its settings: a coarse one that is available soon and the final one.
+     */
+    private static final class Climate {
+        private final HeightMapPyramid heights;
+        private final float heightOffset;
+        private final float heightScale;
+        private final int terrainScale;
+        private final HeightMapSurfaceHeightProvider.WrapMode wrapMode;
+        private final float tolerance;
+
+        private final CompletableFuture<ClimateGrids> result = new CompletableFuture<>();
+        private final CompletableFuture<ClimateGrids> preview = new CompletableFuture<>();
+        private volatile float progress;
+
+        /**
+         * Whether chunks stopped waiting for the final result, see {@link #finalClimate()}
+         */
+        private volatile boolean timedOut;
+
+        Climate(HeightMapPyramid heights, HeightMapConfiguration settings, float tolerance) {
+            this.heights = heights;
+            this.heightOffset = settings.heightOffset;
+            this.heightScale = settings.heightScale;
+            this.terrainScale = settings.terrainScale;
+            this.wrapMode = settings.wrapMode;
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * @return the final climate if it is done, the coarse one if that is done, null otherwise
+         */
+        ClimateGrids getAvailable() {
+            if (result.isDone() && !result.isCompletedExceptionally()) {
+                return result.join();
+            }
+            return preview.getNow(null);
+        }
+
+        boolean matches(HeightMapPyramid otherHeights, HeightMapConfiguration settings, float otherTolerance) {
+            return heights == otherHeights
+                    && heightOffset == settings.heightOffset
+                    && heightScale == settings.heightScale
+                    && terrainScale == settings.terrainScale
+                    && wrapMode == settings.wrapMode
+                    && tolerance == otherTolerance;
+        }
+    }
+
+    /**
+     * Samplers for the results of one simulation.
+     */
+    private static final class ClimateGrids {
+        private final HeightMapSampler climate;
+        private final HeightMapSampler waterDistance;
+
+        /**
+         * The distance in blocks from the first texel of a cell to its center, by which sampling is shifted
+         */
+        private final int offset;
+
+        /**
+         * @param texelsPerCell the number of height map texels along each side of a cell
+         */
+        ClimateGrids(ClimateSimulator simulator, int texelsPerCell, Climate settings) {
+            // every cell covers as many blocks as the texels it was averaged from
+            boolean repeat = settings.wrapMode == HeightMapSurfaceHeightProvider.WrapMode.REPEAT;
+            int cellSize = settings.terrainScale * texelsPerCell;
+            this.climate = new HeightMapSampler(asHeightMap(simulator.getClimate()), cellSize, repeat);
+            this.waterDistance = new HeightMapSampler(asHeightMap(simulator.getHumidity()), cellSize, repeat);
+            this.offset = Math.round((texelsPerCell - 1) * settings.terrainScale / 2f);
+        }
+    }
+
+    public static class Configuration implements Component<Configuration> {
+
+        @Enum(description = "Climate Source")
+        public ClimateSource source = ClimateSource.NOISE;
+
+        // named like the fields of SimplexHumidityProvider.Configuration, which were saved under the same name before
+        @Range(min = 0, max = 10.0f, increment = 1f, precision = 0, description = "Humidity noise octaves")
+        public int octaves = 8;
+
+        @Range(min = 0.01f, max = 5f, increment = 0.01f, precision = 2, description = "Humidity noise scale")
+        public float scale = 0.05f;
+
+        @Range(min = 0, max = 0.1f, increment = 0.005f, precision = 3,
+                description = "Climate simulation tolerance, 0 for the exact simulation of up to 1024 x 1024 texels")
+        public float simulationTolerance;
+
+        /**
+         * Evaluates the noise one row at a time, see {@link SimplexBaseSurfaceProvider.Configuration#rowNoise}
+         */
+        @Checkbox(description = "Fast Row Noise")
+        public boolean rowNoise;
+
+        @Override
+        public void copyFrom(Configuration other) {
+            this.source = other.source;
+            this.octaves = other.octaves;
+            this.scale = other.scale;
+            this.simulationTolerance = other.simulationTolerance;
+            this.rowNoise = other.rowNoise;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import org.terasology.core.world.generator.facets.SurfaceRoughnessFacet;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.engine.world.generation.Facet;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.Produces;
+import org.terasology.engine.world.generation.Requires;
+import org.terasology.engine.world.generation.ScalableFacetProvider;
+import org.terasology.engine.world.generation.facets.ElevationFacet;
+import org.terasology.engine.world.generation.facets.SeaLevelFacet;
+
+/**
+ * Determines the surface roughness from the relief of a height map. Like {@link SimplexRoughnessProvider},
+ * higher areas are rougher, but instead of noise the steepness of the terrain adds to it.
+ */
+@Produces(SurfaceRoughnessFacet.class)
+@Requires({
+    @Facet(ElevationFacet.class),
+    @Facet(SeaLevelFacet.class)
+})
+public class HeightMapRoughnessProvider implements ScalableFacetProvider {
+
+    /**
+     * Slopes above this (in blocks per block) are treated as cliffs and do not add any further roughness
+     */
+    private static final float MAX_SLOPE = 2f;
+
+    /**
+     * The slope of terrain that neither adds nor removes roughness
+     */
+    private static final float NEUTRAL_SLOPE = 0.25f;
+
+    private final HeightMapSurfaceHeightProvider heightProvider;
+
+    /**
+     * @param heightProvider the provider whose height map the slopes are derived from
+     */
+    public HeightMapRoughnessProvider(HeightMapSurfaceHeightProvider heightProvider) {
+        this.heightProvider = heightProvider;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+    }
+
+    @Override
+    public void process(GeneratingRegion region, float scale) {
+        ElevationFacet elevationFacet = region.getRegionFacet(ElevationFacet.class);
+        SeaLevelFacet seaLevelFacet = region.getRegionFacet(SeaLevelFacet.class);
+        SurfaceRoughnessFacet facet = new SurfaceRoughnessFacet(region.getRegion(), region.getBorderForFacet(SurfaceRoughnessFacet.class));
+
+        BlockAreac area = facet.getWorldArea();
+        float[] values = facet.getInternal();
+        heightProvider.sampleSlope(area, scale, values);
+
+        int seaLevel = seaLevelFacet.getSeaLevel();
+        int index = 0;
+        for (int y = area.minY(); y <= area.maxY(); y++) {
+            for (int x = area.minX(); x <= area.maxX(); x++) {
+                float height = elevationFacet.getWorld(x, y) - seaLevel;
+                float slope = Math.min(values[index], MAX_SLOPE);
+                values[index++] = 0.25f + height * 0.007f + (slope - NEUTRAL_SLOPE) * 1.5f;
+            }
+        }
+
+        region.setRegionFacet(SurfaceRoughnessFacet.class, facet);
+    }
+}
@@ -2,44 +2,77 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.core.world.generator.facetProviders;
 
-import com.google.common.math.IntMath;
-import org.joml.Vector2ic;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.core.world.generator.heightmap.HeightMapFiles;
+import org.terasology.core.world.generator.heightmap.HeightMapMosaic;
+import org.terasology.core.world.generator.heightmap.HeightMapPyramid;
+import org.terasology.core.world.generator.heightmap.HeightMapSampler;
+import org.terasology.core.world.generator.heightmap.HeightMapSlopes;
+import org.terasology.core.world.generator.heightmap.TiledHeightMap;
+import org.terasology.engine.core.PathManager;
 import org.terasology.engine.rendering.assets.texture.Texture;
 import org.terasology.engine.utilities.Assets;
+import org.terasology.engine.world.block.BlockAreac;
 import org.terasology.engine.world.generation.Border3D;
 import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.GeneratingRegion;
 import org.terasology.engine.world.generation.Produces;
+import org.terasology.engine.world.generation.ScalableFacetProvider;
 import org.terasology.engine.world.generation.facets.ElevationFacet;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.entitysystem.component.Component;
-import org.terasology.math.TeraMath;
 import org.terasology.nui.properties.OneOf.Enum;
 import org.terasology.nui.properties.OneOf.List;
 import org.terasology.nui.properties.Range;
+import org.terasology.nui.properties.TextField;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Produces(ElevationFacet.class)
-public class HeightMapSurfaceHeightProvider implements ConfigurableFacetProvider {
+public class HeightMapSurfaceHeightProvider implements ConfigurableFacetProvider, ScalableFacetProvider {
 
     public enum WrapMode {
         CLAMP,
         REPEAT
     }
 
+    /**
+     * The folder in the game's home directory that height map files are read from.
+     */
+    public static final String HEIGHT_MAP_FOLDER = "heightmaps";
+
     private static final Logger logger = LoggerFactory.getLogger(HeightMapSurfaceHeightProvider.class);
 
-    private float[][] heightmap;
+    /**
+     * Loads height maps that are selected after the world generator was initialized.
+     */
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("height-map-loader-%d").setDaemon(true).build());
+
+    /**
+     * The current height map and everything derived from it is immutable, so it is published with a single swap.
+     * Generator threads keep using the previous one until a new height map is fully loaded.
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
 
-    private int mapWidth;
-    private int mapHeight;
+    private volatile HeightMapConfiguration configuration = new HeightMapConfiguration();
 
-    private HeightMapConfiguration configuration = new HeightMapConfiguration();
+    /**
+     * Counts the height map loads that were requested, so that a load that finishes after a later one was requested is
+     * never published. Only changed while holding the lock of this provider.
+     */
+    private volatile long loadGeneration;
 
     @Override
     public void setSeed(long seed) {
@@ -48,87 +81,206 @@ public class HeightMapSurfaceHeightProvider implements ConfigurableFacetProvider
 
     @Override
     public void initialize() {
-        if (heightmap == null) {
-            reloadHeightmap();
+        if (snapshot.get() == null) {
+            // generation cannot start without a height map, so the first one is loaded right away
+            long generation = loadGeneration;
+            try {
+                publish(loadHeightmap(configuration, fetchTexture(configuration)), generation);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read height map " + configuration.getHeightMapName(), e);
+            }
         }
     }
 
-    private void reloadHeightmap() {
-        logger.info("Reading height map '{}'", configuration.heightMap);
+    private void reloadHeightmapAsync(HeightMapConfiguration config) {
+        long generation;
+        synchronized (this) {
+            generation = ++loadGeneration;
+        }
+        String name = config.getHeightMapName();
+        // the asset system is not safe to use from the loader thread, only the decoding happens there
+        TexturePixels texture;
+        try {
+            texture = fetchTexture(config);
+        } catch (RuntimeException e) {
+            logger.error("Could not load height map texture '{}', keeping the previous one", name, e);
+            return;
+        }
+        LOADER.execute(() -> {
+            if (generation != loadGeneration) {
+                return; // superseded by a later selection
+            }
+            try {
+                publish(loadHeightmap(config, texture), generation);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not read height map '{}', keeping the previous one", name, e);
+            }
+        });
+    }
 
-        ResourceUrn urn = new ResourceUrn("CoreWorlds", configuration.heightMap);
-        Texture texture = Assets.getTexture(urn).get();
-        ByteBuffer[] bb = texture.getData().getBuffers();
-        IntBuffer intBuf = bb[0].asIntBuffer();
+    /**
+     * @return the pixels of the texture if the configuration selects one, null if it selects a file or a folder
+     */
+    private static TexturePixels fetchTexture(HeightMapConfiguration config) {
+        String name = config.getHeightMapName();
+        if (HeightMapFiles.isSupported(name) || Files.isDirectory(heightMapPath(name))) {
+            return null;
+        }
+        return new TexturePixels(Assets.getTexture(new ResourceUrn("CoreWorlds", name)).get());
+    }
+
+    private static Path heightMapPath(String name) {
+        return PathManager.getInstance().getHomePath().resolve(HEIGHT_MAP_FOLDER).resolve(name);
+    }
+
+    /**
+     * @param config the settings that select the height map
+     * @param texture the pixels of the selected texture, or null if a file or folder is selected
+     */
+    private static Snapshot loadHeightmap(HeightMapConfiguration config, TexturePixels texture) throws IOException {
+        String name = config.getHeightMapName();
+        logger.info("Reading height map '{}'", name);
+
+        Path path = heightMapPath(name);
+        if (texture == null && Files.isDirectory(path)) {
+            // mosaics can be far larger than memory, so their slopes are computed as tiles are sampled
+            HeightMapPyramid heights = new HeightMapMosaic(path, config.tileCacheSize * (1L << 20)).toPyramid();
+            HeightMapPyramid slopes = HeightMapSlopes.view(heights);
+            return new Snapshot(heights, slopes, config);
+        }
+
+        TiledHeightMap base = texture != null ? readTexture(texture) : HeightMapFiles.read(path);
+        HeightMapPyramid heights;
+        try {
+            heights = HeightMapPyramid.build(base);
+        } catch (IOException | RuntimeException e) {
+            base.close();
+            throw e;
+        }
+        try {
+            return new Snapshot(heights, HeightMapSlopes.precompute(heights), config);
+        } catch (IOException | RuntimeException e) {
+            heights.release();
+            throw e;
+        }
+    }
 
-        mapWidth = texture.getWidth();
-        mapHeight = texture.getHeight();
+    private static TiledHeightMap readTexture(TexturePixels texture) throws IOException {
+        // a view of its own, so that a texture can be decoded more than once
+        IntBuffer intBuf = texture.pixels.duplicate();
 
-        heightmap = new float[mapWidth][mapHeight];
+        int mapWidth = texture.width;
+        TiledHeightMap tiles = new TiledHeightMap(mapWidth, texture.height);
         while (intBuf.position() < intBuf.limit()) {
             int pos = intBuf.position();
             long val = intBuf.get() & 0xFFFFFFFFL;
-            heightmap[pos % mapWidth][pos / mapWidth] = val / (256 * 256 * 256 * 256f);
+            tiles.set(pos % mapWidth, pos / mapWidth, val / (256 * 256 * 256 * 256f));
         }
+        return tiles;
     }
 
     @Override
-    public void process(GeneratingRegion region) {
+    public void process(GeneratingRegion region, float scale) {
         Border3D border = region.getBorderForFacet(ElevationFacet.class);
         ElevationFacet facet = new ElevationFacet(region.getRegion(), border);
+        BlockAreac area = facet.getWorldArea();
+        HeightMapConfiguration config = configuration;
+
+        Snapshot current = acquire();
+        try {
+            current.heights.sample(area.minX(), area.minY(), area.getSizeX(), area.getSizeY(), scale,
+                    config.heightOffset, config.heightScale, facet.getInternal());
+        } finally {
+            current.release();
+        }
 
-        for (Vector2ic pos : facet.getWorldArea()) {
-            int xzScale = configuration.terrainScale;
-
-            int mapX0;
-            int mapZ0;
-            int mapX1;
-            int mapZ1;
-            switch (configuration.wrapMode) {
-                case CLAMP:
-                    mapX0 = TeraMath.clamp(pos.x(), 0, mapWidth * xzScale - 1) / xzScale;
-                    mapZ0 = TeraMath.clamp(pos.y(), 0, mapHeight * xzScale - 1) / xzScale;
-                    mapX1 = TeraMath.clamp(mapX0 + 1, 0, mapWidth - 1);
-                    mapZ1 = TeraMath.clamp(mapZ0 + 1, 0, mapHeight - 1);
-                    break;
-                case REPEAT:
-                    mapX0 = IntMath.mod(pos.x(), mapWidth * xzScale) / xzScale;
-                    mapZ0 = IntMath.mod(pos.y(), mapHeight * xzScale) / xzScale;
-                    mapX1 = IntMath.mod(mapX0 + 1, mapWidth);
-                    mapZ1 = IntMath.mod(mapZ0 + 1, mapHeight);
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Not supported: " + configuration.wrapMode);
-            }
-
-            double p00 = heightmap[mapX0][mapZ0];
-            double p10 = heightmap[mapX1][mapZ0];
-            double p11 = heightmap[mapX1][mapZ1];
-            double p01 = heightmap[mapX0][mapZ1];
-
-            float relX = IntMath.mod(pos.x(), xzScale) / (float) xzScale;
-            float relZ = IntMath.mod(pos.y(), xzScale) / (float) xzScale;
+        region.setRegionFacet(ElevationFacet.class, facet);
+    }
 
-            float interpolatedHeight = (float) lerp(relX, lerp(relZ, p00, p01), lerp(relZ, p10, p11));
-            float height = configuration.heightOffset + configuration.heightScale * interpolatedHeight;
+    /**
+     * Writes the steepness of the terrain, in blocks of height per block, for every block of the area into {@code target}.
+     * Uses the same height map as the elevation of this provider, including its wrap mode and scale.
+     *
+     * @param area the area in region coordinates
+     * @param scale the number of world blocks between two neighbouring samples
+     * @param target the array to write to, row by row with x as the fastest-changing coordinate
+     */
+    public void sampleSlope(BlockAreac area, float scale, float[] target) {
+        HeightMapConfiguration config = configuration;
+        Snapshot current = acquire();
+        try {
+            current.slopes.sample(area.minX(), area.minY(), area.getSizeX(), area.getSizeY(), scale,
+                    0, config.heightScale / config.terrainScale, target);
+        } finally {
+            current.release();
+        }
+    }
 
-            facet.setWorld(pos, height);
+    /**
+     * @return the height map that is currently in use, including its coarser levels, which the caller must
+     *         {@link HeightMapPyramid#release() release} when done with it
+     */
+    public HeightMapPyramid acquireHeightMap() {
+        while (true) {
+            HeightMapPyramid heights = snapshot.get().heights.getPyramid();
+            if (heights.retain()) {
+                return heights;
+            }
+            // replaced and closed in the meantime, the next snapshot is already published
         }
+    }
 
-        region.setRegionFacet(ElevationFacet.class, facet);
+    /**
+     * @return the height map that is currently in use, without retaining it. Only meant to tell whether the height map
+     *         changed, as it may be closed at any time; use {@link #acquireHeightMap()} to read from it.
+     */
+    public HeightMapPyramid peekHeightMap() {
+        return snapshot.get().heights.getPyramid();
+    }
 
+    /**
+     * @return the current snapshot, which stays open until it is released
+     */
+    private Snapshot acquire() {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.retain()) {
+                return current;
+            }
+        }
     }
 
-    private static double lerp(double t, double a, double b) {
-        return a + fade(t) * (b - a);  //not sure if i should fade t, needs a bit longer to generate chunks but is definately nicer
+    /**
+     * Makes a loaded height map visible to all threads, unless a later load was requested in the meantime, in which
+     * case the loaded height map is released right away.
+     *
+     * @param generation the {@link #loadGeneration} at the time the load was requested
+     */
+    private synchronized void publish(Snapshot loaded, long generation) {
+        if (generation != loadGeneration) {
+            loaded.release();
+            return;
+        }
+        swap(loaded);
     }
 
-    private static double fade(double t) {
-        // This is Perlin
-//        return t * t * t * (t * (t * 6 - 15) + 10);
+    /**
+     * Makes the given height map visible to all threads, with the samplers adjusted to the current settings.
+     * Only called with the lock held, so that a finished load and a settings change cannot overwrite each other's
+     * result. The height map that is replaced is closed once the last thread that still samples it is done.
+     */
+    private void swap(Snapshot loaded) {
+        Snapshot previous = snapshot.getAndSet(loaded.withSettings(configuration));
+        if (previous != null && !previous.sharesMapWith(loaded)) {
+            previous.release();
+        }
+    }
 
-        // This is Hermite
-        return t * t * (3 - 2 * t);
+    /**
+     * Recreates the samplers for the height map that is currently in use, e.g. after the wrap mode changed.
+     */
+    private synchronized void applySettings() {
+        swap(snapshot.get());
     }
 
     @Override
@@ -143,11 +295,81 @@ public class HeightMapSurfaceHeightProvider implements ConfigurableFacetProvider
 
     @Override
     public void setConfiguration(Component configuration) {
-        String prevHeightMap = this.configuration.heightMap;
+        HeightMapConfiguration prev = this.configuration;
         this.configuration = (HeightMapConfiguration) configuration;
 
-        if (!Objects.equals(prevHeightMap, this.configuration.heightMap)) {
-            reloadHeightmap();
+        if (snapshot.get() == null) {
+            return; // loaded by initialize()
+        }
+        if (!Objects.equals(prev.getHeightMapName(), this.configuration.getHeightMapName()) || prev.tileCacheSize != this.configuration.tileCacheSize) {
+            reloadHeightmapAsync(this.configuration);
+        } else {
+            applySettings();
+        }
+    }
+
+    /**
+     * The pixels of a height map texture, taken from the asset on the thread that selected it.
+     */
+    private static final class TexturePixels {
+        private final int width;
+        private final int height;
+        private final IntBuffer pixels;
+
+        TexturePixels(Texture texture) {
+            ByteBuffer[] bb = texture.getData().getBuffers();
+            this.width = texture.getWidth();
+            this.height = texture.getHeight();
+            this.pixels = bb[0].asIntBuffer();
+        }
+    }
+
+    /**
+     * A loaded height map together with the samplers for its heights and slopes. Snapshots that only differ in their
+     * settings share the height map, and the provider holds one reference to the height map that is in use.
+     */
+    private static final class Snapshot {
+        private final HeightMapSampler heights;
+        private final HeightMapSampler slopes;
+
+        Snapshot(HeightMapPyramid heights, HeightMapPyramid slopes, HeightMapConfiguration config) {
+            boolean repeat;
+            switch (config.wrapMode) {
+                case CLAMP:
+                    repeat = false;
+                    break;
+                case REPEAT:
+                    repeat = true;
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Not supported: " + config.wrapMode);
+            }
+            this.heights = new HeightMapSampler(heights, config.terrainScale, repeat);
+            this.slopes = new HeightMapSampler(slopes, config.terrainScale, repeat);
+        }
+
+        Snapshot withSettings(HeightMapConfiguration config) {
+            return new Snapshot(heights.getPyramid(), slopes.getPyramid(), config);
+        }
+
+        boolean sharesMapWith(Snapshot other) {
+            return heights.getPyramid() == other.heights.getPyramid();
+        }
+
+        boolean retain() {
+            if (!heights.getPyramid().retain()) {
+                return false;
+            }
+            if (!slopes.getPyramid().retain()) {
+                heights.getPyramid().release();
+                return false;
+            }
+            return true;
+        }
+
+        void release() {
+            slopes.getPyramid().release();
+            heights.getPyramid().release();
         }
     }
 
@@ -156,9 +378,20 @@ public class HeightMapSurfaceHeightProvider implements ConfigurableFacetProvider
         @Enum(description = "Wrap Mode")
         public WrapMode wrapMode = WrapMode.REPEAT;
 
+        /**
+         * The name of a texture in this module, used unless {@link #heightMapFile} is set.
+         */
         @List(items = { "platec_heightmap", "opposing_islands" }, description = "Height Map")
         public String heightMap = "platec_heightmap";
 
+        /**
+         * The name of a file in {@link HeightMapSurfaceHeightProvider#HEIGHT_MAP_FOLDER} in one of the formats
+         * supported by {@link HeightMapFiles}, or the name of a folder there that contains the tiles of a
+         * {@link HeightMapMosaic}. Empty to use {@link #heightMap}.
+         */
+        @TextField(description = "Height Map File or Folder")
+        public String heightMapFile = "";
+
         @Range(min = 0, max = 50f, increment = 1f, precision = 0, description = "Height Offset")
         public float heightOffset = 12;
 
@@ -168,13 +401,28 @@ public class HeightMapSurfaceHeightProvider implements ConfigurableFacetProvider
         @Range(min = 1, max = 32, increment = 1, precision = 0, description = "Terrain Scale Factor")
         public int terrainScale = 8;
 
+        /**
+         * The memory that the loaded tiles of a height map mosaic may occupy, in MiB.
+         */
+        @Range(min = 64, max = 4096, increment = 64, precision = 0, description = "Tile Cache Size (MiB)")
+        public int tileCacheSize = 512;
+
         @Override
         public void copyFrom(HeightMapConfiguration other) {
             this.wrapMode = other.wrapMode;
             this.heightMap = other.heightMap;
+            this.heightMapFile = other.heightMapFile;
             this.heightOffset = other.heightOffset;
             this.heightScale = other.heightScale;
             this.terrainScale = other.terrainScale;
+            this.tileCacheSize = other.tileCacheSize;
+        }
+
+        /**
+         * @return the file or folder if one is set, the texture otherwise
+         */
+        public String getHeightMapName() {
+            return heightMapFile == null || heightMapFile.isEmpty() ? heightMap : heightMapFile;
         }
     }
 }
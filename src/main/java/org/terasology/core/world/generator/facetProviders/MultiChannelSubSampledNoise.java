@@ -0,0 +1,170 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import com.google.common.base.Preconditions;
+import org.joml.Vector2fc;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.SubSampledNoise;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.utilities.procedural.RowNoise;
+
+/**
+ * Evaluates several noise functions on the same lattice and interpolates them bilinearly, like one
+ * {@link SubSampledNoise} per function would.
+ * <p>
+ * The lattice points are aligned to multiples of the sample rate in world coordinates. The lattice positions,
+ * interpolation weights and scratch buffers are computed once per area and shared by all channels, and the results
+ * are written straight into the target arrays, e.g. the internal arrays of the facets.
+ * <p>
+ * Sources that implement {@link RowNoise} are evaluated one lattice row at a time.
+ * <p>
+ * Instances are immutable and can be shared between threads. Scratch memory is kept per thread and reused.
+ */
+public final class MultiChannelSubSampledNoise {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final Noise[] sources;
+    private final float[] zoomX;
+    private final float[] zoomY;
+    private final int sampleRate;
+
+    /**
+     * @param sources the noise function of every channel
+     * @param zooms the factor from world coordinates to noise coordinates of every channel
+     * @param sampleRate the distance between two lattice points, in samples
+     */
+    public MultiChannelSubSampledNoise(Noise[] sources, Vector2fc[] zooms, int sampleRate) {
+        Preconditions.checkArgument(sources.length == zooms.length, "every channel needs a zoom");
+        Preconditions.checkArgument(sampleRate > 0, "sampleRate must be > 0");
+
+        this.sources = sources.clone();
+        this.sampleRate = sampleRate;
+        this.zoomX = new float[zooms.length];
+        this.zoomY = new float[zooms.length];
+        for (int c = 0; c < zooms.length; c++) {
+            zoomX[c] = zooms[c].x();
+            zoomY[c] = zooms[c].y();
+        }
+    }
+
+    /**
+     * Writes the noise of every channel for the given area into the target of the channel, row by row with x as
+     * the fastest-changing coordinate. Channels whose target is null are skipped.
+     *
+     * @param area the area to sample, e.g. the world area of a facet
+     * @param scale the number of world blocks between two neighbouring samples
+     * @param targets one array per channel, at least {@code area.area()} long, or null
+     */
+    public void noise(BlockAreac area, float scale, float[]... targets) {
+        Preconditions.checkArgument(targets.length == sources.length, "expected one target per channel");
+
+        int sizeX = area.getSizeX();
+        int sizeY = area.getSizeY();
+        int latticeMinX = area.minX() - Math.floorMod(area.minX(), sampleRate);
+        int latticeMinY = area.minY() - Math.floorMod(area.minY(), sampleRate);
+        int latticeWidth = (area.maxX() - latticeMinX) / sampleRate + 2;
+        int latticeHeight = (area.maxY() - latticeMinY) / sampleRate + 2;
+
+        int latticeSize = latticeWidth * latticeHeight;
+        for (float[] target : targets) {
+            Preconditions.checkArgument(target == null || target.length >= sizeX * sizeY, "target array is too small");
+        }
+
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(sizeX, sizeY, latticeWidth, sources.length * latticeSize);
+        int[] columns = scratch.columns;
+        float[] columnWeights = scratch.columnWeights;
+        int[] rows = scratch.rows;
+        float[] rowWeights = scratch.rowWeights;
+        float[] lattice = scratch.lattice;
+        float[] rowLerp = scratch.rowLerp;
+
+        prepareAxis(area.minX(), latticeMinX, sizeX, columns, columnWeights);
+        prepareAxis(area.minY(), latticeMinY, sizeY, rows, rowWeights);
+
+        // a single walk over the lattice rows, the values of channel c start at c * latticeSize
+        float[] xs = scratch.xs;
+        for (int j = 0; j < latticeHeight; j++) {
+            int worldY = latticeMinY + j * sampleRate;
+            for (int c = 0; c < sources.length; c++) {
+                if (targets[c] == null) {
+                    continue;
+                }
+                float y = scale * zoomY[c] * worldY;
+                int row = c * latticeSize + j * latticeWidth;
+                if (sources[c] instanceof RowNoise) {
+                    for (int i = 0; i < latticeWidth; i++) {
+                        xs[i] = scale * zoomX[c] * (latticeMinX + i * sampleRate);
+                    }
+                    ((RowNoise) sources[c]).noiseRow(xs, y, latticeWidth, rowLerp);
+                    System.arraycopy(rowLerp, 0, lattice, row, latticeWidth);
+                } else {
+                    for (int i = 0; i < latticeWidth; i++) {
+                        lattice[row + i] = sources[c].noise(scale * zoomX[c] * (latticeMinX + i * sampleRate), y);
+                    }
+                }
+            }
+        }
+
+        for (int y = 0; y < sizeY; y++) {
+            float wy = rowWeights[y];
+            int targetRow = y * sizeX;
+            for (int c = 0; c < sources.length; c++) {
+                float[] target = targets[c];
+                if (target == null) {
+                    continue;
+                }
+                int row0 = c * latticeSize + rows[y] * latticeWidth;
+                int row1 = row0 + latticeWidth;
+                for (int i = 0; i < latticeWidth; i++) {
+                    rowLerp[i] = lattice[row0 + i] + wy * (lattice[row1 + i] - lattice[row0 + i]);
+                }
+                for (int x = 0; x < sizeX; x++) {
+                    int col = columns[x];
+                    target[targetRow + x] = rowLerp[col] + columnWeights[x] * (rowLerp[col + 1] - rowLerp[col]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the lattice index and the interpolation weight of every sample along one axis.
+     */
+    private void prepareAxis(int min, int latticeMin, int size, int[] indices, float[] weights) {
+        for (int i = 0; i < size; i++) {
+            int offset = min + i - latticeMin;
+            indices[i] = offset / sampleRate;
+            weights[i] = (float) (offset % sampleRate) / sampleRate;
+        }
+    }
+
+    private static final class Scratch {
+        private int[] columns = new int[0];
+        private float[] columnWeights = new float[0];
+        private int[] rows = new int[0];
+        private float[] rowWeights = new float[0];
+        private float[] lattice = new float[0];
+        private float[] rowLerp = new float[0];
+        private float[] xs = new float[0];
+
+        void ensureCapacity(int sizeX, int sizeY, int latticeWidth, int latticeSize) {
+            if (columns.length < sizeX) {
+                columns = new int[sizeX];
+                columnWeights = new float[sizeX];
+            }
+            if (rows.length < sizeY) {
+                rows = new int[sizeY];
+                rowWeights = new float[sizeY];
+            }
+            if (lattice.length < latticeSize) {
+                lattice = new float[latticeSize];
+            }
+            if (rowLerp.length < latticeWidth) {
+                rowLerp = new float[latticeWidth];
+                xs = new float[latticeWidth];
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.engine.world.block.BlockAreac;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches noise values in square tiles, so that the overlapping borders of neighbouring regions are evaluated once.
+ * <p>
+ * Tiles are aligned to multiples of {@link #TILE_SIZE} in region coordinates and are identified by the noise, the
+ * tile position and the scale. Every tile has a single slot it can be stored in, a newer tile replaces the one in its
+ * slot. Lookups and replacements never lock, and the tiles themselves are never modified after they are stored.
+ * If a new tile would exceed the memory limit, the tiles in the following slots are dropped to make room for it.
+ * <p>
+ * The hit rate and memory use are logged at debug level every {@link #LOG_INTERVAL} misses.
+ */
+public final class NoiseTileCache {
+
+    /**
+     * The side length of a tile, in samples
+     */
+    public static final int TILE_SIZE = 32;
+
+    private static final Logger logger = LoggerFactory.getLogger(NoiseTileCache.class);
+
+    private static final long DEFAULT_MAX_BYTES = 32L << 20;
+    private static final int LOG_INTERVAL = 1 << 14;
+    private static final NoiseTileCache SHARED = new NoiseTileCache(DEFAULT_MAX_BYTES);
+    private static final AtomicLong NEXT_NOISE_ID = new AtomicLong();
+
+    private final AtomicReferenceArray<Tile> slots;
+    private final int slotMask;
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Computes the values of all channels of a tile.
+     */
+    @FunctionalInterface
+    public interface TileSource {
+        /**
+         * @param tile the area of the tile
+         * @param scale the number of world blocks between two neighbouring samples
+         * @param channels one array of {@code TILE_SIZE * TILE_SIZE} values per channel, to be filled row by row
+         */
+        void compute(BlockAreac tile, float scale, float[][] channels);
+    }
+
+    /**
+     * @param maxBytes the maximum memory used by the values of the stored tiles
+     */
+    public NoiseTileCache(long maxBytes) {
+        Preconditions.checkArgument(maxBytes >= tileBytes(1), "maxBytes must fit at least one tile");
+        this.maxBytes = maxBytes;
+        int slotCount = Integer.highestOneBit((int) Math.min(maxBytes / tileBytes(1), 1 << 30));
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.slotMask = slotCount - 1;
+    }
+
+    /**
+     * @return the cache that is shared by all noise providers
+     */
+    public static NoiseTileCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Every noise that uses the cache needs its own id, which also stands for its seed and settings.
+     *
+     * @return an id that was not returned before
+     */
+    public static long newNoiseId() {
+        return NEXT_NOISE_ID.getAndIncrement();
+    }
+
+    /**
+     * Writes the values of the given area into the targets, from stored tiles where possible and computing and storing
+     * the other tiles.
+     *
+     * @param noiseId the id of the noise
+     * @param channelCount the number of channels the source computes
+     * @param area the area to sample
+     * @param scale the number of world blocks between two neighbouring samples
+     * @param source computes missing tiles
+     * @param targets one array per channel, at least {@code area.area()} long, or null to skip the channel
+     */
+    public void fill(long noiseId, int channelCount, BlockAreac area, float scale, TileSource source, float[]... targets) {
+        Preconditions.checkArgument(targets.length == channelCount, "expected one target per channel");
+
+        int scaleBits = Float.floatToIntBits(scale);
+        int sizeX = area.getSizeX();
+        for (int tileY = Math.floorDiv(area.minY(), TILE_SIZE); tileY <= Math.floorDiv(area.maxY(), TILE_SIZE); tileY++) {
+            for (int tileX = Math.floorDiv(area.minX(), TILE_SIZE); tileX <= Math.floorDiv(area.maxX(), TILE_SIZE); tileX++) {
+                Tile tile = getOrCompute(noiseId, channelCount, tileX, tileY, scaleBits, scale, source);
+
+                int minX = Math.max(area.minX(), tileX * TILE_SIZE);
+                int maxX = Math.min(area.maxX(), tileX * TILE_SIZE + TILE_SIZE - 1);
+                int minY = Math.max(area.minY(), tileY * TILE_SIZE);
+                int maxY = Math.min(area.maxY(), tileY * TILE_SIZE + TILE_SIZE - 1);
+                int length = maxX - minX + 1;
+                for (int c = 0; c < channelCount; c++) {
+                    if (targets[c] == null) {
+                        continue;
+                    }
+                    for (int y = minY; y <= maxY; y++) {
+                        int from = (minX - tileX * TILE_SIZE) + (y - tileY * TILE_SIZE) * TILE_SIZE;
+                        int to = (minX - area.minX()) + (y - area.minY()) * sizeX;
+                        System.arraycopy(tile.channels[c], from, targets[c], to, length);
+                    }
+                }
+            }
+        }
+    }
+
+    private Tile getOrCompute(long noiseId, int channelCount, int tileX, int tileY, int scaleBits, float scale, TileSource source) {
+        int slot = slot(noiseId, tileX, tileY, scaleBits);
+        Tile stored = slots.get(slot);
+        if (stored != null && stored.matches(noiseId, tileX, tileY, scaleBits)) {
+            hits.increment();
+            return stored;
+        }
+        misses.increment();
+        if (logger.isDebugEnabled() && misses.sum() % LOG_INTERVAL == 0) {
+            logStatistics();
+        }
+
+        float[][] channels = new float[channelCount][TILE_SIZE * TILE_SIZE];
+        BlockAreac area = new BlockArea(tileX * TILE_SIZE, tileY * TILE_SIZE,
+                tileX * TILE_SIZE + TILE_SIZE - 1, tileY * TILE_SIZE + TILE_SIZE - 1);
+        source.compute(area, scale, channels);
+        Tile computed = new Tile(noiseId, tileX, tileY, scaleBits, channels);
+        store(slot, stored, computed);
+        return computed;
+    }
+
+    /**
+     * Replaces the tile in the slot, and drops the tiles of the following slots while the memory limit is exceeded.
+     * Nothing is stored if another thread replaced the tile in the meantime.
+     */
+    private void store(int slot, Tile previous, Tile tile) {
+        if (!slots.compareAndSet(slot, previous, tile)) {
+            return;
+        }
+        long used = usedBytes.addAndGet(tile.bytes() - (previous == null ? 0 : previous.bytes()));
+        // the tiles of the following slots are as good as random ones, and cheaper to find
+        for (int i = 1; used > maxBytes && i <= slotMask; i++) {
+            int victimSlot = (slot + i) & slotMask;
+            Tile victim = slots.get(victimSlot);
+            if (victim != null && slots.compareAndSet(victimSlot, victim, null)) {
+                used = usedBytes.addAndGet(-victim.bytes());
+            }
+        }
+        // a tile with more channels than the whole cache can hold
+        if (used > maxBytes && slots.compareAndSet(slot, tile, null)) {
+            usedBytes.addAndGet(-tile.bytes());
+        }
+    }
+
+    private void logStatistics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        logger.debug("Noise tile cache: {} hits, {} misses ({}% hits), {} of {} KiB used", hitCount, missCount,
+                Math.round(100.0 * hitCount / Math.max(1, hitCount + missCount)), usedBytes.get() >> 10, maxBytes >> 10);
+    }
+
+    private int slot(long noiseId, int tileX, int tileY, int scaleBits) {
+        long hash = noiseId * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ tileX) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ tileY) * 0x94D049BB133111EBL;
+        hash = (hash ^ scaleBits) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & slotMask;
+    }
+
+    private static long tileBytes(int channelCount) {
+        return (long) channelCount * TILE_SIZE * TILE_SIZE * Float.BYTES;
+    }
+
+    /**
+     * @return the number of tiles that were found in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of tiles that had to be computed
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the memory currently used by the values of the stored tiles
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return the maximum memory used by the values of the stored tiles
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static final class Tile {
+        private final long noiseId;
+        private final int tileX;
+        private final int tileY;
+        private final int scaleBits;
+        private final float[][] channels;
+
+        Tile(long noiseId, int tileX, int tileY, int scaleBits, float[][] channels) {
+            this.noiseId = noiseId;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.scaleBits = scaleBits;
+            this.channels = channels;
+        }
+
+        boolean matches(long otherNoiseId, int otherTileX, int otherTileY, int otherScaleBits) {
+            return noiseId == otherNoiseId && tileX == otherTileX && tileY == otherTileY && scaleBits == otherScaleBits;
+        }
+
+        long bytes() {
+            return tileBytes(channels.length);
+        }
+    }
+}
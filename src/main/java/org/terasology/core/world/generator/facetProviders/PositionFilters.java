@@ -21,6 +21,7 @@ import org.joml.Vector3i;
 import org.terasology.engine.utilities.procedural.Noise;
 import org.terasology.engine.world.generation.facets.DensityFacet;
 import org.terasology.engine.world.generation.facets.SurfacesFacet;
+import org.terasology.utilities.random.CounterRandom;
 
 import java.util.Set;
 
@@ -137,4 +138,28 @@ public final class PositionFilters {
         return input -> Math.abs(noiseGen.noise(input.x(), input.y(), input.z())) < density;
     }
 
+    /**
+     * Filters based on a {@link CounterRandom} stream, indexed by the height within the column
+     *
+     * @param stream  the stream of the columns to use
+     * @param density the threshold in [0..1]
+     * @return true if the random value is <b>below</b> the threshold
+     */
+    public static ColumnFilter probability(final int stream, final float density) {
+        return (column, input) -> CounterRandom.floatAt(column, stream, input.y()) < density;
+    }
+
+    /**
+     * A filter that also gets the {@link CounterRandom} key of the column, so that the key is only computed once per column
+     */
+    @FunctionalInterface
+    public interface ColumnFilter {
+
+        /**
+         * @param column the key of the column, see {@link CounterRandom#column(long, int, int)}
+         * @param input  the tested position
+         * @return true if the position passes the filter
+         */
+        boolean apply(long column, Vector3i input);
+    }
 }
@@ -0,0 +1,137 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The weights of the {@link QualityTier}s over the columns of an area, as chosen by {@link QualityBudget}.
+ * <p>
+ * Near the edge of two cells of different tiers, the noise of both tiers is mixed, so that the values fade from one
+ * tier into the other instead of jumping at the edge. The weights only depend on the world position of a column,
+ * so every region and border gives the same values there.
+ */
+public final class QualityBlend {
+
+    private static final QualityBlend[] UNIFORM = new QualityBlend[QualityTier.values().length];
+
+    static {
+        for (QualityTier tier : QualityTier.values()) {
+            UNIFORM[tier.ordinal()] = new QualityBlend(Collections.singletonList(tier), null, 0);
+        }
+    }
+
+    private final List<QualityTier> tiers;
+
+    /**
+     * The weight of every column by tier ordinal, null for the tiers that are not used, or null if only one tier is used
+     */
+    private final float[][] weights;
+    private final int sizeX;
+
+    private QualityBlend(List<QualityTier> tiers, float[][] weights, int sizeX) {
+        this.tiers = tiers;
+        this.weights = weights;
+        this.sizeX = sizeX;
+    }
+
+    /**
+     * @return a blend that uses the given tier everywhere
+     */
+    public static QualityBlend uniform(QualityTier tier) {
+        return UNIFORM[tier.ordinal()];
+    }
+
+    /**
+     * @param weights the weight of every column by tier ordinal, each summing up to 1 over all tiers
+     * @param sizeX the number of columns in a row of the area
+     */
+    static QualityBlend of(float[][] weights, int sizeX) {
+        List<QualityTier> used = new ArrayList<>();
+        for (QualityTier tier : QualityTier.values()) {
+            if (weights[tier.ordinal()] != null) {
+                used.add(tier);
+            }
+        }
+        return used.size() == 1 ? uniform(used.get(0)) : new QualityBlend(used, weights, sizeX);
+    }
+
+    /**
+     * @return the tiers with any weight in the area, at least one
+     */
+    public List<QualityTier> getTiers() {
+        return tiers;
+    }
+
+    /**
+     * @return whether the whole area uses one tier, which is then the only one in {@link #getTiers()}
+     */
+    public boolean isUniform() {
+        return weights == null;
+    }
+
+    /**
+     * @param tier the tier
+     * @param column the index of the column in the area, in row-major order
+     * @return the weight of the tier in the column
+     */
+    public float getWeight(QualityTier tier, int column) {
+        if (weights == null) {
+            return tiers.get(0) == tier ? 1 : 0;
+        }
+        float[] tierWeights = weights[tier.ordinal()];
+        return tierWeights == null ? 0 : tierWeights[column];
+    }
+
+    /**
+     * Adds the values of one tier, times the weight of the tier in their column, to the target.
+     *
+     * @param tier the tier the values were generated with
+     * @param values the values, ordered by x, then by {@code layers} layers, then by z
+     * @param target the values to add to, in the same order
+     * @param layers the number of values in every column, 1 for an area
+     */
+    public void addWeighted(QualityTier tier, float[] values, float[] target, int layers) {
+        int sizeZ = target.length / (sizeX * layers);
+        int index = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            for (int y = 0; y < layers; y++) {
+                for (int x = 0; x < sizeX; x++) {
+                    target[index] += getWeight(tier, x + z * sizeX) * values[index];
+                    index++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param noise generates the values of the area with a tier, see {@link #addWeighted(QualityTier, float[], float[], int)}
+     * @param layers the number of values in every column, 1 for an area
+     * @return the values of all tiers, weighted by the tiers of their columns
+     */
+    public float[] blend(Function<QualityTier, float[]> noise, int layers) {
+        if (weights == null) {
+            return noise.apply(tiers.get(0));
+        }
+        float[] result = null;
+        for (QualityTier tier : tiers) {
+            float[] values = noise.apply(tier);
+            if (result == null) {
+                result = new float[values.length];
+            }
+            addWeighted(tier, values, result, layers);
+        }
+        return result;
+    }
+
+    /**
+     * @param noise generates the values of the area with a tier, in row-major order
+     * @return the values of all tiers, weighted by the tiers of their columns
+     */
+    public float[] blend(Function<QualityTier, float[]> noise) {
+        return blend(noise, 1);
+    }
+}
@@ -0,0 +1,410 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.engine.world.block.BlockRegion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chooses the {@link QualityTier} of the noise providers so that generating a chunk takes about a given time.
+ * <p>
+ * The generator reports how long every chunk took. When the average exceeds the target, the tier is lowered, and when
+ * it falls well below the target, the tier is raised again. The tier only applies to cells of the world that have not
+ * been generated yet: every cell keeps the tier of the first region that was generated in or next to it, so that
+ * regenerating a region or the border of a neighbouring region gives the same values as before. Within
+ * {@link #BLEND_MARGIN} of the edge of two cells, the noise of their tiers is blended, see {@link QualityBlend}.
+ * <p>
+ * The tiers of the cells are grouped into square regions of {@link #REGION_CELLS} cells. Once a directory is set, every
+ * region is stored in a file of one byte per cell, so that the cells keep their tiers when the world is loaded again.
+ * Only the {@link #MAX_LOADED_REGIONS} most recently used regions are kept in memory. Without a directory, the tiers
+ * of the cells in regions that are dropped from memory are forgotten.
+ * <p>
+ * Cells are only recorded while a target time is set. Without one, the cells that were recorded before keep their
+ * tiers, and all other cells are generated at {@link QualityTier#HIGH} without being recorded.
+ */
+public final class QualityBudget {
+
+    /**
+     * The side length of the cells that share one tier, in blocks
+     */
+    public static final int CELL_SIZE = 256;
+
+    /**
+     * The side length of the regions that are stored together, in cells
+     */
+    public static final int REGION_CELLS = 32;
+
+    /**
+     * The number of regions whose tiers are kept in memory
+     */
+    public static final int MAX_LOADED_REGIONS = 64;
+
+    /**
+     * The width of the strip around the edge of two cells in which their tiers are blended, in blocks
+     */
+    public static final int BLEND_MARGIN = 64;
+
+    private static final String EXTENSION = ".tiers";
+
+    private static final Logger logger = LoggerFactory.getLogger(QualityBudget.class);
+
+    /**
+     * The number of chunks to measure before the tier may change again
+     */
+    private static final int MIN_CHUNKS_PER_TIER = 32;
+
+    /**
+     * The weight of the newest chunk in the average time
+     */
+    private static final double SMOOTHING = 0.1;
+
+    /**
+     * The tier is raised when the average time falls below this share of the target
+     */
+    private static final double RAISE_THRESHOLD = 0.6;
+
+    private static final QualityBudget FULL_QUALITY = new QualityBudget(false);
+
+    private final boolean adaptive;
+    private final Map<Long, Region> regions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Path directory;
+
+    /**
+     * Whether any cell may have a tier, so that the cells have to be looked up even without a budget
+     */
+    private volatile boolean recorded;
+
+    private volatile float targetMillis;
+    private volatile QualityTier currentTier = QualityTier.HIGH;
+
+    private double averageMillis;
+    private int chunksSinceChange;
+
+    public QualityBudget() {
+        this(true);
+    }
+
+    private QualityBudget(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return a budget that always uses {@link QualityTier#HIGH}, for providers that are used without a budget
+     */
+    public static QualityBudget fullQuality() {
+        return FULL_QUALITY;
+    }
+
+    /**
+     * @param targetMillis the time that generating a chunk should take, 0 to always generate at full quality
+     */
+    public void setTargetMillis(float targetMillis) {
+        Preconditions.checkState(adaptive, "the full quality budget cannot be changed");
+        this.targetMillis = targetMillis;
+        if (targetMillis <= 0) {
+            currentTier = QualityTier.HIGH;
+        }
+    }
+
+    /**
+     * Stores the tiers of the cells in the given directory from now on, and uses the tiers that are already stored there.
+     *
+     * @param directory the directory of the world, created if necessary, or null to keep the tiers in memory only
+     */
+    public void setDirectory(Path directory) {
+        Preconditions.checkState(adaptive, "the full quality budget cannot be changed");
+        boolean stored = directory != null && Files.isDirectory(directory);
+        synchronized (regions) {
+            this.directory = directory;
+            regions.clear();
+            recorded = stored;
+        }
+    }
+
+    /**
+     * @return the number of regions whose tiers are currently kept in memory
+     */
+    public int getLoadedRegionCount() {
+        synchronized (regions) {
+            return regions.size();
+        }
+    }
+
+    /**
+     * @return the time that generating a chunk should take, 0 if there is no budget
+     */
+    public float getTargetMillis() {
+        return targetMillis;
+    }
+
+    /**
+     * @return the tier that new cells get
+     */
+    public QualityTier getCurrentTier() {
+        return currentTier;
+    }
+
+    /**
+     * @param x the x coordinate of a block
+     * @param z the z coordinate of a block
+     * @return the tier of the cell that contains the block
+     */
+    public QualityTier tierAt(int x, int z) {
+        if (!adaptive) {
+            return QualityTier.HIGH;
+        }
+        return tierOf(Math.floorDiv(x, CELL_SIZE), Math.floorDiv(z, CELL_SIZE));
+    }
+
+    /**
+     * @param area the world area that is generated, with y as the z coordinate
+     * @param scale the number of world blocks between two neighbouring samples
+     * @return the tiers to generate the area with
+     */
+    public QualityBlend blendFor(BlockAreac area, float scale) {
+        return blendFor(area.minX(), area.minY(), area.getSizeX(), area.getSizeY(), scale);
+    }
+
+    /**
+     * @param region the world region that is generated
+     * @param scale the number of world blocks between two neighbouring samples
+     * @return the tiers to generate the columns of the region with
+     */
+    public QualityBlend blendFor(BlockRegion region, float scale) {
+        return blendFor(region.minX(), region.minZ(), region.getSizeX(), region.getSizeZ(), scale);
+    }
+
+    private QualityBlend blendFor(int minX, int minZ, int sizeX, int sizeZ, float scale) {
+        if (!adaptive || scale > 1) {
+            // previews are not stored and already use fewer octaves
+            return QualityBlend.uniform(QualityTier.HIGH);
+        }
+        int firstCellX = Math.floorDiv(minX - BLEND_MARGIN / 2, CELL_SIZE);
+        int firstCellZ = Math.floorDiv(minZ - BLEND_MARGIN / 2, CELL_SIZE);
+        int cellsX = Math.floorDiv(minX + sizeX - 1 + BLEND_MARGIN / 2, CELL_SIZE) - firstCellX + 1;
+        int cellsZ = Math.floorDiv(minZ + sizeZ - 1 + BLEND_MARGIN / 2, CELL_SIZE) - firstCellZ + 1;
+        QualityTier[] cells = new QualityTier[cellsX * cellsZ];
+        boolean uniform = true;
+        for (int z = 0; z < cellsZ; z++) {
+            for (int x = 0; x < cellsX; x++) {
+                cells[x + z * cellsX] = tierOf(firstCellX + x, firstCellZ + z);
+                uniform &= cells[x + z * cellsX] == cells[0];
+            }
+        }
+        if (uniform) {
+            return QualityBlend.uniform(cells[0]);
+        }
+
+        int[] lowerCellX = new int[sizeX];
+        float[] upperWeightX = new float[sizeX];
+        edgeWeights(minX, firstCellX, lowerCellX, upperWeightX);
+        int[] lowerCellZ = new int[sizeZ];
+        float[] upperWeightZ = new float[sizeZ];
+        edgeWeights(minZ, firstCellZ, lowerCellZ, upperWeightZ);
+
+        float[][] weights = new float[QualityTier.values().length][];
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                // the four cells around the nearest corner, most of them without weight
+                for (int dz = 0; dz < 2; dz++) {
+                    float weightZ = dz == 0 ? 1 - upperWeightZ[z] : upperWeightZ[z];
+                    for (int dx = 0; dx < 2; dx++) {
+                        float weight = weightZ * (dx == 0 ? 1 - upperWeightX[x] : upperWeightX[x]);
+                        if (weight > 0) {
+                            int tier = cells[lowerCellX[x] + dx + (lowerCellZ[z] + dz) * cellsX].ordinal();
+                            if (weights[tier] == null) {
+                                weights[tier] = new float[sizeX * sizeZ];
+                            }
+                            weights[tier][x + z * sizeX] += weight;
+                        }
+                    }
+                }
+            }
+        }
+        return QualityBlend.of(weights, sizeX);
+    }
+
+    /**
+     * Finds the nearest edge between two cells along one axis, and how far the upper cell reaches over it.
+     *
+     * @param min the first block coordinate on the axis
+     * @param firstCell the first cell that is passed to the blend, so that the cells are relative to it
+     * @param lowerCells receives the cell below the nearest edge of every block
+     * @param upperWeights receives the weight of the cell above the nearest edge of every block
+     */
+    private static void edgeWeights(int min, int firstCell, int[] lowerCells, float[] upperWeights) {
+        for (int i = 0; i < lowerCells.length; i++) {
+            int coordinate = min + i;
+            int edge = Math.floorDiv(coordinate + CELL_SIZE / 2, CELL_SIZE);
+            float start = edge * CELL_SIZE - BLEND_MARGIN / 2f;
+            lowerCells[i] = edge - 1 - firstCell;
+            upperWeights[i] = Math.min(1, Math.max(0, (coordinate + 0.5f - start) / BLEND_MARGIN));
+        }
+    }
+
+    private QualityTier tierOf(int cellX, int cellZ) {
+        boolean record = targetMillis > 0;
+        if (!record && !recorded) {
+            // without a budget, every cell that was not recorded before is generated at full quality anyway
+            return QualityTier.HIGH;
+        }
+        int regionX = Math.floorDiv(cellX, REGION_CELLS);
+        int regionZ = Math.floorDiv(cellZ, REGION_CELLS);
+        int index = Math.floorMod(cellX, REGION_CELLS) + Math.floorMod(cellZ, REGION_CELLS) * REGION_CELLS;
+
+        Region tiers = acquire(regionX, regionZ);
+        try {
+            byte value = tiers.get(index, record ? currentTier : null);
+            return value == 0 ? QualityTier.HIGH : QualityTier.values()[value - 1];
+        } finally {
+            release(tiers);
+        }
+    }
+
+    /**
+     * Keeps the region in memory until it is released again, so that no other copy of it is loaded meanwhile.
+     */
+    private Region acquire(int regionX, int regionZ) {
+        long key = (long) regionX << 32 | (regionZ & 0xFFFFFFFFL);
+        synchronized (regions) {
+            Region tiers = regions.get(key);
+            if (tiers == null) {
+                tiers = new Region(directory, regionX, regionZ);
+                regions.put(key, tiers);
+            }
+            tiers.users++;
+            // drop the least recently used regions that no other thread is reading or writing
+            Iterator<Region> iterator = regions.values().iterator();
+            while (regions.size() > MAX_LOADED_REGIONS && iterator.hasNext()) {
+                if (iterator.next().users == 0) {
+                    iterator.remove();
+                }
+            }
+            return tiers;
+        }
+    }
+
+    private void release(Region tiers) {
+        synchronized (regions) {
+            tiers.users--;
+        }
+    }
+
+    /**
+     * The tiers of the cells in one region, one byte per cell in row-major order. It is only loaded and stored while
+     * its own lock is held, so that the lock of all regions is never held while the files are read or written.
+     */
+    private final class Region {
+        private final Path file;
+        private byte[] tiers;
+
+        /**
+         * The number of threads that are using this region, guarded by the lock of {@link #regions}
+         */
+        private int users;
+
+        private Region(Path directory, int regionX, int regionZ) {
+            this.file = directory == null ? null : directory.resolve(regionX + "." + regionZ + EXTENSION);
+        }
+
+        /**
+         * @param index the index of the cell in the region
+         * @param tier the tier to record if the cell has none yet, null to not record it
+         * @return the stored tier one above its ordinal, 0 if the cell has none
+         */
+        private byte get(int index, QualityTier tier) {
+            byte value;
+            synchronized (this) {
+                if (tiers == null) {
+                    tiers = load();
+                }
+                if (tiers[index] != 0 || tier == null) {
+                    return tiers[index];
+                }
+                // 0 marks a cell that has not been generated yet, so the tiers are stored one above their ordinal
+                value = (byte) (tier.ordinal() + 1);
+                tiers[index] = value;
+                recorded = true;
+            }
+            // the region cannot be dropped and loaded again before the write is done, as it is still in use
+            store(index, value);
+            return value;
+        }
+
+        private byte[] load() {
+            byte[] region = new byte[REGION_CELLS * REGION_CELLS];
+            if (file == null) {
+                return region;
+            }
+            try {
+                byte[] stored = Files.readAllBytes(file);
+                for (int i = 0; i < Math.min(stored.length, region.length); i++) {
+                    // ignore anything that is not a tier, e.g. from a write that was interrupted
+                    region[i] = stored[i] > 0 && stored[i] <= QualityTier.values().length ? stored[i] : 0;
+                }
+            } catch (NoSuchFileException e) {
+                // nothing was generated in this region yet
+            } catch (IOException e) {
+                logger.warn("Could not read the quality tiers in {}, the cells in it get new tiers", file, e);
+            }
+            return region;
+        }
+
+        private void store(int index, byte value) {
+            if (file == null) {
+                return;
+            }
+            try {
+                Files.createDirectories(file.getParent());
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.wrap(new byte[]{value}), index);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not store the quality tier in {}, regenerating the cell may give different values", file, e);
+            }
+        }
+    }
+
+    /**
+     * @param nanos the time it took to generate a chunk
+     */
+    public synchronized void recordChunk(long nanos) {
+        float target = targetMillis;
+        if (target <= 0) {
+            return;
+        }
+        double millis = nanos / 1e6;
+        averageMillis = chunksSinceChange == 0 ? millis : averageMillis + SMOOTHING * (millis - averageMillis);
+        chunksSinceChange++;
+        if (chunksSinceChange < MIN_CHUNKS_PER_TIER) {
+            return;
+        }
+
+        QualityTier tier = currentTier;
+        if (averageMillis > target) {
+            tier = tier.lower();
+        } else if (averageMillis < target * RAISE_THRESHOLD) {
+            tier = tier.higher();
+        }
+        if (tier != currentTier) {
+            logger.debug("Chunks took {} ms on average for a target of {} ms, switching to quality {}", averageMillis, target, tier);
+            currentTier = tier;
+            chunksSinceChange = 0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.game.GameManifest;
+import org.terasology.engine.registry.CoreRegistry;
+import org.terasology.engine.world.generation.ConfigurableFacetProvider;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Range;
+
+/**
+ * Makes the target time of a {@link QualityBudget} configurable with the world. It does not produce any facets.
+ * <p>
+ * The tiers of the generated cells are stored in the save of the world, so that they are the same when the world is
+ * loaded again and are deleted together with it. Without a game, e.g. in the preview of a new world, they are only kept
+ * in memory.
+ */
+public class QualityBudgetProvider implements ConfigurableFacetProvider {
+
+    private static final String TIERS_FOLDER = "qualityTiers";
+
+    private final QualityBudget budget;
+
+    private Configuration configuration = new Configuration();
+
+    /**
+     * @param budget the budget that is shared with the providers it controls
+     */
+    public QualityBudgetProvider(QualityBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        GameManifest game = CoreRegistry.get(GameManifest.class);
+        budget.setDirectory(game == null ? null : PathManager.getInstance().getSavePath(game.getTitle()).resolve(TIERS_FOLDER));
+    }
+
+    @Override
+    public String getConfigurationName() {
+        return "Quality Budget";
+    }
+
+    @Override
+    public Component getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void setConfiguration(Component configuration) {
+        this.configuration = (Configuration) configuration;
+        budget.setTargetMillis(this.configuration.targetChunkMillis);
+    }
+
+    public static class Configuration implements Component<Configuration> {
+        @Range(min = 0, max = 500f, increment = 5f, precision = 0, description = "Target time per chunk in ms, 0 for full quality")
+        public float targetChunkMillis;
+
+        @Override
+        public void copyFrom(Configuration other) {
+            this.targetChunkMillis = other.targetChunkMillis;
+        }
+    }
+}
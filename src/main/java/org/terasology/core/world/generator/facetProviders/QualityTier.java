@@ -0,0 +1,61 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+/**
+ * The levels of detail that {@link QualityBudget} chooses from to keep chunk generation within its time budget.
+ */
+public enum QualityTier {
+    /**
+     * All octaves at the normal sample rate
+     */
+    HIGH(0, 1),
+
+    /**
+     * Two octaves less, which are barely visible on the terrain
+     */
+    MEDIUM(2, 1),
+
+    /**
+     * Three octaves less and a sample rate twice as large
+     */
+    LOW(3, 2);
+
+    private final int droppedOctaves;
+    private final int sampleRateFactor;
+
+    QualityTier(int droppedOctaves, int sampleRateFactor) {
+        this.droppedOctaves = droppedOctaves;
+        this.sampleRateFactor = sampleRateFactor;
+    }
+
+    /**
+     * @param octaves the number of octaves at full quality
+     * @return the number of octaves in this tier, at least one
+     */
+    public int octaves(int octaves) {
+        return Math.max(1, octaves - droppedOctaves);
+    }
+
+    /**
+     * @param sampleRate the sample rate at full quality
+     * @return the sample rate in this tier
+     */
+    public int sampleRate(int sampleRate) {
+        return sampleRate * sampleRateFactor;
+    }
+
+    /**
+     * @return the next tier with less detail, or this tier if it is the lowest
+     */
+    public QualityTier lower() {
+        return values()[Math.min(ordinal() + 1, values().length - 1)];
+    }
+
+    /**
+     * @return the next tier with more detail, or this tier if it is the highest
+     */
+    public QualityTier higher() {
+        return values()[Math.max(ordinal() - 1, 0)];
+    }
+}
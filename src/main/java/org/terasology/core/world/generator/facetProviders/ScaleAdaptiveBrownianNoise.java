@@ -0,0 +1,319 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import com.google.common.base.Preconditions;
+import org.joml.Vector2fc;
+import org.terasology.engine.utilities.procedural.AbstractNoise;
+import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.SubSampledNoise;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.utilities.procedural.RowBrownianNoise;
+import org.terasology.utilities.procedural.RowNoise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sub-sampled {@link BrownianNoise} that leaves out the octaves which are too fine for the distance between samples
+ * when regions are generated at a coarse scale.
+ * <p>
+ * An octave is kept if its wavelength is at least twice the distance between two evaluated lattice points. Without
+ * the others, the noise is the same as the low octaves of the full noise, multiplied by a factor that keeps its
+ * variance the same, so that e.g. the share of land and water does not change with the scale. At a scale of 1 or
+ * below, all octaves are used and the result is exactly that of the full noise.
+ * <p>
+ * This relies on {@link BrownianNoise} weighting octave {@code i} with {@code lacunarity^(-persistence * i)} and
+ * dividing the sum by the sum of the weights.
+ * <p>
+ * If the base noise is a {@link RowNoise}, the octaves are summed with {@link RowBrownianNoise} and the lattice is
+ * evaluated one row at a time.
+ * <p>
+ * Areas are sampled in tiles through the shared {@link NoiseTileCache}, so overlapping regions reuse the values.
+ */
+public final class ScaleAdaptiveBrownianNoise {
+
+    /**
+     * The approximate wavelength of the base noise, in noise coordinates
+     */
+    private static final double BASE_WAVELENGTH = 1.0;
+
+    /**
+     * The amount by which rounding may change a sum of octaves
+     */
+    private static final double ROUNDING_MARGIN = 1e-4;
+
+    /**
+     * The amount by which the noise may change when its coordinates are off by one unit in the last place, in units in
+     * the last place, as the octave coordinates may be rounded differently than in {@link BrownianNoise}
+     */
+    private static final double COORDINATE_ROUNDING_FACTOR = 64;
+
+    private final Noise source;
+    private final int octaves;
+    private final double lacunarity;
+    private final float sampleSpacing;
+    private final Vector2fc zoom;
+    private final int sampleRate;
+
+    /**
+     * The weight of every octave in the full noise, including the normalization
+     */
+    private final double[] normalizedWeights;
+
+    /**
+     * The noise with {@code i + 1} octaves at index {@code i}, the last one is the full noise
+     */
+    private final Noise[] sources;
+
+    /**
+     * The samplers of the octave counts and sample rates that were used, see {@link #samplerKey(int, int)}
+     */
+    private final Map<Integer, Sampler> samplers = new ConcurrentHashMap<>();
+
+    /**
+     * @param source the base noise, e.g. simplex noise or {@link org.terasology.utilities.procedural.RowSimplexNoise}
+     * @param octaves the number of octaves of the full noise
+     * @param zoom the factor from world coordinates to noise coordinates
+     * @param sampleRate the distance between two lattice points of the sub-sampling, in samples
+     */
+    public ScaleAdaptiveBrownianNoise(Noise source, int octaves, Vector2fc zoom, int sampleRate) {
+        Preconditions.checkArgument(octaves > 0, "at least one octave is required");
+        Preconditions.checkArgument(octaves < 1 << 15, "too many octaves");
+
+        BrownianNoise full = new BrownianNoise(source, octaves);
+        this.source = source;
+        this.octaves = octaves;
+        this.lacunarity = full.getLacunarity();
+        this.zoom = zoom;
+        this.sampleRate = sampleRate;
+        this.sampleSpacing = Math.max(zoom.x(), zoom.y()) * sampleRate;
+
+        double persistence = full.getPersistence();
+        double weightSum = 0;
+        double squaredWeightSum = 0;
+        double[] weightSums = new double[octaves];
+        double[] squaredWeightSums = new double[octaves];
+        for (int i = 0; i < octaves; i++) {
+            double weight = Math.pow(lacunarity, -persistence * i);
+            weightSum += weight;
+            squaredWeightSum += weight * weight;
+            weightSums[i] = weightSum;
+            squaredWeightSums[i] = squaredWeightSum;
+        }
+        normalizedWeights = new double[octaves];
+        for (int i = 0; i < octaves; i++) {
+            normalizedWeights[i] = Math.pow(lacunarity, -persistence * i) / weightSum;
+        }
+
+        sources = new Noise[octaves];
+        for (int count = 1; count <= octaves; count++) {
+            Noise noise = source instanceof RowNoise ? new RowBrownianNoise((RowNoise) source, count) : new BrownianNoise(source, count);
+            if (count < octaves) {
+                // back to the weights of the full noise, then up to its variance
+                double toFullWeights = weightSums[count - 1] / weightSum;
+                double varianceCompensation = Math.sqrt(squaredWeightSum / squaredWeightSums[count - 1]);
+                noise = new ScaledNoise(noise, (float) (toFullWeights * varianceCompensation));
+            }
+            sources[count - 1] = noise;
+        }
+    }
+
+    /**
+     * @param scale the number of world blocks between two neighbouring samples
+     * @return the number of octaves that are used at the given scale
+     */
+    public int octavesFor(float scale) {
+        if (scale <= 1) {
+            return octaves;
+        }
+        double spacing = sampleSpacing * scale;
+        int count = 1;
+        while (count < octaves && BASE_WAVELENGTH / Math.pow(lacunarity, count) >= 2 * spacing) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param count the number of octaves
+     * @return the noise with the given number of octaves, without sub-sampling
+     */
+    public Noise withOctaves(int count) {
+        return sources[count - 1];
+    }
+
+    /**
+     * Like {@link SubSampledNoise#noise(BlockAreac, float)}, using only the octaves that are visible at the scale.
+     */
+    public float[] noise(BlockAreac area, float scale) {
+        return noise(area, scale, QualityTier.HIGH);
+    }
+
+    /**
+     * Like {@link #noise(BlockAreac, float)}, with the octaves and the sample rate reduced to the quality tier.
+     */
+    public float[] noise(BlockAreac area, float scale, QualityTier tier) {
+        Sampler sampler = sampler(tier.octaves(octavesFor(scale)), tier.sampleRate(sampleRate));
+        float[] result = new float[area.area()];
+        NoiseTileCache.getShared().fill(sampler.noiseId, 1, area, scale,
+                (tile, tileScale, channels) -> sampler.sample(tile, tileScale, channels[0]), result);
+        return result;
+    }
+
+    private Sampler sampler(int count, int rate) {
+        return samplers.computeIfAbsent(samplerKey(count, rate), key -> new Sampler(sources[count - 1], zoom, rate, source instanceof RowNoise));
+    }
+
+    private static int samplerKey(int count, int rate) {
+        return count << 16 | rate;
+    }
+
+    /**
+     * Tests whether the noise is at least {@code bound} away from zero with the same sign in the whole area, i.e.
+     * whether {@code |noise| >= bound} holds for every sample of {@link #noise(BlockAreac, float)}.
+     * <p>
+     * Only the first octaves are evaluated, on the lattice points around the area. The other octaves can change the
+     * sum by at most the sum of their weights, as the base noise lies in [-1..1], and the samples are interpolated
+     * between the lattice points. The test is conservative: it may fail for areas where the bound holds.
+     *
+     * @param area the area to test
+     * @param scale the number of world blocks between two neighbouring samples, the test fails for scales above 1
+     * @param bound the minimum absolute value
+     * @param maxOctaves the number of octaves after which the test gives up
+     * @return true if the bound holds everywhere in the area
+     */
+    public boolean isBoundedAwayFromZero(BlockAreac area, float scale, float bound, int maxOctaves) {
+        if (scale > 1) {
+            // the truncated noises are scaled, which the remainder bound does not account for
+            return false;
+        }
+        int latticeMinX = area.minX() - Math.floorMod(area.minX(), sampleRate);
+        int latticeMinY = area.minY() - Math.floorMod(area.minY(), sampleRate);
+        int latticeWidth = (area.maxX() - latticeMinX) / sampleRate + 2;
+        int latticeHeight = (area.maxY() - latticeMinY) / sampleRate + 2;
+        int latticeSize = latticeWidth * latticeHeight;
+        float[] xs = new float[latticeSize];
+        float[] ys = new float[latticeSize];
+        for (int j = 0; j < latticeHeight; j++) {
+            for (int i = 0; i < latticeWidth; i++) {
+                xs[i + j * latticeWidth] = scale * zoom.x() * (latticeMinX + i * sampleRate);
+                ys[i + j * latticeWidth] = scale * zoom.y() * (latticeMinY + j * sampleRate);
+            }
+        }
+        // the lattice points that are samples themselves, the others only take part in the interpolation
+        boolean[] samples = new boolean[latticeSize];
+        for (int j = 0; j < latticeHeight; j++) {
+            for (int i = 0; i < latticeWidth; i++) {
+                samples[i + j * latticeWidth] = area.contains(latticeMinX + i * sampleRate, latticeMinY + j * sampleRate);
+            }
+        }
+        float maxCoordinate = Math.max(
+                Math.max(Math.abs(xs[0]), Math.abs(xs[latticeSize - 1])),
+                Math.max(Math.abs(ys[0]), Math.abs(ys[latticeSize - 1])));
+
+        double[] partialSums = new double[latticeSize];
+        double remainder = 1;
+        double roundingMargin = ROUNDING_MARGIN;
+        for (int octave = 0; octave < Math.min(maxOctaves, octaves); octave++) {
+            double weight = normalizedWeights[octave];
+            remainder -= weight;
+            roundingMargin += weight * COORDINATE_ROUNDING_FACTOR * Math.ulp(maxCoordinate);
+            double slack = Math.max(remainder, 0) + roundingMargin;
+            boolean positive = true;
+            boolean negative = true;
+            boolean violated = false;
+            for (int index = 0; index < latticeSize; index++) {
+                partialSums[index] += source.noise(xs[index], ys[index]) * weight;
+                positive &= partialSums[index] >= bound + slack;
+                negative &= partialSums[index] <= -bound - slack;
+                violated |= samples[index] && Math.abs(partialSums[index]) < bound - slack;
+                xs[index] *= (float) lacunarity;
+                ys[index] *= (float) lacunarity;
+            }
+            if (positive || negative) {
+                return true;
+            }
+            if (violated) {
+                // a sample is certainly below the bound, the other octaves cannot change that
+                return false;
+            }
+            maxCoordinate *= (float) lacunarity;
+        }
+        return false;
+    }
+
+    /**
+     * @return the full noise at the given world position
+     */
+    public float noise(float x, float y) {
+        return sampler(octaves, sampleRate).subSampled.noise(x, y);
+    }
+
+    /**
+     * Samples one of the noises on a lattice with one sample rate.
+     */
+    private static final class Sampler {
+        private final SubSampledNoise subSampled;
+
+        /**
+         * The row-wise sampling, null if the base noise is not a {@link RowNoise}
+         */
+        private final MultiChannelSubSampledNoise rowSampled;
+        private final long noiseId = NoiseTileCache.newNoiseId();
+
+        Sampler(Noise noise, Vector2fc zoom, int sampleRate, boolean rows) {
+            subSampled = new SubSampledNoise(noise, zoom, sampleRate);
+            rowSampled = rows
+                    ? new MultiChannelSubSampledNoise(new Noise[]{noise}, new Vector2fc[]{zoom}, sampleRate)
+                    : null;
+        }
+
+        void sample(BlockAreac area, float scale, float[] target) {
+            if (rowSampled == null) {
+                float[] values = subSampled.noise(area, scale);
+                System.arraycopy(values, 0, target, 0, values.length);
+            } else {
+                rowSampled.noise(area, scale, target);
+            }
+        }
+    }
+
+    /**
+     * Multiplies another noise with a constant factor.
+     */
+    private static final class ScaledNoise extends AbstractNoise implements RowNoise {
+        private final Noise source;
+        private final float factor;
+
+        ScaledNoise(Noise source, float factor) {
+            this.source = source;
+            this.factor = factor;
+        }
+
+        @Override
+        public float noise(float x, float y) {
+            return source.noise(x, y) * factor;
+        }
+
+        @Override
+        public float noise(float x, float y, float z) {
+            return source.noise(x, y, z) * factor;
+        }
+
+        @Override
+        public void noiseRow(float[] xs, float y, int count, float[] target) {
+            if (source instanceof RowNoise) {
+                ((RowNoise) source).noiseRow(xs, y, count, target);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    target[i] = source.noise(xs[i], y);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                target[i] *= factor;
+            }
+        }
+    }
+}
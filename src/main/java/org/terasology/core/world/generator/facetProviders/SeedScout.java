@@ -0,0 +1,58 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import com.google.common.base.Preconditions;
+
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Searches a sequence of candidate seeds for the first one that is accepted.
+ * <p>
+ * The candidates are tested in batches in parallel, and the first accepted candidate in the order of the sequence is
+ * returned, so the result is the same as that of a serial search.
+ */
+public final class SeedScout {
+
+    private final LongPredicate acceptance;
+    private final LongUnaryOperator next;
+    private final int batchSize;
+
+    /**
+     * @param acceptance tests whether a candidate is good enough, must be thread-safe
+     * @param next the candidate that follows a candidate
+     * @param batchSize the number of candidates that are tested at the same time
+     */
+    public SeedScout(LongPredicate acceptance, LongUnaryOperator next, int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be > 0");
+        this.acceptance = acceptance;
+        this.next = next;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Runs until a candidate is accepted.
+     *
+     * @param first the first candidate
+     * @return the first accepted candidate
+     */
+    public long find(long first) {
+        long[] candidates = new long[batchSize];
+        boolean[] accepted = new boolean[batchSize];
+        long candidate = first;
+        while (true) {
+            for (int i = 0; i < batchSize; i++) {
+                candidates[i] = candidate;
+                candidate = next.applyAsLong(candidate);
+            }
+            IntStream.range(0, batchSize).parallel().forEach(i -> accepted[i] = acceptance.test(candidates[i]));
+            for (int i = 0; i < batchSize; i++) {
+                if (accepted[i]) {
+                    return candidates[i];
+                }
+            }
+        }
+    }
+}
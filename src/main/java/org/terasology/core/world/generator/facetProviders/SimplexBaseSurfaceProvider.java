@@ -15,11 +15,16 @@
  */
 package org.terasology.core.world.generator.facetProviders;
 
+import com.google.common.primitives.Longs;
 import org.joml.Vector2f;
+import org.joml.Vector2fc;
 import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.Noise;
 import org.terasology.engine.utilities.procedural.SimplexNoise;
 import org.terasology.engine.utilities.procedural.SubSampledNoise;
+import org.terasology.engine.world.block.BlockAreac;
 import org.terasology.engine.world.generation.Border3D;
+import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.Facet;
 import org.terasology.engine.world.generation.GeneratingRegion;
 import org.terasology.engine.world.generation.Produces;
@@ -27,28 +32,66 @@ import org.terasology.engine.world.generation.Requires;
 import org.terasology.engine.world.generation.ScalableFacetProvider;
 import org.terasology.engine.world.generation.facets.ElevationFacet;
 import org.terasology.engine.world.generation.facets.SeaLevelFacet;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Checkbox;
+import org.terasology.nui.properties.TextField;
+import org.terasology.utilities.procedural.RowSimplexNoise;
 
 /**
  */
 @Produces(ElevationFacet.class)
 @Requires(@Facet(SeaLevelFacet.class))
-public class SimplexBaseSurfaceProvider implements ScalableFacetProvider {
+public class SimplexBaseSurfaceProvider implements ConfigurableFacetProvider, ScalableFacetProvider {
     private static final int SAMPLE_RATE = 4;
     private static final float BEACH_STEEPNESS = 0.05f;
     private static final float OCEAN_FLOOR_CUTOFF = 0.1f;
+    private static final Vector2fc ZOOM = new Vector2f(0.0002f, 0.0002f);
 
-    private SubSampledNoise surfaceNoise;
+    /**
+     * Looks for a seed with a spawn point slightly above sea level, trying one seed per core at a time
+     */
+    private static final SeedScout SCOUT = new SeedScout(SimplexBaseSurfaceProvider::isGoodSpawn, candidate -> candidate * 3,
+            Runtime.getRuntime().availableProcessors());
+
+    private ScaleAdaptiveBrownianNoise surfaceNoise;
+
+    private Configuration config = new Configuration();
+
+    private long seed;
+
+    private final QualityBudget budget;
+
+    public SimplexBaseSurfaceProvider() {
+        this(QualityBudget.fullQuality());
+    }
+
+    /**
+     * @param budget chooses the quality of the noise
+     */
+    public SimplexBaseSurfaceProvider(QualityBudget budget) {
+        this.budget = budget;
+    }
 
     @Override
     public void setSeed(long seed) {
-        float spawnHeight = -1;
-        long currentSeed = (seed % 2 == 0) ? seed - 1 : seed;
-        while (spawnHeight < 0 || spawnHeight > 0.2) {
-            BrownianNoise source = new BrownianNoise(new SimplexNoise(currentSeed), 8);
-            surfaceNoise = new SubSampledNoise(source, new Vector2f(0.0002f, 0.0002f), SAMPLE_RATE);
-            spawnHeight = surfaceNoise.noise(0, 0);
-            currentSeed *= 3;
+        this.seed = seed;
+        if (!config.isDerivedFrom(seed)) {
+            config.worldSeed = seed;
+            config.surfaceSeed = Long.toString(SCOUT.find((seed % 2 == 0) ? seed - 1 : seed));
         }
+        surfaceNoise = createNoise(config);
+    }
+
+    private static ScaleAdaptiveBrownianNoise createNoise(Configuration config) {
+        long surfaceSeed = config.getSurfaceSeed();
+        Noise base = config.rowNoise ? new RowSimplexNoise(surfaceSeed) : new SimplexNoise(surfaceSeed);
+        return new ScaleAdaptiveBrownianNoise(base, 8, ZOOM, SAMPLE_RATE);
+    }
+
+    private static boolean isGoodSpawn(long candidate) {
+        BrownianNoise source = new BrownianNoise(new SimplexNoise(candidate), 8);
+        float spawnHeight = new SubSampledNoise(source, ZOOM, SAMPLE_RATE).noise(0, 0);
+        return spawnHeight >= 0 && spawnHeight <= 0.2;
     }
 
     @Override
@@ -57,20 +100,79 @@ public class SimplexBaseSurfaceProvider implements ScalableFacetProvider {
         ElevationFacet facet = new ElevationFacet(region.getRegion(), border);
         SeaLevelFacet seaLevelFacet = region.getRegionFacet(SeaLevelFacet.class);
         float seaLevel = seaLevelFacet.getSeaLevel();
-        float[] noise = surfaceNoise.noise(facet.getWorldArea(), scale);
-
-        for (int i = 0; i < noise.length; ++i) {
-            if (noise[i] > 0) {
-                noise[i] = seaLevel + noise[i] * (noise[i] + BEACH_STEEPNESS) * 1000;
-            } else if (noise[i] > -OCEAN_FLOOR_CUTOFF) {
-                noise[i] /= OCEAN_FLOOR_CUTOFF;
-                noise[i] = (noise[i] + 1) * (noise[i] + 1) * seaLevel;
-            } else {
-                noise[i] = 0;
-            }
-        }
+        BlockAreac area = facet.getWorldArea();
+        float[] noise = budget.blendFor(area, scale).blend(tier -> surfaceNoise.noise(area, scale, tier));
+
+        FacetKernels.surfaceFromNoise(noise, noise.length, seaLevel, BEACH_STEEPNESS, OCEAN_FLOOR_CUTOFF);
 
         facet.set(noise);
         region.setRegionFacet(ElevationFacet.class, facet);
     }
+
+    @Override
+    public String getConfigurationName() {
+        return "Surface";
+    }
+
+    @Override
+    public Component getConfiguration() {
+        return config;
+    }
+
+    @Override
+    public void setConfiguration(Component configuration) {
+        // a copy, so that the component of the caller is never changed
+        Configuration effective = new Configuration();
+        effective.copyFrom((Configuration) configuration);
+        boolean seeded = surfaceNoise != null;
+        if (seeded && !effective.isDerivedFrom(seed)) {
+            // keep the seed that was found for the current world seed, e.g. when the world is created
+            effective.worldSeed = config.worldSeed;
+            effective.surfaceSeed = config.surfaceSeed;
+        }
+        boolean changed = !effective.surfaceSeed.equals(config.surfaceSeed) || effective.rowNoise != config.rowNoise;
+        config = effective;
+        if (seeded && changed) {
+            surfaceNoise = createNoise(effective);
+        }
+    }
+
+    /**
+     * Stores the seed of the surface noise with the world, so that it is not searched again when the world is loaded.
+     * The seed can be changed to get another surface for the same world seed.
+     */
+    public static class Configuration implements Component<Configuration> {
+        /**
+         * The world seed that the surface seed was derived from
+         */
+        public long worldSeed;
+
+        /**
+         * The seed of the surface noise, empty if it is not known yet
+         */
+        @TextField(description = "Surface Seed")
+        public String surfaceSeed = "";
+
+        /**
+         * Evaluates the noise one row at a time. Faster, but the last bits of the noise may differ from the scalar
+         * noise, which can move single blocks of existing worlds.
+         */
+        @Checkbox(description = "Fast Row Noise")
+        public boolean rowNoise;
+
+        boolean isDerivedFrom(long seed) {
+            return worldSeed == seed && Longs.tryParse(surfaceSeed.trim()) != null;
+        }
+
+        long getSurfaceSeed() {
+            return Long.parseLong(surfaceSeed.trim());
+        }
+
+        @Override
+        public void copyFrom(Configuration other) {
+            this.worldSeed = other.worldSeed;
+            this.surfaceSeed = other.surfaceSeed;
+            this.rowNoise = other.rowNoise;
+        }
+    }
 }
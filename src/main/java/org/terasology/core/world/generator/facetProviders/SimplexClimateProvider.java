@@ -0,0 +1,191 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.facetProviders;
+
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.SimplexNoise;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.engine.world.generation.ConfigurableFacetProvider;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.Produces;
+import org.terasology.engine.world.generation.ScalableFacetProvider;
+import org.terasology.engine.world.generation.facets.SurfaceHumidityFacet;
+import org.terasology.engine.world.generation.facets.SurfaceTemperatureFacet;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.utilities.procedural.RowSimplexNoise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Defines surface temperature and humidity in the range [0..1] based on random noise, with the same noise as
+ * {@link SimplexSurfaceTemperatureProvider} and {@link SimplexHumidityProvider}.
+ * <p>
+ * Both are sampled on the same lattice in a single pass with {@link MultiChannelSubSampledNoise}, which makes this
+ * cheaper than using both providers. The values are kept in tiles of the {@link NoiseTileCache} that hold both
+ * channels.
+ */
+@Produces({SurfaceTemperatureFacet.class, SurfaceHumidityFacet.class})
+public class SimplexClimateProvider implements ConfigurableFacetProvider, ScalableFacetProvider {
+    private static final int SAMPLE_RATE = 4;
+
+    private static final int TEMPERATURE = 0;
+    private static final int HUMIDITY = 1;
+
+    private volatile Channels channels;
+
+    private SimplexHumidityProvider.Configuration config = new SimplexHumidityProvider.Configuration();
+
+    private long seed;
+
+    private final QualityBudget budget;
+
+    public SimplexClimateProvider() {
+        this(QualityBudget.fullQuality());
+    }
+
+    /**
+     * @param budget chooses the quality of the noise
+     */
+    public SimplexClimateProvider(QualityBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+        reload();
+    }
+
+    @Override
+    public void process(GeneratingRegion region, float scale) {
+        SurfaceTemperatureFacet temperatureFacet = new SurfaceTemperatureFacet(region.getRegion(),
+                region.getBorderForFacet(SurfaceTemperatureFacet.class));
+        SurfaceHumidityFacet humidityFacet = new SurfaceHumidityFacet(region.getRegion(),
+                region.getBorderForFacet(SurfaceHumidityFacet.class));
+        float[] temperature = temperatureFacet.getInternal();
+        float[] humidity = humidityFacet.getInternal();
+
+        BlockAreac temperatureArea = temperatureFacet.getWorldArea();
+        BlockAreac humidityArea = humidityFacet.getWorldArea();
+        Channels current = channels;
+        if (sameArea(temperatureArea, humidityArea)) {
+            noise(current, temperatureArea, scale, temperature, humidity);
+        } else {
+            // the facets were requested with different borders
+            noise(current, temperatureArea, scale, temperature, null);
+            noise(current, humidityArea, scale, null, humidity);
+        }
+
+        FacetKernels.climateFromNoise(temperature, temperature.length);
+        FacetKernels.climateFromNoise(humidity, humidity.length);
+
+        region.setRegionFacet(SurfaceTemperatureFacet.class, temperatureFacet);
+        region.setRegionFacet(SurfaceHumidityFacet.class, humidityFacet);
+    }
+
+    /**
+     * Fills the channels with the noise of the tiers of the area, blended where the tier changes.
+     */
+    private void noise(Channels current, BlockAreac area, float scale, float[] temperature, float[] humidity) {
+        QualityBlend blend = budget.blendFor(area, scale);
+        if (blend.isUniform()) {
+            current.forScale(scale, blend.getTiers().get(0)).noise(area, scale, temperature, humidity);
+            return;
+        }
+        float[] tierTemperature = temperature == null ? null : new float[temperature.length];
+        float[] tierHumidity = humidity == null ? null : new float[humidity.length];
+        for (QualityTier tier : blend.getTiers()) {
+            current.forScale(scale, tier).noise(area, scale, tierTemperature, tierHumidity);
+            if (temperature != null) {
+                blend.addWeighted(tier, tierTemperature, temperature, 1);
+            }
+            if (humidity != null) {
+                blend.addWeighted(tier, tierHumidity, humidity, 1);
+            }
+        }
+    }
+
+    private static boolean sameArea(BlockAreac a, BlockAreac b) {
+        return a.minX() == b.minX() && a.minY() == b.minY() && a.maxX() == b.maxX() && a.maxY() == b.maxY();
+    }
+
+    @Override
+    public String getConfigurationName() {
+        return "Humidity";
+    }
+
+    @Override
+    public Component getConfiguration() {
+        return config;
+    }
+
+    @Override
+    public void setConfiguration(Component configuration) {
+        this.config = (SimplexHumidityProvider.Configuration) configuration;
+        reload();
+    }
+
+    private void reload() {
+        float humidityScale = config.scale * 0.01f;
+        Vector2fc[] zooms = new Vector2fc[2];
+        zooms[TEMPERATURE] = new Vector2f(0.0005f, 0.0005f);
+        zooms[HUMIDITY] = new Vector2f(humidityScale, humidityScale);
+        ScaleAdaptiveBrownianNoise temperature =
+                new ScaleAdaptiveBrownianNoise(createBase(seed + 5), 8, zooms[TEMPERATURE], SAMPLE_RATE);
+        ScaleAdaptiveBrownianNoise humidity =
+                new ScaleAdaptiveBrownianNoise(createBase(seed + 6), Math.max(1, config.octaves), zooms[HUMIDITY], SAMPLE_RATE);
+        channels = new Channels(temperature, humidity, zooms);
+    }
+
+    private Noise createBase(long noiseSeed) {
+        return config.rowNoise ? new RowSimplexNoise(noiseSeed) : new SimplexNoise(noiseSeed);
+    }
+
+    /**
+     * Samples both channels through the shared {@link NoiseTileCache}.
+     */
+    private static final class CachedSampler {
+        private final MultiChannelSubSampledNoise noise;
+        private final long noiseId = NoiseTileCache.newNoiseId();
+
+        CachedSampler(MultiChannelSubSampledNoise noise) {
+            this.noise = noise;
+        }
+
+        void noise(BlockAreac area, float scale, float[] temperature, float[] humidity) {
+            NoiseTileCache.getShared().fill(noiseId, 2, area, scale,
+                    (tile, tileScale, values) -> noise.noise(tile, tileScale, values), temperature, humidity);
+        }
+    }
+
+    /**
+     * The noise of both channels, with a sampler for every combination of octaves and quality tier that is used.
+     */
+    private static final class Channels {
+        private final ScaleAdaptiveBrownianNoise temperature;
+        private final ScaleAdaptiveBrownianNoise humidity;
+        private final Vector2fc[] zooms;
+        private final Map<Integer, CachedSampler> samplers = new ConcurrentHashMap<>();
+
+        Channels(ScaleAdaptiveBrownianNoise temperature, ScaleAdaptiveBrownianNoise humidity, Vector2fc[] zooms) {
+            this.temperature = temperature;
+            this.humidity = humidity;
+            this.zooms = zooms;
+        }
+
+        CachedSampler forScale(float scale, QualityTier tier) {
+            int temperatureOctaves = tier.octaves(temperature.octavesFor(scale));
+            int humidityOctaves = tier.octaves(humidity.octavesFor(scale));
+            int key = (temperatureOctaves * 256 + humidityOctaves) * QualityTier.values().length + tier.ordinal();
+            return samplers.computeIfAbsent(key, k -> {
+                Noise[] sources = new Noise[2];
+                sources[TEMPERATURE] = temperature.withOctaves(temperatureOctaves);
+                sources[HUMIDITY] = humidity.withOctaves(humidityOctaves);
+                return new CachedSampler(new MultiChannelSubSampledNoise(sources, zooms, tier.sampleRate(SAMPLE_RATE)));
+            });
+        }
+    }
+}
@@ -3,9 +3,8 @@
 package org.terasology.core.world.generator.facetProviders;
 
 import org.joml.Vector2f;
-import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.Noise;
 import org.terasology.engine.utilities.procedural.SimplexNoise;
-import org.terasology.engine.utilities.procedural.SubSampledNoise;
 import org.terasology.engine.world.generation.Border3D;
 import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.GeneratingRegion;
@@ -13,8 +12,9 @@ import org.terasology.engine.world.generation.Produces;
 import org.terasology.engine.world.generation.ScalableFacetProvider;
 import org.terasology.engine.world.generation.facets.SurfaceHumidityFacet;
 import org.terasology.gestalt.entitysystem.component.Component;
-import org.terasology.math.TeraMath;
+import org.terasology.nui.properties.Checkbox;
 import org.terasology.nui.properties.Range;
+import org.terasology.utilities.procedural.RowSimplexNoise;
 
 /**
  * Defines surface humidity in the range [0..1] based on random noise.
@@ -23,7 +23,7 @@ import org.terasology.nui.properties.Range;
 public class SimplexHumidityProvider implements ConfigurableFacetProvider, ScalableFacetProvider {
     private static final int SAMPLE_RATE = 4;
 
-    private SubSampledNoise humidityNoise;
+    private ScaleAdaptiveBrownianNoise humidityNoise;
 
     private Configuration config = new Configuration();
 
@@ -52,9 +52,7 @@ public class SimplexHumidityProvider implements ConfigurableFacetProvider, Scala
         SurfaceHumidityFacet facet = new SurfaceHumidityFacet(region.getRegion(), border);
 
         float[] noise = humidityNoise.noise(facet.getWorldArea(), scale);
-        for (int i = 0; i < noise.length; ++i) {
-            noise[i] = TeraMath.clamp((noise[i] * 2.11f + 1f) * 0.5f);
-        }
+        FacetKernels.climateFromNoise(noise, noise.length);
         facet.set(noise);
         region.setRegionFacet(SurfaceHumidityFacet.class, facet);
     }
@@ -78,8 +76,8 @@ public class SimplexHumidityProvider implements ConfigurableFacetProvider, Scala
     private void reload() {
         float realScale = config.scale * 0.01f;
         Vector2f scale = new Vector2f(realScale, realScale);
-        BrownianNoise brown = new BrownianNoise(new SimplexNoise(seed + 6), config.octaves);
-        humidityNoise = new SubSampledNoise(brown, scale, SAMPLE_RATE);
+        Noise base = config.rowNoise ? new RowSimplexNoise(seed + 6) : new SimplexNoise(seed + 6);
+        humidityNoise = new ScaleAdaptiveBrownianNoise(base, Math.max(1, config.octaves), scale, SAMPLE_RATE);
     }
 
     public static class Configuration implements Component<Configuration> {
@@ -89,10 +87,17 @@ public class SimplexHumidityProvider implements ConfigurableFacetProvider, Scala
         @Range(min = 0.01f, max = 5f, increment = 0.01f, precision = 2, description = "The noise scale")
         public float scale = 0.05f;
 
+        /**
+         * Evaluates the noise one row at a time, see {@link SimplexBaseSurfaceProvider.Configuration#rowNoise}
+         */
+        @Checkbox(description = "Fast Row Noise")
+        public boolean rowNoise;
+
         @Override
         public void copyFrom(Configuration other) {
             this.octaves = other.octaves;
             this.scale = other.scale;
+            this.rowNoise = other.rowNoise;
         }
     }
 }
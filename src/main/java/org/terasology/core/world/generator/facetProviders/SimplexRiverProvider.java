@@ -3,9 +3,10 @@
 package org.terasology.core.world.generator.facetProviders;
 
 import org.joml.Vector2f;
-import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.Noise;
 import org.terasology.engine.utilities.procedural.SimplexNoise;
-import org.terasology.engine.utilities.procedural.SubSampledNoise;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.engine.world.block.BlockAreac;
 import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.Facet;
 import org.terasology.engine.world.generation.GeneratingRegion;
@@ -13,7 +14,9 @@ import org.terasology.engine.world.generation.ScalableFacetProvider;
 import org.terasology.engine.world.generation.Updates;
 import org.terasology.engine.world.generation.facets.ElevationFacet;
 import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Checkbox;
 import org.terasology.nui.properties.Range;
+import org.terasology.utilities.procedural.RowSimplexNoise;
 
 /**
  * Applies an amount of the max depth for regions that are rivers
@@ -22,12 +25,34 @@ import org.terasology.nui.properties.Range;
 public class SimplexRiverProvider implements ScalableFacetProvider, ConfigurableFacetProvider {
     private static final int SAMPLE_RATE = 4;
 
-    private SubSampledNoise riverNoise;
+    /**
+     * The river noise only changes the elevation where its absolute value is below this
+     */
+    private static final float RIVER_BOUND = 1 / 20f;
+
+    /**
+     * The side length of the tiles that are tested for rivers, in samples
+     */
+    private static final int TILE_SIZE = NoiseTileCache.TILE_SIZE;
+
+    /**
+     * The number of octaves after which the test for rivers in a tile gives up
+     */
+    private static final int TEST_OCTAVES = 6;
+
+    private ScaleAdaptiveBrownianNoise riverNoise;
     private SimplexRiverProviderConfiguration configuration = new SimplexRiverProviderConfiguration();
+    private long seed;
 
     @Override
     public void setSeed(long seed) {
-        riverNoise = new SubSampledNoise(new BrownianNoise(new SimplexNoise(seed + 2), 8), new Vector2f(0.0008f, 0.0008f), SAMPLE_RATE);
+        this.seed = seed;
+        riverNoise = createNoise();
+    }
+
+    private ScaleAdaptiveBrownianNoise createNoise() {
+        Noise base = configuration.rowNoise ? new RowSimplexNoise(seed + 2) : new SimplexNoise(seed + 2);
+        return new ScaleAdaptiveBrownianNoise(base, 8, new Vector2f(0.0008f, 0.0008f), SAMPLE_RATE);
     }
 
     @Override
@@ -37,11 +62,30 @@ public class SimplexRiverProvider implements ScalableFacetProvider, Configurable
             return;
         }
         ElevationFacet facet = region.getRegionFacet(ElevationFacet.class);
-        float[] noise = riverNoise.noise(facet.getWorldArea(), scale);
-
+        BlockAreac area = facet.getWorldArea();
         float[] surfaceHeights = facet.getInternal();
-        for (int i = 0; i < noise.length; ++i) {
-            surfaceHeights[i] += configuration.maxDepth * Math.min(0, Math.abs(noise[i]) * 20f - 1);
+
+        // most tiles are provably far from any river, only the others need the full noise
+        for (int tileY = Math.floorDiv(area.minY(), TILE_SIZE); tileY <= Math.floorDiv(area.maxY(), TILE_SIZE); tileY++) {
+            for (int tileX = Math.floorDiv(area.minX(), TILE_SIZE); tileX <= Math.floorDiv(area.maxX(), TILE_SIZE); tileX++) {
+                int minX = Math.max(area.minX(), tileX * TILE_SIZE);
+                int minY = Math.max(area.minY(), tileY * TILE_SIZE);
+                int maxX = Math.min(area.maxX(), tileX * TILE_SIZE + TILE_SIZE - 1);
+                int maxY = Math.min(area.maxY(), tileY * TILE_SIZE + TILE_SIZE - 1);
+                BlockArea tile = new BlockArea(minX, minY, maxX, maxY);
+                if (!riverNoise.isBoundedAwayFromZero(tile, scale, RIVER_BOUND, TEST_OCTAVES)) {
+                    carveRivers(area, tile, scale, surfaceHeights);
+                }
+            }
+        }
+    }
+
+    private void carveRivers(BlockAreac area, BlockAreac tile, float scale, float[] surfaceHeights) {
+        float[] noise = riverNoise.noise(tile, scale);
+        int sizeX = tile.getSizeX();
+        for (int y = tile.minY(); y <= tile.maxY(); y++) {
+            int surfaceIndex = (tile.minX() - area.minX()) + (y - area.minY()) * area.getSizeX();
+            FacetKernels.carveRivers(noise, (y - tile.minY()) * sizeX, surfaceHeights, surfaceIndex, sizeX, configuration.maxDepth);
         }
     }
 
@@ -57,16 +101,28 @@ public class SimplexRiverProvider implements ScalableFacetProvider, Configurable
 
     @Override
     public void setConfiguration(Component configuration) {
-        this.configuration = (SimplexRiverProviderConfiguration) configuration;
+        SimplexRiverProviderConfiguration stored = (SimplexRiverProviderConfiguration) configuration;
+        boolean changed = stored.rowNoise != this.configuration.rowNoise;
+        this.configuration = stored;
+        if (changed && riverNoise != null) {
+            riverNoise = createNoise();
+        }
     }
 
     public static class SimplexRiverProviderConfiguration implements Component<SimplexRiverProviderConfiguration> {
         @Range(min = 0, max = 64f, increment = 1f, precision = 0, description = "River Depth")
         public float maxDepth = 16;
 
+        /**
+         * Evaluates the noise one row at a time, see {@link SimplexBaseSurfaceProvider.Configuration#rowNoise}
+         */
+        @Checkbox(description = "Fast Row Noise")
+        public boolean rowNoise;
+
         @Override
         public void copyFrom(SimplexRiverProviderConfiguration other) {
             this.maxDepth = other.maxDepth;
+            this.rowNoise = other.rowNoise;
         }
     }
 }
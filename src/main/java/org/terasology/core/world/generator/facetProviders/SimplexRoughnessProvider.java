@@ -2,11 +2,12 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.core.world.generator.facetProviders;
 
-import org.joml.Vector2ic;
+import org.joml.Vector2f;
 import org.terasology.core.world.generator.facets.SurfaceRoughnessFacet;
-import org.terasology.engine.utilities.procedural.BrownianNoise;
 import org.terasology.engine.utilities.procedural.Noise;
 import org.terasology.engine.utilities.procedural.SimplexNoise;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.Facet;
 import org.terasology.engine.world.generation.GeneratingRegion;
 import org.terasology.engine.world.generation.Produces;
@@ -14,6 +15,9 @@ import org.terasology.engine.world.generation.Requires;
 import org.terasology.engine.world.generation.ScalableFacetProvider;
 import org.terasology.engine.world.generation.facets.ElevationFacet;
 import org.terasology.engine.world.generation.facets.SeaLevelFacet;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Checkbox;
+import org.terasology.utilities.procedural.RowSimplexNoise;
 
 /**
  * Determines the surface roughness. Generally, higher areas are rougher, but there's some noise too.
@@ -23,14 +27,35 @@ import org.terasology.engine.world.generation.facets.SeaLevelFacet;
     @Facet(ElevationFacet.class),
     @Facet(SeaLevelFacet.class)
 })
-public class SimplexRoughnessProvider implements ScalableFacetProvider {
+public class SimplexRoughnessProvider implements ScalableFacetProvider, ConfigurableFacetProvider {
     private static final int SAMPLE_RATE = 4;
 
-    private Noise noise;
+    private ScaleAdaptiveBrownianNoise noise;
+    private Configuration configuration = new Configuration();
+    private long seed;
+
+    private final QualityBudget budget;
+
+    public SimplexRoughnessProvider() {
+        this(QualityBudget.fullQuality());
+    }
+
+    /**
+     * @param budget chooses the quality of the noise
+     */
+    public SimplexRoughnessProvider(QualityBudget budget) {
+        this.budget = budget;
+    }
 
     @Override
     public void setSeed(long seed) {
-        noise = new BrownianNoise(new SimplexNoise(seed + 92658), 3);
+        this.seed = seed;
+        noise = createNoise();
+    }
+
+    private ScaleAdaptiveBrownianNoise createNoise() {
+        Noise base = configuration.rowNoise ? new RowSimplexNoise(seed + 92658) : new SimplexNoise(seed + 92658);
+        return new ScaleAdaptiveBrownianNoise(base, 3, new Vector2f(1 / 500f, 1 / 500f), SAMPLE_RATE);
     }
 
     @Override
@@ -39,12 +64,60 @@ public class SimplexRoughnessProvider implements ScalableFacetProvider {
         SeaLevelFacet seaLevelFacet = region.getRegionFacet(SeaLevelFacet.class);
         SurfaceRoughnessFacet facet = new SurfaceRoughnessFacet(region.getRegion(), region.getBorderForFacet(SurfaceRoughnessFacet.class));
 
-        for (Vector2ic pos : facet.getWorldArea()) {
-            float height = elevationFacet.getWorld(pos) - seaLevelFacet.getSeaLevel();
-            float value = 0.25f + height * 0.007f + noise.noise(pos.x() * scale / 500f, pos.y() * scale / 500f) * 1.5f;
-            facet.setWorld(pos, value);
+        BlockAreac area = facet.getWorldArea();
+        float[] noiseValues = budget.blendFor(area, scale).blend(tier -> noise.noise(area, scale, tier));
+        float[] values = facet.getInternal();
+        float[] heights = elevationFacet.getInternal();
+
+        // the elevation facet may have a larger border, so its rows are offset and possibly longer
+        BlockAreac elevationArea = elevationFacet.getWorldArea();
+        int elevationSizeX = elevationArea.getSizeX();
+        int elevationIndex = (area.minX() - elevationArea.minX()) + (area.minY() - elevationArea.minY()) * elevationSizeX;
+        int sizeX = area.getSizeX();
+        int seaLevel = seaLevelFacet.getSeaLevel();
+        int index = 0;
+        for (int y = 0; y < area.getSizeY(); y++) {
+            for (int x = 0; x < sizeX; x++) {
+                float height = heights[elevationIndex + x] - seaLevel;
+                values[index] = 0.25f + height * 0.007f + noiseValues[index] * 1.5f;
+                index++;
+            }
+            elevationIndex += elevationSizeX;
         }
 
         region.setRegionFacet(SurfaceRoughnessFacet.class, facet);
     }
+
+    @Override
+    public String getConfigurationName() {
+        return "Roughness";
+    }
+
+    @Override
+    public Component getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void setConfiguration(Component configuration) {
+        Configuration stored = (Configuration) configuration;
+        boolean changed = stored.rowNoise != this.configuration.rowNoise;
+        this.configuration = stored;
+        if (changed && noise != null) {
+            noise = createNoise();
+        }
+    }
+
+    public static class Configuration implements Component<Configuration> {
+        /**
+         * Evaluates the noise one row at a time, see {@link SimplexBaseSurfaceProvider.Configuration#rowNoise}
+         */
+        @Checkbox(description = "Fast Row Noise")
+        public boolean rowNoise;
+
+        @Override
+        public void copyFrom(Configuration other) {
+            this.rowNoise = other.rowNoise;
+        }
+    }
 }
@@ -21,13 +21,12 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import org.joml.Vector3i;
-import org.terasology.engine.utilities.procedural.Noise;
-import org.terasology.engine.utilities.procedural.WhiteNoise;
 import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.engine.world.generation.FacetProvider;
 import org.terasology.engine.world.generation.facets.SurfacesFacet;
 import org.terasology.engine.world.generation.facets.base.ObjectFacet2D;
 import org.terasology.engine.world.generation.facets.base.ObjectFacet3D;
+import org.terasology.utilities.random.CounterRandom;
 
 import java.util.List;
 import java.util.Map;
@@ -39,13 +38,43 @@ import java.util.Map;
  */
 public abstract class SurfaceObjectProvider<B, T> implements FacetProvider {
 
-    private Noise typeNoiseGen;
+    /**
+     * The {@link CounterRandom} stream of a column that decides whether objects are placed, see {@link #densityFilter(float)}
+     */
+    public static final int DENSITY_STREAM = 0;
+
+    /**
+     * The {@link CounterRandom} stream of a column that decides the type of the placed objects
+     */
+    public static final int TYPE_STREAM = 1;
+
+    /**
+     * The first {@link CounterRandom} stream of a column that is free for the rasterizers of the placed objects
+     */
+    public static final int FIRST_FREE_STREAM = 2;
+
+    private long seed;
 
     private final Table<B, T, Float> probsTable = HashBasedTable.create();
 
     @Override
     public void setSeed(long seed) {
-        typeNoiseGen = new WhiteNoise(seed + 1);
+        this.seed = seed;
+    }
+
+    /**
+     * @return the world seed, which the column keys are derived from
+     */
+    protected long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param density the share of positions to keep, in [0..1]
+     * @return a filter that keeps random positions, drawn from the same column streams as the object types
+     */
+    protected PositionFilters.ColumnFilter densityFilter(float density) {
+        return PositionFilters.probability(DENSITY_STREAM, density);
     }
 
     /**
@@ -57,6 +86,20 @@ public abstract class SurfaceObjectProvider<B, T> implements FacetProvider {
      * @param filters      a set of filters
      */
     protected void populateFacet(ObjectFacet3D<T> facet, SurfacesFacet surfaceFacet, ObjectFacet2D<? extends B> typeFacet, List<Predicate<Vector3i>> filters) {
+        populateFacet(facet, surfaceFacet, typeFacet, filters, (column, pos) -> true);
+    }
+
+    /**
+     * Populates a given facet based on filters and population densities
+     *
+     * @param facet        the facet to populate
+     * @param surfaceFacet the surface height facet
+     * @param typeFacet    the facet that provides the environment
+     * @param filters      a set of filters
+     * @param columnFilter a filter that is tested first, with the column key that is computed once per column
+     */
+    protected void populateFacet(ObjectFacet3D<T> facet, SurfacesFacet surfaceFacet, ObjectFacet2D<? extends B> typeFacet, List<Predicate<Vector3i>> filters,
+                                 PositionFilters.ColumnFilter columnFilter) {
 
         BlockRegionc worldRegion = facet.getWorldRegion();
 
@@ -67,6 +110,7 @@ public abstract class SurfaceObjectProvider<B, T> implements FacetProvider {
 
         for (int z = worldRegion.minZ(); z <= worldRegion.maxZ(); z++) {
             for (int x = worldRegion.minX(); x <= worldRegion.maxX(); x++) {
+                long column = CounterRandom.column(seed, x, z);
                 for (int surface : surfaceFacet.getWorldColumn(x, z)) {
 
                     int height = surface + 1;
@@ -76,10 +120,10 @@ public abstract class SurfaceObjectProvider<B, T> implements FacetProvider {
                         pos.set(x, height, z);
 
                         // if all predicates match
-                        if (applyAll(filters, pos)) {
+                        if (columnFilter.apply(column, pos) && applyAll(filters, pos)) {
                             B biome = typeFacet.getWorld(x, z);
                             Map<T, Float> plantProb = probsTable.row(biome);
-                            T type = getType(x, z, plantProb);
+                            T type = pickType(CounterRandom.floatAt(column, TYPE_STREAM, 0), plantProb);
                             if (type != null) {
                                 facet.setWorld(x, height, z, type);
                             }
@@ -131,8 +175,11 @@ public abstract class SurfaceObjectProvider<B, T> implements FacetProvider {
      * @return a random pick from the map or <code>null</code>
      */
     protected T getType(int x, int z, Map<T, Float> objs) {
-        float random = Math.abs(typeNoiseGen.noise(x, z));
+        return pickType(CounterRandom.floatAt(CounterRandom.column(seed, x, z), TYPE_STREAM, 0), objs);
+    }
 
+    private T pickType(float randomValue, Map<T, Float> objs) {
+        float random = randomValue;
         for (T generator : objs.keySet()) {
             Float threshold = objs.get(generator);
             if (threshold != null) {
@@ -25,7 +25,30 @@ import org.terasology.engine.world.generation.facets.base.SparseObjectFacet3D;
  */
 public class FloraFacet extends SparseObjectFacet3D<FloraType> {
 
+    private final long seed;
+
+    /**
+     * Uses 0 as the world seed, so the plants get the same random values in every world.
+     *
+     * @deprecated pass the world seed to {@link #FloraFacet(BlockRegion, Border3D, long)}
+     */
+    @Deprecated
     public FloraFacet(BlockRegion targetRegion, Border3D border) {
+        this(targetRegion, border, 0);
+    }
+
+    /**
+     * @param seed the world seed, which the rasterizer derives the random values of the plants from
+     */
+    public FloraFacet(BlockRegion targetRegion, Border3D border, long seed) {
         super(targetRegion, border);
+        this.seed = seed;
+    }
+
+    /**
+     * @return the world seed, see {@link org.terasology.utilities.random.CounterRandom#column(long, int, int)}
+     */
+    public long getSeed() {
+        return seed;
     }
 }
@@ -0,0 +1,46 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+/**
+ * A read-only, rectangular grid of height values, usually normalized to [0..1].
+ * Implementations must allow concurrent reads from multiple generator threads.
+ */
+public interface HeightMap {
+
+    /**
+     * @return the number of columns
+     */
+    int getWidth();
+
+    /**
+     * @return the number of rows
+     */
+    int getHeight();
+
+    /**
+     * @param x the column in [0..width)
+     * @param z the row in [0..height)
+     * @return the height value at the given position
+     */
+    float get(int x, int z);
+
+    /**
+     * Reads the values at all combinations of the given columns and rows. Implementations that are expensive to
+     * access per value, e.g. because the values are spread over tiles that have to be looked up, override this to
+     * do that work once per call.
+     *
+     * @param xs the columns to read, each in [0..width)
+     * @param columnCount the number of columns
+     * @param zs the rows to read, each in [0..height)
+     * @param rowCount the number of rows
+     * @param target receives the values row by row, {@code columnCount} values per row
+     */
+    default void read(int[] xs, int columnCount, int[] zs, int rowCount, float[] target) {
+        for (int j = 0; j < rowCount; j++) {
+            for (int i = 0; i < columnCount; i++) {
+                target[i + j * columnCount] = get(xs[i], zs[j]);
+            }
+        }
+    }
+}
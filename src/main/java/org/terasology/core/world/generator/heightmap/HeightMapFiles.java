@@ -0,0 +1,311 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads height map files directly into a {@link TiledHeightMap}, streaming them in large blocks.
+ * <p>
+ * Supported formats are:
+ * <ul>
+ *     <li><b>.r16</b> and <b>.raw</b> - unsigned 16-bit little-endian samples</li>
+ *     <li><b>.r32</b> - 32-bit little-endian floats, already normalized to [0..1]</li>
+ *     <li><b>.png</b> - 8-bit or 16-bit grayscale images without interlacing</li>
+ * </ul>
+ * Raw files carry no header. Their size is read from the file name, e.g. <code>alps_4096x2048.r16</code>,
+ * or they are assumed to be square.
+ */
+public final class HeightMapFiles {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private static final Pattern SIZE_SUFFIX = Pattern.compile(".*_(\\d+)x(\\d+)\\.[^.]+");
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int PNG_GRAYSCALE = 0;
+
+    private HeightMapFiles() {
+        // no instances
+    }
+
+    /**
+     * @param fileName the name of the file
+     * @return true if the file name has an extension that {@link #read(Path)} understands
+     */
+    public static boolean isSupported(String fileName) {
+        switch (extension(fileName)) {
+            case "r16":
+            case "raw":
+            case "r32":
+            case "png":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param file the file to read
+     * @return a new height map with values in [0..1]
+     * @throws IOException if the file cannot be read or has an unsupported format
+     */
+    public static TiledHeightMap read(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            switch (extension(fileName)) {
+                case "r16":
+                case "raw":
+                    return readRaw(channel, fileName, Short.BYTES);
+                case "r32":
+                    return readRaw(channel, fileName, Float.BYTES);
+                case "png":
+                    return readPng(channel);
+                default:
+                    throw new IOException("Unsupported height map format: " + fileName);
+            }
+        }
+    }
+
+    private static TiledHeightMap readRaw(FileChannel channel, String fileName, int sampleSize) throws IOException {
+        long samples = channel.size() / sampleSize;
+        int width;
+        int height;
+        Matcher matcher = SIZE_SUFFIX.matcher(fileName);
+        if (matcher.matches()) {
+            width = Integer.parseInt(matcher.group(1));
+            height = Integer.parseInt(matcher.group(2));
+        } else {
+            width = (int) Math.round(Math.sqrt(samples));
+            height = width;
+        }
+        if ((long) width * height != samples) {
+            throw new IOException("Size of " + fileName + " does not match " + width + "x" + height + " samples");
+        }
+
+        TiledHeightMap heightMap = new TiledHeightMap(width, height);
+        try {
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int x = 0;
+            int z = 0;
+            while (z < height) {
+                if (channel.read(block) < 0) {
+                    throw new EOFException("Unexpected end of " + fileName);
+                }
+                block.flip();
+                while (block.remaining() >= sampleSize) {
+                    float value = sampleSize == Short.BYTES
+                            ? (block.getShort() & 0xFFFF) / (float) (1 << 16)
+                            : block.getFloat();
+                    heightMap.set(x, z, value);
+                    if (++x == width) {
+                        x = 0;
+                        z++;
+                    }
+                }
+                block.compact();
+            }
+            return heightMap;
+        } catch (IOException | RuntimeException e) {
+            heightMap.close();
+            throw e;
+        }
+    }
+
+    private static TiledHeightMap readPng(FileChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BLOCK_SIZE));
+
+        byte[] signature = new byte[PNG_SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, PNG_SIGNATURE)) {
+            throw new IOException("Not a PNG file");
+        }
+
+        in.readInt();
+        if (!"IHDR".equals(readChunkType(in))) {
+            throw new IOException("PNG header is missing");
+        }
+        int width = in.readInt();
+        int height = in.readInt();
+        int bitDepth = in.readUnsignedByte();
+        int colorType = in.readUnsignedByte();
+        in.readUnsignedByte(); // compression, always deflate
+        in.readUnsignedByte(); // filter method, always adaptive
+        int interlace = in.readUnsignedByte();
+        in.readInt(); // CRC
+        if (colorType != PNG_GRAYSCALE || (bitDepth != 8 && bitDepth != 16) || interlace != 0) {
+            throw new IOException("Only non-interlaced 8-bit or 16-bit grayscale PNG height maps are supported");
+        }
+
+        int bytesPerPixel = bitDepth / 8;
+        int stride = width * bytesPerPixel;
+        byte[] previous = new byte[stride];
+        byte[] current = new byte[stride];
+        float maxValue = 1 << bitDepth;
+
+        TiledHeightMap heightMap = new TiledHeightMap(width, height);
+        // an inflater that is passed in is not ended by the stream, its native memory is freed here
+        Inflater inflater = new Inflater();
+        try {
+            DataInputStream pixels = new DataInputStream(new InflaterInputStream(new PngDataStream(in), inflater, BLOCK_SIZE));
+            for (int z = 0; z < height; z++) {
+                int filter = pixels.readUnsignedByte();
+                pixels.readFully(current);
+                unfilter(filter, current, previous, bytesPerPixel);
+                for (int x = 0; x < width; x++) {
+                    int value = bytesPerPixel == 2
+                            ? ((current[2 * x] & 0xFF) << 8) | (current[2 * x + 1] & 0xFF)
+                            : current[x] & 0xFF;
+                    heightMap.set(x, z, value / maxValue);
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return heightMap;
+        } catch (IOException | RuntimeException e) {
+            heightMap.close();
+            throw e;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void unfilter(int filter, byte[] line, byte[] previous, int bpp) throws IOException {
+        switch (filter) {
+            case 0: // None
+                break;
+            case 1: // Sub
+                for (int i = bpp; i < line.length; i++) {
+                    line[i] += line[i - bpp];
+                }
+                break;
+            case 2: // Up
+                for (int i = 0; i < line.length; i++) {
+                    line[i] += previous[i];
+                }
+                break;
+            case 3: // Average
+                for (int i = 0; i < line.length; i++) {
+                    int left = i >= bpp ? line[i - bpp] & 0xFF : 0;
+                    line[i] += (left + (previous[i] & 0xFF)) / 2;
+                }
+                break;
+            case 4: // Paeth
+                for (int i = 0; i < line.length; i++) {
+                    int a = i >= bpp ? line[i - bpp] & 0xFF : 0;
+                    int b = previous[i] & 0xFF;
+                    int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+                    line[i] += paeth(a, b, c);
+                }
+                break;
+            default:
+                throw new IOException("Invalid PNG filter type " + filter);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static String readChunkType(DataInputStream in) throws IOException {
+        byte[] type = new byte[4];
+        in.readFully(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Concatenates the payload of all IDAT chunks, skipping any other chunks in between.
+     */
+    private static final class PngDataStream extends InputStream {
+        private final DataInputStream in;
+        private int remaining;
+        private boolean done;
+
+        PngDataStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (remaining == 0) {
+                if (done || !nextDataChunk()) {
+                    return -1;
+                }
+            }
+            int count = in.read(buffer, offset, Math.min(length, remaining));
+            if (count < 0) {
+                throw new EOFException("Unexpected end of PNG data");
+            }
+            remaining -= count;
+            if (remaining == 0) {
+                in.readInt(); // CRC
+            }
+            return count;
+        }
+
+        private boolean nextDataChunk() throws IOException {
+            int length = in.readInt();
+            String type = readChunkType(in);
+            if ("IDAT".equals(type)) {
+                remaining = length;
+                if (length == 0) {
+                    in.readInt();
+                }
+                return true;
+            }
+            if ("IEND".equals(type)) {
+                done = true;
+                return false;
+            }
+            skipFully(length + Integer.BYTES);
+            return true;
+        }
+
+        private void skipFully(int count) throws IOException {
+            int left = count;
+            while (left > 0) {
+                int skipped = in.skipBytes(left);
+                if (skipped <= 0) {
+                    throw new EOFException("Unexpected end of PNG file");
+                }
+                left -= skipped;
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A height map that is stitched together from a grid of equally sized tile files in one directory.
+ * <p>
+ * Tiles are named after their position in the grid, e.g. <code>0_0.png</code>, <code>1_0.png</code> or
+ * <code>2_5_3601x3601.r16</code>, in any format supported by {@link HeightMapFiles}. Missing tiles within the
+ * grid are flat at height zero.
+ * <p>
+ * A tile is read the first time one of its texels is requested. The coarser levels are split into tiles of the same
+ * size, and each of them is computed from the 2x2 tiles of the level above the first time it is needed, so tiles of any
+ * size have coarser levels. Once the tiles of all levels exceed the memory budget, the tiles that were least recently
+ * used are dropped from the cache and closed as soon as no reader uses them anymore. Since every level is addressed
+ * through global texel coordinates, interpolation across tile edges is seamless.
+ */
+public class HeightMapMosaic implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeightMapMosaic.class);
+
+    private static final Pattern TILE_NAME = Pattern.compile("(\\d+)_(\\d+)(?:_.*)?\\.[^.]+");
+
+    private static final int MAX_TILES = 1 << 28;
+
+    private final Map<Long, Path> files;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+    private final long memoryBudget;
+    private final HeightMap flat;
+
+    private final ConcurrentHashMap<Long, Tile> loaded = new ConcurrentHashMap<>();
+    private final AtomicLong loadedBytes = new AtomicLong();
+
+    /**
+     * Scans the directory for tiles and reads the first one to determine the tile size.
+     *
+     * @param directory the directory that contains the tiles
+     * @param memoryBudget the number of bytes that loaded tiles may occupy before tiles are evicted
+     * @throws IOException if the directory cannot be read or contains no tiles
+     */
+    public HeightMapMosaic(Path directory, long memoryBudget) throws IOException {
+        Preconditions.checkArgument(memoryBudget > 0, "memoryBudget must be > 0");
+        this.memoryBudget = memoryBudget;
+
+        files = new HashMap<>();
+        int maxX = -1;
+        int maxZ = -1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                Matcher matcher = TILE_NAME.matcher(name);
+                if (matcher.matches() && HeightMapFiles.isSupported(name)) {
+                    int x = Integer.parseInt(matcher.group(1));
+                    int z = Integer.parseInt(matcher.group(2));
+                    if (x >= MAX_TILES || z >= MAX_TILES) {
+                        throw new IOException("Height map tile " + file + " is outside of the supported grid");
+                    }
+                    files.put(key(0, x, z), file);
+                    maxX = Math.max(maxX, x);
+                    maxZ = Math.max(maxZ, z);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No height map tiles found in " + directory);
+        }
+        int tilesX = maxX + 1;
+        int tilesZ = maxZ + 1;
+
+        Map.Entry<Long, Path> first = files.entrySet().iterator().next();
+        TiledHeightMap sample = HeightMapFiles.read(first.getValue());
+        tileWidth = sample.getWidth();
+        tileHeight = sample.getHeight();
+        flat = new FlatHeightMap(tileWidth, tileHeight);
+
+        // halve the global size, like HeightMapPyramid, until a single texel is left
+        long width = (long) tilesX * tileWidth;
+        long height = (long) tilesZ * tileHeight;
+        if (width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            sample.close();
+            throw new IOException("Height map mosaic in " + directory + " has more than " + Integer.MAX_VALUE + " texels per side");
+        }
+        int levelCount = 1;
+        for (long w = width, h = height; w > 1 || h > 1; w = (w + 1) / 2, h = (h + 1) / 2) {
+            levelCount++;
+        }
+        levelWidths = new int[levelCount];
+        levelHeights = new int[levelCount];
+        levelWidths[0] = (int) width;
+        levelHeights[0] = (int) height;
+        for (int i = 1; i < levelCount; i++) {
+            levelWidths[i] = (levelWidths[i - 1] + 1) / 2;
+            levelHeights[i] = (levelHeights[i - 1] + 1) / 2;
+        }
+
+        long key = first.getKey();
+        Tile tile = new Tile(key, 0, (int) key & (MAX_TILES - 1), (int) (key >>> 28) & (MAX_TILES - 1));
+        tile.map = sample;
+        tile.bytes = bytes(sample);
+        loadedBytes.addAndGet(tile.bytes);
+        loaded.put(key, tile);
+
+        logger.info("Height map mosaic with {}x{} tiles of {}x{} texels", tilesX, tilesZ, tileWidth, tileHeight);
+    }
+
+    /**
+     * @return the full mosaic and its coarser levels, all backed by the same lazily loaded tiles. The pyramid owns the
+     *         mosaic and closes it when it is released.
+     */
+    public HeightMapPyramid toPyramid() {
+        ImmutableList.Builder<HeightMap> levels = ImmutableList.builder();
+        for (int i = 0; i < levelWidths.length; i++) {
+            levels.add(new Level(i));
+        }
+        return new HeightMapPyramid(levels.build(), this);
+    }
+
+    /**
+     * Drops all tiles from the cache. Tiles that are still being read are closed when their readers are done.
+     * The mosaic must not be sampled afterwards.
+     */
+    @Override
+    public void close() {
+        for (Long key : loaded.keySet()) {
+            Tile tile = loaded.remove(key);
+            if (tile != null) {
+                tile.release();
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes occupied by the tiles that are currently loaded, including tiles that were dropped
+     *         from the cache but are still being read
+     */
+    public long getLoadedBytes() {
+        return loadedBytes.get();
+    }
+
+    /**
+     * Looks up a tile, loads it if necessary and marks it as used.
+     *
+     * @return the tile, which stays open until it is {@link Tile#release() released}
+     */
+    private Tile acquire(int level, int x, int z) {
+        long key = key(level, x, z);
+        while (true) {
+            Tile tile = loaded.get(key);
+            if (tile == null) {
+                Tile created = new Tile(key, level, x, z);
+                tile = loaded.putIfAbsent(key, created);
+                if (tile == null) {
+                    tile = created;
+                }
+            }
+            // a tile that cannot be retained was evicted and closed in the meantime, so look it up again
+            if (tile.retain()) {
+                try {
+                    if (tile.load()) {
+                        evictIfNeeded(key);
+                    }
+                } catch (RuntimeException e) {
+                    tile.release();
+                    throw e;
+                }
+                tile.lastUsed = System.nanoTime();
+                return tile;
+            }
+        }
+    }
+
+    private HeightMap loadTile(Tile tile) throws IOException {
+        if (tile.level > 0) {
+            return downsample(tile.level, tile.x, tile.z);
+        }
+        Path file = files.get(tile.key);
+        if (file == null) {
+            return flat;
+        }
+        logger.debug("Loading height map tile {}", file);
+        TiledHeightMap map = HeightMapFiles.read(file);
+        if (map.getWidth() != tileWidth || map.getHeight() != tileHeight) {
+            map.close();
+            throw new IOException("Height map tile " + file + " is not " + tileWidth + "x" + tileHeight);
+        }
+        return map;
+    }
+
+    /**
+     * Computes a tile of a coarser level from the tiles of the level above, the same way as
+     * {@link HeightMapPyramid#build(HeightMap)} does for a single map. The tile is smaller if it is the last one of its
+     * row or column.
+     */
+    private HeightMap downsample(int level, int tileX, int tileZ) throws IOException {
+        int originX = tileX * tileWidth;
+        int originZ = tileZ * tileHeight;
+        int width = Math.min(tileWidth, levelWidths[level] - originX);
+        int height = Math.min(tileHeight, levelHeights[level] - originZ);
+        int lastX = levelWidths[level - 1] - 1;
+        int lastZ = levelHeights[level - 1] - 1;
+
+        TiledHeightMap target = new TiledHeightMap(width, height);
+        TileSet source = new TileSet(level - 1);
+        try {
+            for (int z = 0; z < height; z++) {
+                int z0 = 2 * (originZ + z);
+                int z1 = Math.min(z0 + 1, lastZ);
+                for (int x = 0; x < width; x++) {
+                    int x0 = 2 * (originX + x);
+                    int x1 = Math.min(x0 + 1, lastX);
+                    float sum = source.get(x0, z0) + source.get(x1, z0) + source.get(x0, z1) + source.get(x1, z1);
+                    target.set(x, z, sum * 0.25f);
+                }
+            }
+        } catch (RuntimeException e) {
+            target.close();
+            throw e;
+        } finally {
+            source.release();
+        }
+        return target;
+    }
+
+    /**
+     * Drops the least recently used tiles from the cache until the cached tiles fit into the budget again.
+     * The tile that was just loaded is never dropped, so a budget smaller than a single tile still works.
+     */
+    private void evictIfNeeded(long keep) {
+        if (loadedBytes.get() <= memoryBudget) {
+            return;
+        }
+        synchronized (this) {
+            List<Tile> candidates = new ArrayList<>(loaded.values());
+            long cachedBytes = 0;
+            for (Tile tile : candidates) {
+                // fixed for the duration of the sort, while readers keep updating lastUsed
+                tile.evictionOrder = tile.lastUsed;
+                cachedBytes += tile.bytes;
+            }
+            candidates.sort(Comparator.comparingLong(tile -> tile.evictionOrder));
+            for (Tile tile : candidates) {
+                if (cachedBytes <= memoryBudget) {
+                    break;
+                }
+                // threads that are still reading the tile keep it open until they release it
+                if (tile.key != keep && loaded.remove(tile.key, tile)) {
+                    cachedBytes -= tile.bytes;
+                    tile.release();
+                }
+            }
+        }
+    }
+
+    private static long bytes(HeightMap map) {
+        return (long) map.getWidth() * map.getHeight() * Float.BYTES;
+    }
+
+    private static long key(int level, int x, int z) {
+        return ((long) level << 56) | ((long) z << 28) | x;
+    }
+
+    /**
+     * A tile of one level, loaded by the first thread that needs it. The cache holds one reference, every reader
+     * holds another one while it reads.
+     */
+    private final class Tile {
+        private final long key;
+        private final int level;
+        private final int x;
+        private final int z;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile HeightMap map;
+        private volatile long bytes;
+        private volatile long lastUsed = System.nanoTime();
+        private long evictionOrder;
+
+        Tile(long key, int level, int x, int z) {
+            this.key = key;
+            this.level = level;
+            this.x = x;
+            this.z = z;
+        }
+
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        /**
+         * Loads the tile unless another thread already did. Coarser tiles lock the tiles of the level above while
+         * loading them, never the other way round, so loading cannot deadlock.
+         *
+         * @return true if this call loaded the tile
+         */
+        boolean load() {
+            if (map != null) {
+                return false;
+            }
+            synchronized (this) {
+                if (map != null) {
+                    return false;
+                }
+                try {
+                    HeightMap result = loadTile(this);
+                    bytes = result == flat ? 0 : bytes(result);
+                    loadedBytes.addAndGet(bytes);
+                    map = result;
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not load height map tile " + x + "_" + z + " of level " + level, e);
+                }
+            }
+        }
+
+        void release() {
+            int count = references.decrementAndGet();
+            Preconditions.checkState(count >= 0, "released more often than retained");
+            if (count == 0) {
+                HeightMap current = map;
+                if (current instanceof TiledHeightMap) {
+                    ((TiledHeightMap) current).close();
+                    loadedBytes.addAndGet(-bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * The tiles of one level that a single read touches, each looked up and retained once.
+     */
+    private final class TileSet {
+        private final int level;
+        private Tile[] tiles = new Tile[4];
+        private int count;
+        private Tile last;
+
+        TileSet(int level) {
+            this.level = level;
+        }
+
+        float get(int x, int z) {
+            int tileX = x / tileWidth;
+            int tileZ = z / tileHeight;
+            Tile tile = last;
+            if (tile == null || tile.x != tileX || tile.z != tileZ) {
+                tile = find(tileX, tileZ);
+                last = tile;
+            }
+            return tile.map.get(x - tileX * tileWidth, z - tileZ * tileHeight);
+        }
+
+        private Tile find(int tileX, int tileZ) {
+            for (int i = 0; i < count; i++) {
+                if (tiles[i].x == tileX && tiles[i].z == tileZ) {
+                    return tiles[i];
+                }
+            }
+            Tile tile = acquire(level, tileX, tileZ);
+            if (count == tiles.length) {
+                tiles = Arrays.copyOf(tiles, count * 2);
+            }
+            tiles[count++] = tile;
+            return tile;
+        }
+
+        void release() {
+            for (int i = 0; i < count; i++) {
+                tiles[i].release();
+                tiles[i] = null;
+            }
+            count = 0;
+            last = null;
+        }
+    }
+
+    /**
+     * One level of the mosaic, addressed through global texel coordinates.
+     */
+    private final class Level implements HeightMap {
+        private final int level;
+
+        Level(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public int getWidth() {
+            return levelWidths[level];
+        }
+
+        @Override
+        public int getHeight() {
+            return levelHeights[level];
+        }
+
+        @Override
+        public float get(int x, int z) {
+            int tileX = x / tileWidth;
+            int tileZ = z / tileHeight;
+            Tile tile = acquire(level, tileX, tileZ);
+            try {
+                return tile.map.get(x - tileX * tileWidth, z - tileZ * tileHeight);
+            } finally {
+                tile.release();
+            }
+        }
+
+        @Override
+        public void read(int[] xs, int columnCount, int[] zs, int rowCount, float[] target) {
+            TileSet tiles = new TileSet(level);
+            try {
+                for (int j = 0; j < rowCount; j++) {
+                    int z = zs[j];
+                    for (int i = 0; i < columnCount; i++) {
+                        target[i + j * columnCount] = tiles.get(xs[i], z);
+                    }
+                }
+            } finally {
+                tiles.release();
+            }
+        }
+    }
+
+    /**
+     * Stands in for the missing tiles of level 0.
+     */
+    private static final class FlatHeightMap implements HeightMap {
+        private final int width;
+        private final int height;
+
+        FlatHeightMap(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public float get(int x, int z) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A chain of height maps where every level has half the resolution of the previous one.
+ * Level 0 is the original map, the last level is a single texel.
+ * <p>
+ * A pyramid owns the levels that are {@link Closeable} and closes them when the last reference is released. The
+ * creator holds the first reference, every other user that may outlive it calls {@link #retain()} first.
+ */
+public class HeightMapPyramid {
+
+    private final List<HeightMap> levels;
+    private final Closeable owned;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * @param levels the levels, starting with the full-resolution map
+     */
+    public HeightMapPyramid(List<? extends HeightMap> levels) {
+        this(levels, null);
+    }
+
+    /**
+     * @param levels the levels, starting with the full-resolution map
+     * @param owned closed together with the levels, e.g. the storage the levels are views of, or null
+     */
+    public HeightMapPyramid(List<? extends HeightMap> levels, Closeable owned) {
+        Preconditions.checkArgument(!levels.isEmpty(), "at least one level is required");
+        this.levels = ImmutableList.copyOf(levels);
+        this.owned = owned;
+    }
+
+    /**
+     * Builds all levels down to a single texel by averaging blocks of 2x2 texels.
+     * If a side has an odd length, the last texel of the smaller level covers only one texel along that side.
+     *
+     * @param base the full-resolution map
+     * @return a new pyramid that contains the given map as level 0
+     * @throws IOException if the storage for a level cannot be allocated
+     */
+    public static HeightMapPyramid build(HeightMap base) throws IOException {
+        return build(base, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds levels by averaging blocks of 2x2 texels until either a single texel or the given number of levels is reached.
+     *
+     * @param base the full-resolution map
+     * @param maxLevels the maximum number of levels, including the full-resolution map
+     * @return a new pyramid that contains the given map as level 0 and owns it from now on
+     * @throws IOException if the storage for a level cannot be allocated
+     */
+    public static HeightMapPyramid build(HeightMap base, int maxLevels) throws IOException {
+        List<HeightMap> levels = new ArrayList<>();
+        levels.add(base);
+
+        HeightMap current = base;
+        try {
+            while (levels.size() < maxLevels && (current.getWidth() > 1 || current.getHeight() > 1)) {
+                current = downsample(current);
+                levels.add(current);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the base map still belongs to the caller
+            for (HeightMap level : levels.subList(1, levels.size())) {
+                ((TiledHeightMap) level).close();
+            }
+            throw e;
+        }
+        return new HeightMapPyramid(levels);
+    }
+
+    private static HeightMap downsample(HeightMap source) throws IOException {
+        int width = (source.getWidth() + 1) / 2;
+        int height = (source.getHeight() + 1) / 2;
+        int lastX = source.getWidth() - 1;
+        int lastZ = source.getHeight() - 1;
+
+        TiledHeightMap target = new TiledHeightMap(width, height);
+        for (int z = 0; z < height; z++) {
+            int z0 = 2 * z;
+            int z1 = Math.min(z0 + 1, lastZ);
+            for (int x = 0; x < width; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, lastX);
+                float sum = source.get(x0, z0) + source.get(x1, z0) + source.get(x0, z1) + source.get(x1, z1);
+                target.set(x, z, sum * 0.25f);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Adds a reference, unless the pyramid has already been closed.
+     *
+     * @return true if the pyramid can be used until {@link #release()} is called, false if it is closed
+     */
+    public boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Removes a reference and closes the levels when it was the last one.
+     */
+    public void release() {
+        int count = references.decrementAndGet();
+        Preconditions.checkState(count >= 0, "released more often than retained");
+        if (count > 0) {
+            return;
+        }
+        try {
+            for (HeightMap level : levels) {
+                if (level instanceof Closeable) {
+                    ((Closeable) level).close();
+                }
+            }
+            if (owned != null) {
+                owned.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close height map", e);
+        }
+    }
+
+    /**
+     * @return the number of levels, at least one
+     */
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    /**
+     * @param level the level in [0..levelCount)
+     * @return the height map of the given level
+     */
+    public HeightMap getLevel(int level) {
+        return levels.get(level);
+    }
+}
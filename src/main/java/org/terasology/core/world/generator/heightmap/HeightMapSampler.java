@@ -0,0 +1,222 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Samples a {@link HeightMap} for rectangular regions of blocks, interpolating between texels with a Hermite curve.
+ * <p>
+ * Each texel covers {@code terrainScale} x {@code terrainScale} blocks. The texel indices and interpolation
+ * weights of a column only depend on its x coordinate and those of a row only on its z coordinate, so they are
+ * computed once per region instead of once per block. The texels covering the region are copied into a small
+ * window first, which keeps the inner loop independent of the storage behind the height map.
+ * <p>
+ * Regions that are generated at a coarser scale read from the level of a {@link HeightMapPyramid} whose texels
+ * are at most as large as the distance between two samples, so that distant terrain does not alias. A texel of a
+ * coarser level is the average of several full-resolution texels, so its value belongs to the center of these texels
+ * rather than to the first one.
+ * <p>
+ * Instances are immutable and can be shared between threads. Scratch memory is kept per thread and reused.
+ */
+public class HeightMapSampler {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final HeightMapPyramid pyramid;
+    private final int terrainScale;
+    private final boolean repeat;
+
+    /**
+     * The Hermite weights for all possible offsets within a full-resolution texel
+     */
+    private final float[] fadeLut;
+
+    /**
+     * @param heightMap the height map to sample
+     * @param terrainScale the number of blocks covered by one texel along each axis
+     * @param repeat true to repeat the map infinitely, false to extend the edge texels
+     */
+    public HeightMapSampler(HeightMap heightMap, int terrainScale, boolean repeat) {
+        this(new HeightMapPyramid(ImmutableList.of(heightMap)), terrainScale, repeat);
+    }
+
+    /**
+     * @param pyramid the height map to sample, including its coarser levels
+     * @param terrainScale the number of blocks covered by one full-resolution texel along each axis
+     * @param repeat true to repeat the map infinitely, false to extend the edge texels
+     */
+    public HeightMapSampler(HeightMapPyramid pyramid, int terrainScale, boolean repeat) {
+        Preconditions.checkArgument(terrainScale > 0, "terrainScale must be > 0");
+
+        this.pyramid = pyramid;
+        this.terrainScale = terrainScale;
+        this.repeat = repeat;
+
+        fadeLut = new float[terrainScale];
+        for (int i = 0; i < terrainScale; i++) {
+            fadeLut[i] = (float) fade(i / (double) terrainScale);
+        }
+    }
+
+    public HeightMapPyramid getPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * Writes {@code heightOffset + heightScale * height} for every block of the given area into {@code target},
+     * row by row with x as the fastest-changing coordinate.
+     *
+     * @param minX the smallest x coordinate of the area
+     * @param minZ the smallest z coordinate of the area
+     * @param sizeX the number of columns
+     * @param sizeZ the number of rows
+     * @param scale the number of world blocks between two neighbouring samples, 1 for full detail
+     * @param heightOffset added to every interpolated height value
+     * @param heightScale multiplied with every interpolated height value
+     * @param target the array to write to, at least {@code sizeX * sizeZ} long
+     */
+    public void sample(int minX, int minZ, int sizeX, int sizeZ, float scale, float heightOffset, float heightScale, float[] target) {
+        Preconditions.checkArgument(target.length >= sizeX * sizeZ, "target array is too small");
+
+        int level = levelFor(scale);
+        HeightMap heightMap = pyramid.getLevel(level);
+
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureAxisCapacity(sizeX, sizeZ);
+        int[] columns = scratch.columns;
+        float[] columnWeights = scratch.columnWeights;
+        int[] rows = scratch.rows;
+        float[] rowWeights = scratch.rowWeights;
+
+        int texelMinX = prepareAxis(minX, sizeX, scale, level, columns, columnWeights);
+        int texelMinZ = prepareAxis(minZ, sizeZ, scale, level, rows, rowWeights);
+        int windowWidth = columns[sizeX - 1] + 2;
+        int windowHeight = rows[sizeZ - 1] + 2;
+
+        scratch.ensureWindowCapacity(windowWidth, windowHeight);
+        float[] window = scratch.window;
+        float[] rowLerp = scratch.rowLerp;
+
+        int[] windowColumns = scratch.windowColumns;
+        int[] windowRows = scratch.windowRows;
+        for (int i = 0; i < windowWidth; i++) {
+            windowColumns[i] = wrap(texelMinX + i, heightMap.getWidth());
+        }
+        for (int j = 0; j < windowHeight; j++) {
+            windowRows[j] = wrap(texelMinZ + j, heightMap.getHeight());
+        }
+        heightMap.read(windowColumns, windowWidth, windowRows, windowHeight, window);
+
+        for (int j = 0; j < sizeZ; j++) {
+            int row0 = rows[j] * windowWidth;
+            int row1 = row0 + windowWidth;
+            float wz = rowWeights[j];
+            for (int i = 0; i < windowWidth; i++) {
+                rowLerp[i] = window[row0 + i] + wz * (window[row1 + i] - window[row0 + i]);
+            }
+
+            int targetRow = j * sizeX;
+            for (int i = 0; i < sizeX; i++) {
+                int c = columns[i];
+                float h = rowLerp[c] + columnWeights[i] * (rowLerp[c + 1] - rowLerp[c]);
+                target[targetRow + i] = heightOffset + heightScale * h;
+            }
+        }
+    }
+
+    /**
+     * Picks the coarsest level whose texels are not larger than the distance between two samples.
+     */
+    private int levelFor(float scale) {
+        int level = 0;
+        while (level + 1 < pyramid.getLevelCount() && terrainScale * (2L << level) <= scale) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Computes the texel index (relative to the first one) and the interpolation weight for every sample along one axis.
+     *
+     * @return the absolute index of the first texel
+     */
+    private int prepareAxis(int min, int size, float scale, int level, int[] texels, float[] weights) {
+        if (level == 0 && scale == 1) {
+            int texelMin = Math.floorDiv(min, terrainScale);
+            for (int i = 0; i < size; i++) {
+                int pos = min + i;
+                texels[i] = Math.floorDiv(pos, terrainScale) - texelMin;
+                weights[i] = fadeLut[Math.floorMod(pos, terrainScale)];
+            }
+            return texelMin;
+        }
+
+        double texelsPerSample = scale / ((double) terrainScale * (1L << level));
+        double center = levelCenter(level);
+        int texelMin = (int) Math.floor(min * texelsPerSample - center);
+        for (int i = 0; i < size; i++) {
+            double texel = (min + i) * texelsPerSample - center;
+            int index = (int) Math.floor(texel);
+            texels[i] = index - texelMin;
+            weights[i] = (float) fade(texel - index);
+        }
+        return texelMin;
+    }
+
+    /**
+     * A texel of the given level averages {@code 2^level} full-resolution texels along each axis. Their center lies
+     * {@code (2^level - 1) / 2} full-resolution texels after the first one, which is this many texels of the level.
+     */
+    private static double levelCenter(int level) {
+        return ((1L << level) - 1) / (double) (2L << level);
+    }
+
+    private int wrap(int texel, int size) {
+        if (repeat) {
+            return Math.floorMod(texel, size);
+        }
+        return Math.max(0, Math.min(texel, size - 1));
+    }
+
+    private static double fade(double t) {
+        // This is Hermite
+        return t * t * (3 - 2 * t);
+    }
+
+    private static final class Scratch {
+        private int[] columns = new int[0];
+        private float[] columnWeights = new float[0];
+        private int[] rows = new int[0];
+        private float[] rowWeights = new float[0];
+        private float[] window = new float[0];
+        private float[] rowLerp = new float[0];
+        private int[] windowColumns = new int[0];
+        private int[] windowRows = new int[0];
+
+        void ensureAxisCapacity(int sizeX, int sizeZ) {
+            if (columns.length < sizeX) {
+                columns = new int[sizeX];
+                columnWeights = new float[sizeX];
+            }
+            if (rows.length < sizeZ) {
+                rows = new int[sizeZ];
+                rowWeights = new float[sizeZ];
+            }
+        }
+
+        void ensureWindowCapacity(int windowWidth, int windowHeight) {
+            if (window.length < windowWidth * windowHeight) {
+                window = new float[windowWidth * windowHeight];
+            }
+            if (rowLerp.length < windowWidth) {
+                rowLerp = new float[windowWidth];
+                windowColumns = new int[windowWidth];
+            }
+            if (windowRows.length < windowHeight) {
+                windowRows = new int[windowHeight];
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Derives the steepness of a height map, i.e. the length of its gradient.
+ * <p>
+ * The gradient is computed with central differences, falling back to one-sided differences at the edges of the map.
+ * Values of all levels are expressed per texel of level 0, so they can be sampled with the same factor at every scale.
+ */
+public final class HeightMapSlopes {
+
+    private HeightMapSlopes() {
+        // no instances
+    }
+
+    /**
+     * Computes the slopes of all levels at once.
+     *
+     * @param heights the height map and its coarser levels
+     * @return a pyramid of the same size that contains the slopes
+     * @throws IOException if the storage for a level cannot be allocated
+     */
+    public static HeightMapPyramid precompute(HeightMapPyramid heights) throws IOException {
+        List<TiledHeightMap> levels = new ArrayList<>();
+        try {
+            for (int level = 0; level < heights.getLevelCount(); level++) {
+                HeightMap source = heights.getLevel(level);
+                TiledHeightMap target = new TiledHeightMap(source.getWidth(), source.getHeight());
+                levels.add(target);
+                float levelScale = 1f / (1 << level);
+                for (int z = 0; z < source.getHeight(); z++) {
+                    for (int x = 0; x < source.getWidth(); x++) {
+                        target.set(x, z, slope(source, x, z) * levelScale);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            levels.forEach(TiledHeightMap::close);
+            throw e;
+        }
+        return new HeightMapPyramid(levels);
+    }
+
+    /**
+     * Computes slopes on demand, for height maps that are too large to be processed at once.
+     *
+     * @param heights the height map and its coarser levels, retained until the returned pyramid is released
+     * @return a pyramid of the same size that contains the slopes
+     */
+    public static HeightMapPyramid view(HeightMapPyramid heights) {
+        Preconditions.checkState(heights.retain(), "the height map is already closed");
+        ImmutableList.Builder<HeightMap> levels = ImmutableList.builder();
+        for (int level = 0; level < heights.getLevelCount(); level++) {
+            HeightMap source = heights.getLevel(level);
+            float levelScale = 1f / (1 << level);
+            levels.add(new HeightMap() {
+                @Override
+                public int getWidth() {
+                    return source.getWidth();
+                }
+
+                @Override
+                public int getHeight() {
+                    return source.getHeight();
+                }
+
+                @Override
+                public float get(int x, int z) {
+                    return slope(source, x, z) * levelScale;
+                }
+
+                @Override
+                public void read(int[] xs, int columnCount, int[] zs, int rowCount, float[] target) {
+                    // read the neighbours of all requested texels at once, so the source resolves its tiles once
+                    int[] columns = neighbours(xs, columnCount, source.getWidth());
+                    int[] rows = neighbours(zs, rowCount, source.getHeight());
+                    int stride = 3 * columnCount;
+                    float[] heights = new float[stride * 3 * rowCount];
+                    source.read(columns, stride, rows, 3 * rowCount, heights);
+                    for (int j = 0; j < rowCount; j++) {
+                        int center = (3 * j + 1) * stride;
+                        for (int i = 0; i < columnCount; i++) {
+                            int c = 3 * i + 1;
+                            int dxSpan = columns[c + 1] - columns[c - 1];
+                            int dzSpan = rows[3 * j + 2] - rows[3 * j];
+                            float dx = dxSpan > 0 ? (heights[center + c + 1] - heights[center + c - 1]) / dxSpan : 0;
+                            float dz = dzSpan > 0 ? (heights[center + stride + c] - heights[center - stride + c]) / dzSpan : 0;
+                            target[i + j * columnCount] = (float) Math.sqrt(dx * dx + dz * dz) * levelScale;
+                        }
+                    }
+                }
+            });
+        }
+        return new HeightMapPyramid(levels.build(), heights::release);
+    }
+
+    /**
+     * @return every coordinate preceded and followed by its neighbours, clamped to the map like {@link #slope}
+     */
+    private static int[] neighbours(int[] coordinates, int count, int size) {
+        int[] result = new int[3 * count];
+        for (int i = 0; i < count; i++) {
+            result[3 * i] = Math.max(coordinates[i] - 1, 0);
+            result[3 * i + 1] = coordinates[i];
+            result[3 * i + 2] = Math.min(coordinates[i] + 1, size - 1);
+        }
+        return result;
+    }
+
+    private static float slope(HeightMap map, int x, int z) {
+        int x0 = Math.max(x - 1, 0);
+        int x1 = Math.min(x + 1, map.getWidth() - 1);
+        int z0 = Math.max(z - 1, 0);
+        int z1 = Math.min(z + 1, map.getHeight() - 1);
+
+        float dx = x1 > x0 ? (map.get(x1, z) - map.get(x0, z)) / (x1 - x0) : 0;
+        float dz = z1 > z0 ? (map.get(x, z1) - map.get(x, z0)) / (z1 - z0) : 0;
+        return (float) Math.sqrt(dx * dx + dz * dz);
+    }
+}
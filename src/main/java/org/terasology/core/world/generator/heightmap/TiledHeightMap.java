@@ -0,0 +1,157 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.core.world.generator.heightmap;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores height values off-heap in square tiles of {@link #TILE_SIZE} x {@link #TILE_SIZE} values.
+ * <p>
+ * The tiles live in a memory-mapped temporary file, each tile in one contiguous block. Sampling a small area
+ * therefore touches only a few pages and the operating system keeps only the tiles that are actually in use
+ * resident. This allows for maps that are much larger than the Java heap.
+ * <p>
+ * The map must be filled through {@link #set(int, int, float)} before it is shared with other threads. Once it is no
+ * longer used, {@link #close()} drops the mappings, so that the garbage collector can release them even while the map
+ * itself is still referenced. The mappings are never unmapped explicitly: a reader that still uses the map after it was
+ * closed gets an exception instead of crashing the JVM on unmapped memory.
+ */
+public final class TiledHeightMap implements HeightMap, Closeable {
+
+    public static final int TILE_SHIFT = 7;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int TILE_AREA = TILE_SIZE * TILE_SIZE;
+    private static final long TILE_BYTES = (long) TILE_AREA * Float.BYTES;
+
+    /**
+     * A single mapping is limited to 2 GiB, so the file is mapped in segments of 1 GiB.
+     */
+    private static final int TILES_PER_SEGMENT = (int) ((1L << 30) / TILE_BYTES);
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private volatile FloatBuffer[] segments;
+
+    /**
+     * The backing file if it could not be deleted while mapped, null otherwise
+     */
+    private Path undeletedFile;
+
+    /**
+     * Allocates the backing file for a map of the given size. All values are initially zero.
+     *
+     * @param width the number of columns
+     * @param height the number of rows
+     * @throws IOException if the backing file cannot be created or mapped
+     */
+    public TiledHeightMap(int width, int height) throws IOException {
+        Preconditions.checkArgument(width > 0, "width must be > 0");
+        Preconditions.checkArgument(height > 0, "height must be > 0");
+
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_MASK) >> TILE_SHIFT;
+
+        int tilesZ = (height + TILE_MASK) >> TILE_SHIFT;
+        long tileCount = (long) tilesX * tilesZ;
+        int segmentCount = (int) ((tileCount + TILES_PER_SEGMENT - 1) / TILES_PER_SEGMENT);
+        FloatBuffer[] mapped = new FloatBuffer[segmentCount];
+
+        Path file = Files.createTempFile("heightmap", ".tiles");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < segmentCount; i++) {
+                long firstTile = (long) i * TILES_PER_SEGMENT;
+                long tiles = Math.min(TILES_PER_SEGMENT, tileCount - firstTile);
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, firstTile * TILE_BYTES, tiles * TILE_BYTES);
+                mapped[i] = mapping.order(ByteOrder.nativeOrder()).asFloatBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        segments = mapped;
+
+        // the mappings remain valid without the file - this only fails on platforms that lock mapped files
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            undeletedFile = file;
+        }
+    }
+
+    /**
+     * Drops the mappings, so that the garbage collector frees their address space and disk space even if the map is
+     * still referenced, e.g. from a cache. Using the map afterwards throws an {@link IllegalStateException}; the owner
+     * should ensure that it is not used any more, e.g. through {@link HeightMapPyramid#release()}.
+     */
+    @Override
+    public synchronized void close() {
+        if (segments == null) {
+            return;
+        }
+        segments = null;
+        if (undeletedFile != null) {
+            try {
+                Files.deleteIfExists(undeletedFile);
+            } catch (IOException e) {
+                undeletedFile.toFile().deleteOnExit();
+            }
+            undeletedFile = null;
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public float get(int x, int z) {
+        int tile = tileIndex(x, z);
+        return segments()[tile / TILES_PER_SEGMENT].get(offset(tile, x, z));
+    }
+
+    /**
+     * @param x the column in [0..width)
+     * @param z the row in [0..height)
+     * @param value the new height value
+     */
+    public void set(int x, int z, float value) {
+        int tile = tileIndex(x, z);
+        segments()[tile / TILES_PER_SEGMENT].put(offset(tile, x, z), value);
+    }
+
+    private FloatBuffer[] segments() {
+        FloatBuffer[] current = segments;
+        if (current == null) {
+            throw new IllegalStateException("the height map is closed");
+        }
+        return current;
+    }
+
+    private int tileIndex(int x, int z) {
+        return (z >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT);
+    }
+
+    private static int offset(int tile, int x, int z) {
+        return (tile % TILES_PER_SEGMENT) * TILE_AREA + ((z & TILE_MASK) << TILE_SHIFT) + (x & TILE_MASK);
+    }
+}
@@ -17,15 +17,17 @@ package org.terasology.core.world.generator.rasterizers;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import org.joml.Vector3i;
 import org.joml.Vector3ic;
+import org.terasology.core.world.generator.facetProviders.SurfaceObjectProvider;
 import org.terasology.core.world.generator.facets.FloraFacet;
 import org.terasology.engine.registry.CoreRegistry;
-import org.terasology.engine.utilities.procedural.WhiteNoise;
 import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockManager;
 import org.terasology.engine.world.chunks.Chunk;
 import org.terasology.engine.world.generation.Region;
 import org.terasology.engine.world.generation.WorldRasterizer;
+import org.terasology.utilities.random.CounterRandom;
 
 import java.util.List;
 import java.util.Map;
@@ -34,6 +36,11 @@ import java.util.Map;
  */
 public class FloraRasterizer implements WorldRasterizer {
 
+    /**
+     * The {@link CounterRandom} stream of a column that picks the block of a plant, indexed by height
+     */
+    private static final int VARIANT_STREAM = SurfaceObjectProvider.FIRST_FREE_STREAM + 1;
+
     private final Map<FloraType, List<Block>> flora = Maps.newEnumMap(FloraType.class);
     private Block air;
 
@@ -67,15 +74,15 @@ public class FloraRasterizer implements WorldRasterizer {
     public void generateChunk(Chunk chunk, Region chunkRegion) {
         FloraFacet facet = chunkRegion.getFacet(FloraFacet.class);
 
-        WhiteNoise noise = new WhiteNoise(chunk.getPosition().hashCode());
-
         Map<Vector3ic, FloraType> entries = facet.getRelativeEntries();
         // check if some other rasterizer has already placed something here
         entries.keySet().stream().filter(pos -> chunk.getBlock(pos).equals(air)).forEach(pos -> {
 
             FloraType type = entries.get(pos);
             List<Block> list = flora.get(type);
-            int blockIdx = Math.abs(noise.intNoise(pos.x(), pos.y(), pos.z())) % list.size();
+            Vector3i worldPos = chunk.chunkToWorldPosition(pos, new Vector3i());
+            long column = CounterRandom.column(facet.getSeed(), worldPos.x(), worldPos.z());
+            int blockIdx = CounterRandom.intAt(column, VARIANT_STREAM, worldPos.y(), list.size());
             Block block = list.get(blockIdx);
             chunk.setBlock(pos, block);
         });
@@ -17,17 +17,17 @@ package org.terasology.core.world.generator.rasterizers;
 
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
+import org.terasology.core.world.generator.facetProviders.SurfaceObjectProvider;
 import org.terasology.core.world.generator.facets.TreeFacet;
 import org.terasology.core.world.generator.trees.TreeGenerator;
 import org.terasology.engine.registry.CoreRegistry;
-import org.terasology.engine.utilities.random.FastRandom;
-import org.terasology.engine.utilities.random.Random;
 import org.terasology.engine.world.block.BlockManager;
 import org.terasology.engine.world.block.BlockRegion;
 import org.terasology.engine.world.chunks.Chunk;
 import org.terasology.engine.world.generation.Region;
 import org.terasology.engine.world.generation.WorldRasterizer;
 import org.terasology.engine.world.generation.facets.base.SparseFacet3D;
+import org.terasology.utilities.random.CounterRandom;
 
 import java.util.Map;
 
@@ -38,6 +38,11 @@ import java.util.Map;
  */
 public class TreeRasterizer implements WorldRasterizer {
 
+    /**
+     * The {@link CounterRandom} stream of a column that holds the keys of the trees, indexed by height
+     */
+    private static final int TREE_STREAM = SurfaceObjectProvider.FIRST_FREE_STREAM;
+
     private BlockManager blockManager;
 
     @Override
@@ -58,11 +63,14 @@ public class TreeRasterizer implements WorldRasterizer {
     public void generateChunk(Chunk chunk, Region chunkRegion) {
         TreeFacet facet = chunkRegion.getFacet(TreeFacet.class);
 
+        // reset for every tree, so that each tree gets the stream of its own position
+        CounterRandom random = new CounterRandom();
         for (Map.Entry<Vector3ic, TreeGenerator> entry : facet.getRelativeEntries().entrySet()) {
             Vector3ic pos = entry.getKey();
             TreeGenerator treeGen = entry.getValue();
-            int seed = relativeToWorld(facet, pos).hashCode();
-            Random random = new FastRandom(seed);
+            Vector3i worldPos = relativeToWorld(facet, pos);
+            long column = CounterRandom.column(facet.getSeed(), worldPos.x(), worldPos.z());
+            random.reset(CounterRandom.bitsAt(column, TREE_STREAM, worldPos.y()), 0);
             treeGen.generate(blockManager, chunk, random, pos.x(), pos.y(), pos.z());
         }
     }
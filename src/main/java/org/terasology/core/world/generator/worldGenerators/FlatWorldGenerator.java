@@ -20,9 +20,8 @@ import org.terasology.core.world.generator.facetProviders.DefaultFloraProvider;
 import org.terasology.core.world.generator.facetProviders.DefaultTreeProvider;
 import org.terasology.core.world.generator.facetProviders.FlatSurfaceHeightProvider;
 import org.terasology.core.world.generator.facetProviders.SeaLevelProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexHumidityProvider;
+import org.terasology.core.world.generator.facetProviders.SimplexClimateProvider;
 import org.terasology.core.world.generator.facetProviders.SimplexRoughnessProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexSurfaceTemperatureProvider;
 import org.terasology.core.world.generator.facetProviders.SurfaceToDensityProvider;
 import org.terasology.core.world.generator.rasterizers.FloraRasterizer;
 import org.terasology.core.world.generator.rasterizers.SolidRasterizer;
@@ -50,8 +49,7 @@ public class FlatWorldGenerator extends BaseFacetedWorldGenerator {
                 .addProvider(new SeaLevelProvider(32))
                         // height of 40 so that it is far enough from sea level so that it doesn't just create beachfront
                 .addProvider(new FlatSurfaceHeightProvider(40))
-                .addProvider(new SimplexHumidityProvider())
-                .addProvider(new SimplexSurfaceTemperatureProvider())
+                .addProvider(new SimplexClimateProvider())
                 .addProvider(new SimplexRoughnessProvider())
                 .addProvider(new BiomeProvider())
                 .addProvider(new SurfaceToDensityProvider())
@@ -18,11 +18,10 @@ package org.terasology.core.world.generator.worldGenerators;
 import org.terasology.core.world.generator.facetProviders.BiomeProvider;
 import org.terasology.core.world.generator.facetProviders.DefaultFloraProvider;
 import org.terasology.core.world.generator.facetProviders.DefaultTreeProvider;
+import org.terasology.core.world.generator.facetProviders.HeightMapClimateProvider;
+import org.terasology.core.world.generator.facetProviders.HeightMapRoughnessProvider;
 import org.terasology.core.world.generator.facetProviders.HeightMapSurfaceHeightProvider;
 import org.terasology.core.world.generator.facetProviders.SeaLevelProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexHumidityProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexRoughnessProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexSurfaceTemperatureProvider;
 import org.terasology.core.world.generator.facetProviders.SurfaceToDensityProvider;
 import org.terasology.core.world.generator.rasterizers.FloraRasterizer;
 import org.terasology.core.world.generator.rasterizers.SolidRasterizer;
@@ -48,13 +47,13 @@ public class HeightMapWorldGenerator extends BaseFacetedWorldGenerator {
 
     @Override
     protected WorldBuilder createWorld() {
+        HeightMapSurfaceHeightProvider heightProvider = new HeightMapSurfaceHeightProvider();
         return new WorldBuilder(worldGeneratorPluginLibrary)
                 .setSeaLevel(16)
                 .addProvider(new SeaLevelProvider(16))
-                .addProvider(new HeightMapSurfaceHeightProvider())
-                .addProvider(new SimplexHumidityProvider())
-                .addProvider(new SimplexSurfaceTemperatureProvider())
-                .addProvider(new SimplexRoughnessProvider())
+                .addProvider(heightProvider)
+                .addProvider(new HeightMapClimateProvider(heightProvider, 16))
+                .addProvider(new HeightMapRoughnessProvider(heightProvider))
                 .addProvider(new BiomeProvider())
                 .addProvider(new SurfaceToDensityProvider())
                 .addProvider(new DefaultFloraProvider())
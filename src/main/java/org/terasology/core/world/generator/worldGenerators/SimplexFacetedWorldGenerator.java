@@ -9,12 +9,13 @@ import org.terasology.core.world.generator.facetProviders.BiomeProvider;
 import org.terasology.core.world.generator.facetProviders.DefaultFloraProvider;
 import org.terasology.core.world.generator.facetProviders.DefaultTreeProvider;
 import org.terasology.core.world.generator.facetProviders.DensityNoiseProvider;
+import org.terasology.core.world.generator.facetProviders.QualityBudget;
+import org.terasology.core.world.generator.facetProviders.QualityBudgetProvider;
 import org.terasology.core.world.generator.facetProviders.SeaLevelProvider;
 import org.terasology.core.world.generator.facetProviders.SimplexBaseSurfaceProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexHumidityProvider;
+import org.terasology.core.world.generator.facetProviders.SimplexClimateProvider;
 import org.terasology.core.world.generator.facetProviders.SimplexRiverProvider;
 import org.terasology.core.world.generator.facetProviders.SimplexRoughnessProvider;
-import org.terasology.core.world.generator.facetProviders.SimplexSurfaceTemperatureProvider;
 import org.terasology.core.world.generator.facetProviders.SpawnPlateauProvider;
 import org.terasology.core.world.generator.facetProviders.SurfaceToDensityProvider;
 import org.terasology.core.world.generator.rasterizers.FloraRasterizer;
@@ -25,7 +26,9 @@ import org.terasology.engine.core.SimpleUri;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.logic.spawner.FixedSpawner;
 import org.terasology.engine.registry.In;
+import org.terasology.engine.world.chunks.Chunk;
 import org.terasology.engine.world.generation.BaseFacetedWorldGenerator;
+import org.terasology.engine.world.generation.EntityBuffer;
 import org.terasology.engine.world.generation.WorldBuilder;
 import org.terasology.engine.world.generator.RegisterWorldGenerator;
 import org.terasology.engine.world.generator.plugin.WorldGeneratorPluginLibrary;
@@ -39,6 +42,8 @@ public class SimplexFacetedWorldGenerator extends BaseFacetedWorldGenerator {
 
     private final FixedSpawner spawner = new FixedSpawner(SPAWN_POS.x(), SPAWN_POS.y());
 
+    private final QualityBudget budget = new QualityBudget();
+
     @In
     private WorldGeneratorPluginLibrary worldGeneratorPluginLibrary;
 
@@ -51,6 +56,13 @@ public class SimplexFacetedWorldGenerator extends BaseFacetedWorldGenerator {
         return spawner.getSpawnPosition(getWorld(), entity);
     }
 
+    @Override
+    public void createChunk(Chunk chunk, EntityBuffer buffer) {
+        long start = System.nanoTime();
+        super.createChunk(chunk, buffer);
+        budget.recordChunk(System.nanoTime() - start);
+    }
+
     @Override
     protected WorldBuilder createWorld() {
         int seaLevel = 15;
@@ -58,17 +70,17 @@ public class SimplexFacetedWorldGenerator extends BaseFacetedWorldGenerator {
         return new WorldBuilder(worldGeneratorPluginLibrary)
                 .setSeaLevel(seaLevel)
                 .addProvider(new SeaLevelProvider(seaLevel))
-                .addProvider(new SimplexHumidityProvider())
-                .addProvider(new SimplexSurfaceTemperatureProvider())
-                .addProvider(new SimplexBaseSurfaceProvider())
+                .addProvider(new SimplexClimateProvider(budget))
+                .addProvider(new SimplexBaseSurfaceProvider(budget))
                 .addProvider(new SimplexRiverProvider())
-                .addProvider(new SimplexRoughnessProvider())
+                .addProvider(new SimplexRoughnessProvider(budget))
                 .addProvider(new BiomeProvider())
                 .addProvider(new SurfaceToDensityProvider())
-                .addProvider(new DensityNoiseProvider())
+                .addProvider(new DensityNoiseProvider(budget))
                 .addProvider(new DefaultFloraProvider())
                 .addProvider(new DefaultTreeProvider())
                 .addProvider(new SpawnPlateauProvider(SPAWN_POS))
+                .addProvider(new QualityBudgetProvider(budget))
                 .addRasterizer(new SolidRasterizer())
                 .addPlugins()
                 .addRasterizer(new FloraRasterizer())
@@ -0,0 +1,95 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.utilities.procedural;
+
+import org.terasology.engine.utilities.procedural.BrownianNoise;
+
+/**
+ * The same sum of octaves as {@link BrownianNoise} with its default lacunarity and persistence, evaluated one row at
+ * a time and one octave after the other.
+ */
+public final class RowBrownianNoise implements RowNoise {
+
+    private static final ThreadLocal<float[][]> SCRATCH = ThreadLocal.withInitial(() -> new float[2][0]);
+
+    private final RowNoise other;
+    private final float lacunarity;
+    private final float[] spectralWeights;
+    private final float scale;
+
+    /**
+     * @param other the noise of a single octave
+     * @param octaves the number of octaves
+     */
+    public RowBrownianNoise(RowNoise other, int octaves) {
+        BrownianNoise defaults = new BrownianNoise(other, octaves);
+        this.other = other;
+        this.lacunarity = (float) defaults.getLacunarity();
+
+        double persistence = defaults.getPersistence();
+        spectralWeights = new float[octaves];
+        float weightSum = 0;
+        for (int i = 0; i < octaves; i++) {
+            spectralWeights[i] = (float) Math.pow(lacunarity, -persistence * i);
+            weightSum += spectralWeights[i];
+        }
+        scale = 1.0f / weightSum;
+    }
+
+    @Override
+    public float noise(float x, float y) {
+        float result = 0;
+        float workingX = x;
+        float workingY = y;
+        for (float weight : spectralWeights) {
+            result += other.noise(workingX, workingY) * weight;
+            workingX *= lacunarity;
+            workingY *= lacunarity;
+        }
+        return result * scale;
+    }
+
+    @Override
+    public float noise(float x, float y, float z) {
+        float result = 0;
+        float workingX = x;
+        float workingY = y;
+        float workingZ = z;
+        for (float weight : spectralWeights) {
+            result += other.noise(workingX, workingY, workingZ) * weight;
+            workingX *= lacunarity;
+            workingY *= lacunarity;
+            workingZ *= lacunarity;
+        }
+        return result * scale;
+    }
+
+    @Override
+    public void noiseRow(float[] xs, float y, int count, float[] target) {
+        float[][] scratch = SCRATCH.get();
+        if (scratch[0].length < count) {
+            scratch[0] = new float[count];
+            scratch[1] = new float[count];
+        }
+        float[] workingXs = scratch[0];
+        float[] octave = scratch[1];
+        System.arraycopy(xs, 0, workingXs, 0, count);
+        for (int k = 0; k < count; k++) {
+            target[k] = 0;
+        }
+
+        float workingY = y;
+        for (float weight : spectralWeights) {
+            other.noiseRow(workingXs, workingY, count, octave);
+            for (int k = 0; k < count; k++) {
+                target[k] += octave[k] * weight;
+                workingXs[k] *= lacunarity;
+            }
+            workingY *= lacunarity;
+        }
+        for (int k = 0; k < count; k++) {
+            target[k] *= scale;
+        }
+    }
+}
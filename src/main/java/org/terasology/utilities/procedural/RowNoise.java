@@ -0,0 +1,25 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.utilities.procedural;
+
+import org.terasology.engine.utilities.procedural.Noise;
+
+/**
+ * A 2D noise that can evaluate a whole row of samples at once.
+ * <p>
+ * Evaluating a row gives the same values as calling {@link #noise(float, float)} for every sample, but lets the
+ * implementation keep its state in registers and run a tight loop without a call per sample.
+ */
+public interface RowNoise extends Noise {
+
+    /**
+     * Evaluates the noise at {@code (xs[i], y)} for every {@code i < count}.
+     *
+     * @param xs the x coordinates of the samples
+     * @param y the y coordinate shared by all samples
+     * @param count the number of samples
+     * @param target receives the noise value of sample {@code i} at index {@code i}
+     */
+    void noiseRow(float[] xs, float y, int count, float[] target);
+}
@@ -0,0 +1,136 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.utilities.procedural;
+
+import org.terasology.engine.utilities.procedural.SimplexNoise;
+import org.terasology.engine.utilities.random.FastRandom;
+
+/**
+ * 2D simplex noise with the same permutation and gradients as {@link SimplexNoise} of the same seed, evaluated one
+ * row at a time.
+ * <p>
+ * The corner contributions are computed without branches and the gradients are looked up from tables that are
+ * indexed with the hashed corner directly, so the inner loop has no calls and no data-dependent branches. 3D noise
+ * is delegated to a {@link SimplexNoise} with the same seed.
+ */
+public final class RowSimplexNoise implements RowNoise {
+
+    private static final int GRID_SIZE = 256;
+    private static final int GRID_MASK = GRID_SIZE - 1;
+
+    private static final float F2 = 0.5f * (float) (Math.sqrt(3.0f) - 1.0f);
+    private static final float G2 = (3.0f - (float) Math.sqrt(3.0f)) / 6.0f;
+
+    /**
+     * The x and y components of the 12 gradients of {@link SimplexNoise}, 2D noise ignores the z component
+     */
+    private static final float[] GRAD_X = {1, -1, 1, -1, 1, -1, 1, -1, 0, 0, 0, 0};
+    private static final float[] GRAD_Y = {1, 1, -1, -1, 0, 0, 0, 0, 1, -1, 1, -1};
+
+    private final short[] perm;
+
+    /**
+     * The gradient of the corner with the hash {@code ii + perm[jj]}, including the offsets of the other corners
+     */
+    private final float[] gradX;
+    private final float[] gradY;
+
+    private final SimplexNoise noise3d;
+
+    /**
+     * @param seed the seed, the noise is that of {@code new SimplexNoise(seed)}
+     */
+    public RowSimplexNoise(long seed) {
+        FastRandom rand = new FastRandom(seed);
+        short[] p = new short[GRID_SIZE];
+        for (short i = 0; i < GRID_SIZE; i++) {
+            p[i] = i;
+        }
+        for (int i = 0; i < GRID_SIZE; i++) {
+            int j = rand.nextInt(GRID_SIZE);
+            short swap = p[i];
+            p[i] = p[j];
+            p[j] = swap;
+        }
+
+        perm = new short[GRID_SIZE * 2 + 1];
+        gradX = new float[GRID_SIZE * 2 + 1];
+        gradY = new float[GRID_SIZE * 2 + 1];
+        for (int i = 0; i < perm.length; i++) {
+            perm[i] = p[i & GRID_MASK];
+            gradX[i] = GRAD_X[perm[i] % 12];
+            gradY[i] = GRAD_Y[perm[i] % 12];
+        }
+        noise3d = new SimplexNoise(seed);
+    }
+
+    @Override
+    public float noise(float x, float y) {
+        float s = (x + y) * F2;
+        int i = floor(x + s);
+        int j = floor(y + s);
+        float t = (i + j) * G2;
+        float x0 = x - (i - t);
+        float y0 = y - (j - t);
+        return contributions(i & GRID_MASK, j & GRID_MASK, x0, y0);
+    }
+
+    @Override
+    public float noise(float x, float y, float z) {
+        return noise3d.noise(x, y, z);
+    }
+
+    @Override
+    public void noiseRow(float[] xs, float y, int count, float[] target) {
+        for (int k = 0; k < count; k++) {
+            float x = xs[k];
+            float s = (x + y) * F2;
+            int i = floor(x + s);
+            int j = floor(y + s);
+            float t = (i + j) * G2;
+            float x0 = x - (i - t);
+            float y0 = y - (j - t);
+            target[k] = contributions(i & GRID_MASK, j & GRID_MASK, x0, y0);
+        }
+    }
+
+    /**
+     * Sums the contributions of the three corners of the simplex that contains the sample.
+     *
+     * @param ii the wrapped x coordinate of the first corner
+     * @param jj the wrapped y coordinate of the first corner
+     * @param x0 the offset of the sample from the first corner
+     * @param y0 the offset of the sample from the first corner
+     */
+    private float contributions(int ii, int jj, float x0, float y0) {
+        // the middle corner is one step along the axis in which the sample is further from the first corner
+        int i1 = x0 > y0 ? 1 : 0;
+        int j1 = 1 - i1;
+        float x1 = x0 - i1 + G2;
+        float y1 = y0 - j1 + G2;
+        float x2 = x0 - 1.0f + 2.0f * G2;
+        float y2 = y0 - 1.0f + 2.0f * G2;
+
+        int g0 = ii + perm[jj];
+        int g1 = ii + i1 + perm[jj + j1];
+        int g2 = ii + 1 + perm[jj + 1];
+
+        // corners further away than the kernel radius contribute zero
+        float t0 = Math.max(0.5f - x0 * x0 - y0 * y0, 0f);
+        float t1 = Math.max(0.5f - x1 * x1 - y1 * y1, 0f);
+        float t2 = Math.max(0.5f - x2 * x2 - y2 * y2, 0f);
+        t0 *= t0;
+        t1 *= t1;
+        t2 *= t2;
+        float n0 = t0 * t0 * (gradX[g0] * x0 + gradY[g0] * y0);
+        float n1 = t1 * t1 * (gradX[g1] * x1 + gradY[g1] * y1);
+        float n2 = t2 * t2 * (gradX[g2] * x2 + gradY[g2] * y2);
+        return 70.0f * (n0 + n1 + n2);
+    }
+
+    private static int floor(float value) {
+        int truncated = (int) value;
+        return value < truncated ? truncated - 1 : truncated;
+    }
+}
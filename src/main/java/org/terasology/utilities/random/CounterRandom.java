@@ -0,0 +1,109 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.utilities.random;
+
+import org.terasology.engine.utilities.random.BaseRandom;
+
+/**
+ * A counter-based random number generator, after SplitMix64.
+ * <p>
+ * Every value is a hash of a column key and a counter, so any value of any stream can be computed directly without
+ * creating an object or stepping through the values before it. A column key is derived once from a seed and a world
+ * column, and the independent streams of a column (e.g. one for the placement and one for the type of a plant) are
+ * selected by the upper half of the counter.
+ * <p>
+ * An instance walks through one stream of a column, and can be reset to another one instead of creating a new
+ * generator per use.
+ */
+public final class CounterRandom extends BaseRandom {
+
+    /**
+     * The increment of SplitMix64, the golden ratio as a 64 bit fraction
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long column;
+    private long counter;
+
+    /**
+     * Creates a generator at the start of stream 0 of column key 0, to be {@link #reset(long, int) reset} before use.
+     */
+    public CounterRandom() {
+    }
+
+    /**
+     * @param column the column key, see {@link #column(long, int, int)}
+     * @param stream the stream of the column
+     */
+    public CounterRandom(long column, int stream) {
+        reset(column, stream);
+    }
+
+    /**
+     * @param seed the seed of the world or of the user
+     * @param x the x coordinate of the column
+     * @param z the z coordinate of the column
+     * @return the key of the column, shared by all streams of the column
+     */
+    public static long column(long seed, int x, int z) {
+        return mix(mix(seed) ^ ((long) x << 32 | (z & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * @param column the column key
+     * @param stream the stream of the column
+     * @param index the position in the stream
+     * @return 64 random bits
+     */
+    public static long bitsAt(long column, int stream, int index) {
+        return mix(column + GOLDEN_GAMMA * ((long) stream << 32 | (index & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * @return a random value in [0..1)
+     * @see #bitsAt(long, int, int)
+     */
+    public static float floatAt(long column, int stream, int index) {
+        return (bitsAt(column, stream, index) >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * @param bound the upper bound, must be positive
+     * @return a random value in [0..bound)
+     * @see #bitsAt(long, int, int)
+     */
+    public static int intAt(long column, int stream, int index, int bound) {
+        return (int) (((bitsAt(column, stream, index) >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Moves the generator to the start of a stream.
+     *
+     * @param newColumn the column key, see {@link #column(long, int, int)}
+     * @param stream the stream of the column
+     */
+    public void reset(long newColumn, int stream) {
+        this.column = newColumn;
+        this.counter = (long) stream << 32;
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    public long nextLong() {
+        return mix(column + GOLDEN_GAMMA * counter++);
+    }
+
+    /**
+     * The finalizer of SplitMix64, a bijection that spreads every input bit over all output bits
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.core.world.generator.ClimateCache;
+import org.terasology.core.world.generator.ClimateSimulator;
+import org.terasology.core.world.generator.FloatGrid;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClimateCacheTest {
+
+    private static final int SIZE = 16;
+    /**
+     * The header and two grids
+     */
+    private static final long ENTRY_BYTES = 4 * Integer.BYTES + 2L * SIZE * SIZE * Float.BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReadsStoredResults() throws IOException {
+        ClimateCache cache = new ClimateCache(directory);
+        FloatGrid heightmap = randomHeightMap(1);
+        ClimateSimulator computed = cache.getOrCompute(heightmap);
+        assertEquals(1, entries().size());
+
+        ClimateSimulator cached = cache.getOrCompute(heightmap);
+        assertArrayEquals(computed.getClimate().getData(), cached.getClimate().getData());
+        assertArrayEquals(computed.getHumidity().getData(), cached.getHumidity().getData());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws IOException, InterruptedException {
+        ClimateCache cache = new ClimateCache(directory, 2 * ENTRY_BYTES);
+        FloatGrid first = randomHeightMap(1);
+        FloatGrid second = randomHeightMap(2);
+
+        cache.getOrCompute(first);
+        Set<Path> firstEntry = entries();
+        pause();
+        cache.getOrCompute(second);
+        Set<Path> secondEntry = entries();
+        secondEntry.removeAll(firstEntry);
+        pause();
+        // reading the older entry makes the other one the least recently used
+        cache.getOrCompute(first);
+        pause();
+        cache.getOrCompute(randomHeightMap(3));
+
+        Set<Path> remaining = entries();
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.containsAll(firstEntry));
+        assertFalse(remaining.containsAll(secondEntry));
+    }
+
+    @Test
+    public void testKeepsNewEntryBeyondLimit() throws IOException {
+        ClimateCache cache = new ClimateCache(directory, ENTRY_BYTES / 2);
+        cache.getOrCompute(randomHeightMap(1));
+        cache.getOrCompute(randomHeightMap(2));
+        assertEquals(1, entries().size());
+    }
+
+    private Set<Path> entries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * Lets enough time pass for the file system to tell the modification times apart
+     */
+    private static void pause() throws InterruptedException {
+        Thread.sleep(50);
+    }
+
+    private static FloatGrid randomHeightMap(long seed) {
+        Random random = new Random(seed);
+        FloatGrid heightmap = new FloatGrid(SIZE, SIZE);
+        for (int i = 0; i < heightmap.getData().length; i++) {
+            heightmap.getData()[i] = random.nextFloat() * 2 + 0.3f;
+        }
+        return heightmap;
+    }
+}
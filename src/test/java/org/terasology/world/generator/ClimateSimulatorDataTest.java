@@ -0,0 +1,242 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.core.world.generator.ClimateCache;
+import org.terasology.core.world.generator.ClimateSimulator;
+import org.terasology.core.world.generator.ClimateSimulatorData;
+import org.terasology.core.world.generator.FloatGrid;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ClimateSimulatorDataTest {
+
+    private static final String[] SOURCES = {"poles", "equator", "water"};
+
+    @Test
+    public void testMatchesSweepsOnBundledHeightMaps() throws IOException {
+        for (String name : new String[]{"platec_heightmap", "opposing_islands"}) {
+            File file = new File("assets/textures/" + name + ".png");
+            assumeTrue(file.isFile(), "height map assets are not available");
+            assertMatchesSweeps(readHeightMap(file, 128));
+        }
+    }
+
+    @Test
+    public void testMatchesSweepsOnRandomHeightMaps() {
+        Random random = new Random(1234);
+        for (int size : new int[]{1, 2, 3, 17, 64}) {
+            float[][] heightmap = new float[size][size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    heightmap[i][j] = random.nextFloat() * 4;
+                }
+            }
+            assertMatchesSweeps(heightmap);
+        }
+    }
+
+    @Test
+    public void testMultiresolutionIsCloseToExact() throws IOException {
+        File file = new File("assets/textures/platec_heightmap.png");
+        assumeTrue(file.isFile(), "height map assets are not available");
+        float[][] heightmap = readHeightMap(file, 512);
+        FloatGrid grid = new FloatGrid(512, 512);
+        for (int i = 0; i < 512; i++) {
+            System.arraycopy(heightmap[i], 0, grid.getData(), i * 512, 512);
+        }
+
+        ClimateSimulatorData data = new ClimateSimulatorData(grid);
+        for (String source : SOURCES) {
+            float[] expected = data.distanceFrom(source, 10).getData();
+            float[] actual = data.distanceFrom(source, 10, 0.01f).getData();
+            double error = 0;
+            for (int i = 0; i < expected.length; i++) {
+                error += Math.abs(expected[i] - actual[i]);
+            }
+            assertTrue(error / expected.length < 0.02, source + " has a mean error of " + error / expected.length);
+        }
+    }
+
+    @Test
+    public void testUpdateMatchesFullSimulation(@TempDir Path cacheDir) {
+        Random random = new Random(4321);
+        int width = 96;
+        int height = 80;
+        FloatGrid heightmap = new FloatGrid(width, height);
+        for (int i = 0; i < heightmap.getData().length; i++) {
+            heightmap.getData()[i] = random.nextFloat() * 2 + 0.3f;
+        }
+
+        ClimateCache cache = new ClimateCache(cacheDir);
+        ClimateSimulator simulator = cache.getOrCompute(heightmap);
+        // the first edit is local, the second one crosses the edge of the map and the third one covers most of it
+        int[][] edits = {{40, 30, 5, 4}, {90, 75, 10, 12}, {2, 2, 70, 60}};
+        for (int[] edit : edits) {
+            for (int y = edit[1]; y < edit[1] + edit[3]; y++) {
+                for (int x = edit[0]; x < edit[0] + edit[2]; x++) {
+                    heightmap.set(x % width, y % height, random.nextFloat() * 3);
+                }
+            }
+            simulator.update(edit[0], edit[1], edit[2], edit[3]);
+
+            ClimateSimulator expected = cache.getOrCompute(heightmap);
+            assertArrayEquals(expected.getClimate().getData(), simulator.getClimate().getData());
+            assertArrayEquals(expected.getHumidity().getData(), simulator.getHumidity().getData());
+        }
+    }
+
+    @Test
+    public void testNonSquareMap() {
+        int width = 40;
+        int height = 24;
+        FloatGrid heightmap = new FloatGrid(width, height);
+        Arrays.fill(heightmap.getData(), 2);
+
+        FloatGrid poles = new ClimateSimulatorData(heightmap).distanceFrom("poles", 0);
+        for (int x = 0; x < width; x++) {
+            assertEquals(0, poles.get(x, 0));
+            // distances grow towards the middle row and wrap around the bottom edge
+            assertEquals(1, poles.get(x, height / 2));
+            assertEquals(poles.get(x, 1), poles.get(x, height - 1));
+        }
+    }
+
+    private static void assertMatchesSweeps(float[][] heightmap) {
+        int size = heightmap.length;
+        FloatGrid grid = new FloatGrid(size, size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                grid.set(j, i, heightmap[i][j]);
+            }
+        }
+
+        ClimateSimulatorData data = new ClimateSimulatorData(grid);
+        for (String source : SOURCES) {
+            for (float heightInfluence : new float[]{0, 5, 10}) {
+                float[][] expected = sweepDistanceFrom(heightmap, initDist(size, heightmap, source), source, heightInfluence);
+                FloatGrid actual = data.distanceFrom(source, heightInfluence);
+                for (int i = 0; i < size; i++) {
+                    float[] row = Arrays.copyOfRange(actual.getData(), i * size, (i + 1) * size);
+                    assertArrayEquals(expected[i], row, 0, source + " with influence " + heightInfluence + " in row " + i);
+                }
+            }
+        }
+    }
+
+    private static float[][] initDist(int size, float[][] heightmap, String fromWhat) {
+        float[][] distArr = new float[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                boolean source;
+                switch (fromWhat) {
+                    case "water":
+                        source = heightmap[i][j] - 1 < 0;
+                        break;
+                    case "poles":
+                        source = i == 0;
+                        break;
+                    default:
+                        source = i == size / 2;
+                        break;
+                }
+                distArr[i][j] = source ? 0 : size;
+            }
+        }
+        return distArr;
+    }
+
+    /**
+     * Reads every {@code size}-th pixel of a height map texture, scaled like the default settings of the height map
+     * world generator so that sea level is at 1.
+     */
+    private static float[][] readHeightMap(File file, int size) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        int step = image.getWidth() / size;
+        float[][] heightmap = new float[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                // the red and green channels hold the height with 16 bits
+                float height = ((image.getRGB(j * step, i * step) >> 8) & 0xFFFF) / 65536f;
+                heightmap[i][j] = (12 + 70 * height) / 16;
+            }
+        }
+        return heightmap;
+    }
+
+    /**
+     * The distance calculation that sweeps over the whole map once per distance, as it was before it was replaced.
+     */
+    private static float[][] sweepDistanceFrom(float[][] heightmap, float[][] distArr, String fromWhat, float heightInfluence) {
+        int size = heightmap.length;
+        float currentDistance = 0;
+
+        while (currentDistance < size) {
+            for (int width = 0; width < size; width++) {
+                for (int height = 0; height < size; height++) {
+                    float currHeight = heightmap[width][height];
+                    if (distArr[width][height] == size) { //Block could update
+                        int posW = (width + 1) % size;
+                        int posH = (height + 1) % size;
+                        int negW = ((width - 1) + size) % size;
+                        int negH = (height - 1 + size) % size;
+
+                        if (distArr[posW][height] + (heightmap[posW][height] - currHeight) * heightInfluence <= currentDistance
+                                || distArr[width][posH] + (heightmap[width][posH] - currHeight) * heightInfluence <= currentDistance
+                                || distArr[negW][height] + (heightmap[negW][height] - currHeight) * heightInfluence <= currentDistance
+                                || distArr[width][negH] + (heightmap[width][negH] - currHeight) * heightInfluence <= currentDistance) {
+                            //Updates over an edge
+                            distArr[width][height] = currentDistance + 1;
+                        } else if (
+                                distArr[posW][posH] + (heightmap[posW][posH] - currHeight) * heightInfluence <= currentDistance + 0.41421
+                                        || distArr[negW][posH] + (heightmap[negW][posH] - currHeight) * heightInfluence <= currentDistance + 0.41421
+                                        || distArr[posW][negH] + (heightmap[posW][negH] - currHeight) * heightInfluence <= currentDistance + 0.41421
+                                        || distArr[negW][negH] + (heightmap[negW][negH] - currHeight) * heightInfluence <= currentDistance + 0.41421) {
+                            //Updates over the corner
+                            distArr[width][height] = currentDistance + 1.41421f;
+                        }
+                    }
+                }
+            }
+            currentDistance++;
+        }
+
+        //normalize Array
+        float max = 0;
+        for (int width = 0; width < size; width++) {
+            for (int height = 0; height < size; height++) {
+                max = distArr[width][height] > max ? distArr[width][height] : max;
+            }
+        }
+        for (int width = 0; width < size; width++) {
+            for (int height = 0; height < size; height++) {
+                distArr[width][height] /= max;
+            }
+        }
+
+        //invert if necessary
+        if (fromWhat.equals("equator")) {
+            for (int width = 0; width < size; width++) {
+                for (int height = 0; height < size; height++) {
+                    distArr[width][height] = 1 - distArr[width][height];
+                }
+            }
+        }
+
+        return distArr;
+    }
+}
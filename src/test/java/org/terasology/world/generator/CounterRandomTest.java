@@ -0,0 +1,76 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.joml.Vector3i;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.PositionFilters;
+import org.terasology.utilities.random.CounterRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CounterRandomTest {
+
+    @Test
+    public void testInstanceWalksThroughStream() {
+        long column = CounterRandom.column(42, -7, 13);
+        CounterRandom random = new CounterRandom(column, 3);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(CounterRandom.bitsAt(column, 3, i), random.nextLong());
+        }
+
+        random.reset(column, 3);
+        assertEquals(CounterRandom.bitsAt(column, 3, 0), random.nextLong());
+    }
+
+    @Test
+    public void testColumnsAndStreamsDiffer() {
+        long column = CounterRandom.column(42, 0, 0);
+        assertNotEquals(column, CounterRandom.column(43, 0, 0));
+        assertNotEquals(column, CounterRandom.column(42, 1, 0));
+        assertNotEquals(column, CounterRandom.column(42, 0, 1));
+        assertNotEquals(CounterRandom.bitsAt(column, 0, 0), CounterRandom.bitsAt(column, 1, 0));
+    }
+
+    @Test
+    public void testValuesAreUniform() {
+        int bound = 7;
+        int[] counts = new int[bound];
+        double sum = 0;
+        int samples = 70000;
+        for (int i = 0; i < samples; i++) {
+            long column = CounterRandom.column(5, i % 100, i / 100);
+            float value = CounterRandom.floatAt(column, 0, 0);
+            assertTrue(value >= 0 && value < 1, "value out of range: " + value);
+            sum += value;
+            counts[CounterRandom.intAt(column, 1, 0, bound)]++;
+        }
+        assertEquals(0.5, sum / samples, 0.01);
+        for (int count : counts) {
+            assertEquals(samples / bound, count, samples / bound * 0.05);
+        }
+    }
+
+    @Test
+    public void testProbabilityFilterUsesColumnKey() {
+        PositionFilters.ColumnFilter filter = PositionFilters.probability(0, 0.25f);
+        Vector3i pos = new Vector3i();
+        int passed = 0;
+        int samples = 40000;
+        for (int i = 0; i < samples; i++) {
+            int x = i % 200 - 100;
+            int z = i / 200 - 100;
+            long column = CounterRandom.column(7, x, z);
+            pos.set(x, i % 13, z);
+            boolean expected = CounterRandom.floatAt(column, 0, pos.y()) < 0.25f;
+            assertEquals(expected, filter.apply(column, pos));
+            if (expected) {
+                passed++;
+            }
+        }
+        assertEquals(0.25, (double) passed / samples, 0.01);
+    }
+}
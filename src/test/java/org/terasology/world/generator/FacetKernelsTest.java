@@ -0,0 +1,78 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.FacetKernels;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FacetKernelsTest {
+
+    private static final float SEA_LEVEL = 32;
+    private static final float BEACH_STEEPNESS = 0.05f;
+    private static final float OCEAN_FLOOR_CUTOFF = 0.1f;
+
+    private final float[] noise = randomNoise(1000);
+
+    @Test
+    public void testClimateFromNoise() {
+        float[] values = noise.clone();
+        FacetKernels.climateFromNoise(values, values.length);
+        for (int i = 0; i < noise.length; i++) {
+            float expected = Math.min(Math.max((noise[i] * 2.11f + 1f) * 0.5f, 0), 1);
+            assertEquals(expected, values[i], "for " + noise[i]);
+        }
+    }
+
+    @Test
+    public void testSurfaceFromNoise() {
+        float[] values = noise.clone();
+        FacetKernels.surfaceFromNoise(values, values.length, SEA_LEVEL, BEACH_STEEPNESS, OCEAN_FLOOR_CUTOFF);
+        for (int i = 0; i < noise.length; i++) {
+            assertEquals(surface(noise[i]), values[i], "for " + noise[i]);
+        }
+    }
+
+    @Test
+    public void testCarveRivers() {
+        float[] heights = new float[noise.length + 3];
+        FacetKernels.carveRivers(noise, 2, heights, 3, noise.length - 2, 16);
+        for (int i = 0; i < noise.length - 2; i++) {
+            assertEquals(16 * Math.min(0, Math.abs(noise[i + 2]) * 20f - 1), heights[i + 3], "for " + noise[i + 2]);
+        }
+        assertEquals(0, heights[0]);
+    }
+
+    /**
+     * The piecewise curve, as it was written before it became a kernel.
+     */
+    private static float surface(float noise) {
+        if (noise > 0) {
+            return SEA_LEVEL + noise * (noise + BEACH_STEEPNESS) * 1000;
+        } else if (noise > -OCEAN_FLOOR_CUTOFF) {
+            float shore = noise / OCEAN_FLOOR_CUTOFF;
+            return (shore + 1) * (shore + 1) * SEA_LEVEL;
+        } else {
+            return 0;
+        }
+    }
+
+    private static float[] randomNoise(int length) {
+        Random random = new Random(5);
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        // the edges of the pieces
+        values[0] = 0;
+        values[1] = -OCEAN_FLOOR_CUTOFF;
+        values[2] = Math.nextUp(-OCEAN_FLOOR_CUTOFF);
+        values[3] = 1;
+        values[4] = -1;
+        return values;
+    }
+}
@@ -0,0 +1,264 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.core.world.generator.heightmap.HeightMapFiles;
+import org.terasology.core.world.generator.heightmap.TiledHeightMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeightMapFilesTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSupportedExtensions() {
+        assertTrue(HeightMapFiles.isSupported("map.png"));
+        assertTrue(HeightMapFiles.isSupported("map_10x20.R16"));
+        assertTrue(HeightMapFiles.isSupported("map.raw"));
+        assertTrue(HeightMapFiles.isSupported("map.r32"));
+        assertFalse(HeightMapFiles.isSupported("map.jpg"));
+        assertFalse(HeightMapFiles.isSupported("map"));
+    }
+
+    @Test
+    public void test8BitPngWithAllFilters() throws IOException {
+        int[] values = randomValues(255, 1);
+        Path file = writePng("map8.png", values, 8, 1000);
+        assertPixels(file, values, 256);
+    }
+
+    @Test
+    public void test16BitPngWithAllFilters() throws IOException {
+        int[] values = randomValues(65535, 2);
+        Path file = writePng("map16.png", values, 16, 1000);
+        assertPixels(file, values, 65536);
+    }
+
+    @Test
+    public void testPngWithSplitDataChunks() throws IOException {
+        int[] values = randomValues(65535, 3);
+        // chunks of a few bytes, so that rows and even pixels span several chunks
+        Path file = writePng("split.png", values, 16, 7);
+        assertPixels(file, values, 65536);
+    }
+
+    @Test
+    public void testRejectsColorPng() throws IOException {
+        Path file = directory.resolve("color.png");
+        Files.write(file, png(new byte[0], 8, 2, 1));
+        assertThrows(IOException.class, () -> HeightMapFiles.read(file));
+    }
+
+    @Test
+    public void testRaw16WithSizeSuffix() throws IOException {
+        int[] values = randomValues(65535, 4);
+        ByteBuffer data = ByteBuffer.allocate(values.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int value : values) {
+            data.putShort((short) value);
+        }
+        Path file = directory.resolve("map_" + WIDTH + "x" + HEIGHT + ".r16");
+        Files.write(file, data.array());
+        assertPixels(file, values, 65536);
+    }
+
+    @Test
+    public void testRaw32WithSizeSuffix() throws IOException {
+        Random random = new Random(5);
+        float[] values = new float[WIDTH * HEIGHT];
+        ByteBuffer data = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+            data.putFloat(values[i]);
+        }
+        Path file = directory.resolve("map_" + WIDTH + "x" + HEIGHT + ".r32");
+        Files.write(file, data.array());
+
+        TiledHeightMap map = HeightMapFiles.read(file);
+        try {
+            assertEquals(WIDTH, map.getWidth());
+            assertEquals(HEIGHT, map.getHeight());
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], map.get(i % WIDTH, i / WIDTH));
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testSquareRawWithoutSuffix() throws IOException {
+        Path file = directory.resolve("square.raw");
+        Files.write(file, new byte[16 * 16 * Short.BYTES]);
+        TiledHeightMap map = HeightMapFiles.read(file);
+        try {
+            assertEquals(16, map.getWidth());
+            assertEquals(16, map.getHeight());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testRejectsRawOfWrongSize() throws IOException {
+        Path file = directory.resolve("map_10x10.r16");
+        Files.write(file, new byte[99 * Short.BYTES]);
+        assertThrows(IOException.class, () -> HeightMapFiles.read(file));
+    }
+
+    private void assertPixels(Path file, int[] values, int maxValue) throws IOException {
+        TiledHeightMap map = HeightMapFiles.read(file);
+        try {
+            assertEquals(WIDTH, map.getWidth());
+            assertEquals(HEIGHT, map.getHeight());
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i] / (float) maxValue, map.get(i % WIDTH, i / WIDTH), "at " + i);
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    private static int[] randomValues(int max, long seed) {
+        Random random = new Random(seed);
+        int[] values = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < values.length; i++) {
+            // smooth with some noise, so that all filters see small and large differences
+            values[i] = Math.min(max, Math.max(0, (i % WIDTH) * max / WIDTH + random.nextInt(max / 8) - max / 16));
+        }
+        return values;
+    }
+
+    /**
+     * Writes a grayscale PNG that uses the filter types 0 to 4 on consecutive rows.
+     */
+    private Path writePng(String name, int[] values, int bitDepth, int chunkSize) throws IOException {
+        int bpp = bitDepth / 8;
+        int stride = WIDTH * bpp;
+        byte[] previous = new byte[stride];
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        for (int z = 0; z < HEIGHT; z++) {
+            byte[] line = new byte[stride];
+            for (int x = 0; x < WIDTH; x++) {
+                int value = values[x + z * WIDTH];
+                if (bpp == 2) {
+                    line[2 * x] = (byte) (value >> 8);
+                    line[2 * x + 1] = (byte) value;
+                } else {
+                    line[x] = (byte) value;
+                }
+            }
+            int filter = z % 5;
+            raw.write(filter);
+            raw.write(filter(filter, line, previous, bpp));
+            previous = line;
+        }
+
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw.toByteArray());
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        Path file = directory.resolve(name);
+        Files.write(file, png(compressed.toByteArray(), bitDepth, 0, chunkSize));
+        return file;
+    }
+
+    private static byte[] filter(int filter, byte[] line, byte[] previous, int bpp) {
+        byte[] filtered = new byte[line.length];
+        for (int i = 0; i < line.length; i++) {
+            int a = i >= bpp ? line[i - bpp] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+            int predictor;
+            switch (filter) {
+                case 1:
+                    predictor = a;
+                    break;
+                case 2:
+                    predictor = b;
+                    break;
+                case 3:
+                    predictor = (a + b) / 2;
+                    break;
+                case 4:
+                    predictor = paeth(a, b, c);
+                    break;
+                default:
+                    predictor = 0;
+            }
+            filtered[i] = (byte) (line[i] - predictor);
+        }
+        return filtered;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Wraps compressed image data into a PNG file, split into IDAT chunks of the given size with an ancillary chunk
+     * in front of the data.
+     */
+    private static byte[] png(byte[] data, int bitDepth, int colorType, int chunkSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(WIDTH).putInt(HEIGHT).put((byte) bitDepth).put((byte) colorType).put((byte) 0).put((byte) 0).put((byte) 0);
+        chunk(out, "IHDR", header.array(), 0, 13);
+        byte[] text = "Comment\0test".getBytes(StandardCharsets.ISO_8859_1);
+        chunk(out, "tEXt", text, 0, text.length);
+        for (int offset = 0; offset < data.length; offset += chunkSize) {
+            chunk(out, "IDAT", data, offset, Math.min(chunkSize, data.length - offset));
+        }
+        chunk(out, "IEND", new byte[0], 0, 0);
+        return bytes.toByteArray();
+    }
+
+    private static void chunk(DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+}
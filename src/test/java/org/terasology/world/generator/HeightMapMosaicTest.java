@@ -0,0 +1,165 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.core.world.generator.heightmap.HeightMap;
+import org.terasology.core.world.generator.heightmap.HeightMapMosaic;
+import org.terasology.core.world.generator.heightmap.HeightMapPyramid;
+import org.terasology.core.world.generator.heightmap.HeightMapSampler;
+import org.terasology.core.world.generator.heightmap.TiledHeightMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeightMapMosaicTest {
+
+    // deliberately not powers of two
+    private static final int TILE_WIDTH = 37;
+    private static final int TILE_HEIGHT = 23;
+    private static final int TILES_X = 3;
+    private static final int TILES_Z = 2;
+    private static final long TILE_BYTES = (long) TILE_WIDTH * TILE_HEIGHT * Float.BYTES;
+
+    @TempDir
+    Path directory;
+
+    private TiledHeightMap stitched;
+    private HeightMapPyramid expected;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        stitched = new TiledHeightMap(TILES_X * TILE_WIDTH, TILES_Z * TILE_HEIGHT);
+        Random random = new Random(3);
+        for (int tileZ = 0; tileZ < TILES_Z; tileZ++) {
+            for (int tileX = 0; tileX < TILES_X; tileX++) {
+                // the missing tile is flat
+                if (tileX == 1 && tileZ == 1) {
+                    continue;
+                }
+                ByteBuffer data = ByteBuffer.allocate((int) TILE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int z = 0; z < TILE_HEIGHT; z++) {
+                    for (int x = 0; x < TILE_WIDTH; x++) {
+                        float value = random.nextFloat();
+                        data.putFloat(value);
+                        stitched.set(tileX * TILE_WIDTH + x, tileZ * TILE_HEIGHT + z, value);
+                    }
+                }
+                String name = tileX + "_" + tileZ + "_" + TILE_WIDTH + "x" + TILE_HEIGHT + ".r32";
+                Files.write(directory.resolve(name), data.array());
+            }
+        }
+        expected = HeightMapPyramid.build(stitched);
+    }
+
+    @AfterEach
+    public void teardown() {
+        expected.release();
+    }
+
+    @Test
+    public void testLevelsMatchPyramidOfStitchedMap() throws IOException {
+        HeightMapPyramid mosaic = new HeightMapMosaic(directory, Long.MAX_VALUE).toPyramid();
+        try {
+            assertEquals(expected.getLevelCount(), mosaic.getLevelCount());
+            for (int level = 0; level < expected.getLevelCount(); level++) {
+                assertSameValues(expected.getLevel(level), mosaic.getLevel(level), "level " + level);
+            }
+        } finally {
+            mosaic.release();
+        }
+    }
+
+    @Test
+    public void testReadAcrossTileEdges() throws IOException {
+        HeightMapPyramid mosaic = new HeightMapMosaic(directory, Long.MAX_VALUE).toPyramid();
+        try {
+            for (int level = 0; level < 3; level++) {
+                HeightMap source = expected.getLevel(level);
+                int[] xs = new int[source.getWidth()];
+                int[] zs = new int[source.getHeight()];
+                for (int i = 0; i < xs.length; i++) {
+                    // out of order and with repetitions, like a window that wraps around the map
+                    xs[i] = (i * 7 + 3) % xs.length;
+                }
+                for (int j = 0; j < zs.length; j++) {
+                    zs[j] = zs.length - 1 - j;
+                }
+                float[] actual = new float[xs.length * zs.length];
+                mosaic.getLevel(level).read(xs, xs.length, zs, zs.length, actual);
+                for (int j = 0; j < zs.length; j++) {
+                    for (int i = 0; i < xs.length; i++) {
+                        assertEquals(source.get(xs[i], zs[j]), actual[i + j * xs.length]);
+                    }
+                }
+            }
+        } finally {
+            mosaic.release();
+        }
+    }
+
+    @Test
+    public void testSamplingIsSeamless() throws IOException {
+        HeightMapPyramid mosaic = new HeightMapMosaic(directory, Long.MAX_VALUE).toPyramid();
+        try {
+            int terrainScale = 4;
+            HeightMapSampler reference = new HeightMapSampler(expected, terrainScale, true);
+            HeightMapSampler sampler = new HeightMapSampler(mosaic, terrainScale, true);
+            // regions that straddle the tile edges, and one that wraps around the map
+            int[][] regions = {{TILE_WIDTH * terrainScale - 16, TILE_HEIGHT * terrainScale - 16},
+                {2 * TILE_WIDTH * terrainScale - 5, -20}, {-30, 10}};
+            for (int[] region : regions) {
+                for (float scale : new float[]{1, 3, 9}) {
+                    float[] expectedValues = new float[32 * 32];
+                    float[] actualValues = new float[32 * 32];
+                    reference.sample(region[0], region[1], 32, 32, scale, 0, 100, expectedValues);
+                    sampler.sample(region[0], region[1], 32, 32, scale, 0, 100, actualValues);
+                    assertArrayEquals(expectedValues, actualValues, 0);
+                }
+            }
+        } finally {
+            mosaic.release();
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedTiles() throws IOException {
+        long budget = TILE_BYTES * 3 / 2;
+        HeightMapMosaic mosaic = new HeightMapMosaic(directory, budget);
+        HeightMapPyramid pyramid = mosaic.toPyramid();
+        try {
+            // every tile is loaded in turn, and reloaded after it was evicted
+            for (int pass = 0; pass < 2; pass++) {
+                assertSameValues(expected.getLevel(0), pyramid.getLevel(0), "pass " + pass);
+                assertTrue(mosaic.getLoadedBytes() <= budget, "loaded " + mosaic.getLoadedBytes());
+            }
+            assertSameValues(expected.getLevel(2), pyramid.getLevel(2), "level 2");
+            assertTrue(mosaic.getLoadedBytes() <= budget, "loaded " + mosaic.getLoadedBytes());
+        } finally {
+            pyramid.release();
+        }
+        assertEquals(0, mosaic.getLoadedBytes());
+    }
+
+    private static void assertSameValues(HeightMap expected, HeightMap actual, String message) {
+        assertEquals(expected.getWidth(), actual.getWidth(), message);
+        assertEquals(expected.getHeight(), actual.getHeight(), message);
+        for (int z = 0; z < expected.getHeight(); z++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.get(x, z), actual.get(x, z), message + " at " + x + ", " + z);
+            }
+        }
+    }
+}
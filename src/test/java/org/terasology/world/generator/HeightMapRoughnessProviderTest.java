@@ -0,0 +1,90 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.HeightMapRoughnessProvider;
+import org.terasology.core.world.generator.facetProviders.HeightMapSurfaceHeightProvider;
+import org.terasology.core.world.generator.facets.SurfaceRoughnessFacet;
+import org.terasology.engine.world.block.BlockAreac;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.generation.Border3D;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.WorldFacet;
+import org.terasology.engine.world.generation.facets.ElevationFacet;
+import org.terasology.engine.world.generation.facets.SeaLevelFacet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HeightMapRoughnessProviderTest {
+
+    private static final int SEA_LEVEL = 32;
+
+    @Test
+    public void testRoughnessFromHeightAndSlope() {
+        // one column per case, {height above sea level, slope in blocks per block, expected roughness}
+        float[][] cases = {
+            {0, 0.25f, 0.25f},     // neutral slope at sea level
+            {100, 0.25f, 0.95f},   // higher is rougher
+            {-100, 0.25f, -0.45f}, // lower is smoother
+            {0, 0, -0.125f},       // flat ground removes roughness
+            {0, 1, 1.375f},        // steep ground adds roughness
+            {0, 2, 2.875f},        // cliffs ...
+            {0, 10, 2.875f},       // ... all count as the steepest slope
+        };
+        BlockRegion region = new BlockRegion(5, 0, 7, 5 + cases.length - 1, 0, 7);
+        Border3D border = new Border3D(0, 0, 0);
+
+        ElevationFacet elevation = new ElevationFacet(region, border);
+        for (int i = 0; i < cases.length; i++) {
+            elevation.setWorld(5 + i, 7, SEA_LEVEL + cases[i][0]);
+        }
+        SeaLevelFacet seaLevel = new SeaLevelFacet(region, border);
+        seaLevel.setSeaLevel(SEA_LEVEL);
+
+        HeightMapSurfaceHeightProvider heightProvider = new HeightMapSurfaceHeightProvider() {
+            @Override
+            public void sampleSlope(BlockAreac area, float scale, float[] target) {
+                for (int i = 0; i < cases.length; i++) {
+                    target[i] = cases[i][1];
+                }
+            }
+        };
+
+        Map<Class<?>, WorldFacet> facets = new HashMap<>();
+        facets.put(ElevationFacet.class, elevation);
+        facets.put(SeaLevelFacet.class, seaLevel);
+        GeneratingRegion generatingRegion = new GeneratingRegion() {
+            @Override
+            public BlockRegion getRegion() {
+                return region;
+            }
+
+            @Override
+            public <T extends WorldFacet> T getRegionFacet(Class<T> type) {
+                return type.cast(facets.get(type));
+            }
+
+            @Override
+            public <T extends WorldFacet> void setRegionFacet(Class<T> type, T facet) {
+                facets.put(type, facet);
+            }
+
+            @Override
+            public Border3D getBorderForFacet(Class<? extends WorldFacet> type) {
+                return border;
+            }
+        };
+
+        new HeightMapRoughnessProvider(heightProvider).process(generatingRegion, 1);
+
+        SurfaceRoughnessFacet facet = (SurfaceRoughnessFacet) facets.get(SurfaceRoughnessFacet.class);
+        for (int i = 0; i < cases.length; i++) {
+            assertEquals(cases[i][2], facet.getWorld(5 + i, 7), 1e-5f, "case " + i);
+        }
+    }
+}
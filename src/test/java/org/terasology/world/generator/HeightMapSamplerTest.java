@@ -0,0 +1,200 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.heightmap.HeightMap;
+import org.terasology.core.world.generator.heightmap.HeightMapPyramid;
+import org.terasology.core.world.generator.heightmap.HeightMapSampler;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HeightMapSamplerTest {
+
+    private static final float OFFSET = 12;
+    private static final float SCALE = 70;
+    private static final float EPSILON = 1e-4f;
+
+    private final HeightMap heightMap = randomHeightMap(37, 23, 42);
+
+    @Test
+    public void testRepeatMatchesPerColumnInterpolation() {
+        for (int terrainScale : new int[]{1, 3, 8, 32}) {
+            HeightMapSampler sampler = new HeightMapSampler(heightMap, terrainScale, true);
+            assertMatchesReference(sampler, terrainScale, true, -700, -300, 100, 77);
+            assertMatchesReference(sampler, terrainScale, true, 250, 1000, 61, 5);
+        }
+    }
+
+    @Test
+    public void testClampMatchesPerColumnInterpolation() {
+        for (int terrainScale : new int[]{1, 3, 8, 32}) {
+            HeightMapSampler sampler = new HeightMapSampler(heightMap, terrainScale, false);
+            int mapSizeX = heightMap.getWidth() * terrainScale;
+            int mapSizeZ = heightMap.getHeight() * terrainScale;
+            // covers the map and the area beyond its far edges
+            assertMatchesReference(sampler, terrainScale, false, 0, 0, mapSizeX + 40, mapSizeZ + 40);
+        }
+    }
+
+    @Test
+    public void testCoarseScaleReadsMatchingPyramidLevel() {
+        HeightMap coarse = randomHeightMap(19, 12, 7);
+        HeightMapPyramid pyramid = new HeightMapPyramid(Arrays.asList(heightMap, coarse));
+        int terrainScale = 8;
+        HeightMapSampler sampler = new HeightMapSampler(pyramid, terrainScale, true);
+
+        // every sample is exactly one texel of the second level apart, a quarter texel after the center of the previous one
+        int sizeX = 30;
+        int sizeZ = 20;
+        float[] actual = new float[sizeX * sizeZ];
+        sampler.sample(-5, 3, sizeX, sizeZ, 2 * terrainScale, OFFSET, SCALE, actual);
+
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                int x0 = Math.floorMod(x - 6, coarse.getWidth());
+                int x1 = Math.floorMod(x - 5, coarse.getWidth());
+                int z0 = Math.floorMod(z + 2, coarse.getHeight());
+                int z1 = Math.floorMod(z + 3, coarse.getHeight());
+                double height = lerp(0.75, lerp(0.75, coarse.get(x0, z0), coarse.get(x0, z1)),
+                        lerp(0.75, coarse.get(x1, z0), coarse.get(x1, z1)));
+                assertEquals(OFFSET + SCALE * height, actual[x + z * sizeX], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void testCoarseLevelsAreCenteredOnTheirTexels() throws IOException {
+        // a ramp along x, whose average over a block of texels is the ramp at the center of the block
+        int width = 512;
+        HeightMap ramp = new HeightMap() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return 4;
+            }
+
+            @Override
+            public float get(int x, int z) {
+                return x / (float) width;
+            }
+        };
+        HeightMapPyramid pyramid = HeightMapPyramid.build(ramp);
+        int terrainScale = 4;
+        HeightMapSampler sampler = new HeightMapSampler(pyramid, terrainScale, false);
+
+        // scales that read levels 0, 1 and 2, at positions that are spread over the texels
+        for (float scale : new float[]{5, 9, 17}) {
+            int minX = 10;
+            int sizeX = (int) (width * terrainScale * 0.8f / scale) - minX;
+            float[] actual = new float[sizeX];
+            sampler.sample(minX, 0, sizeX, 1, scale, 0, width, actual);
+
+            double bias = 0;
+            for (int i = 0; i < sizeX; i++) {
+                double expected = (minX + i) * scale / terrainScale;
+                bias += actual[i] - expected;
+            }
+            // the Hermite curve deviates from the ramp between texels, but not on average
+            assertEquals(0, bias / sizeX, 0.05, "at scale " + scale);
+        }
+    }
+
+    @Test
+    public void testBuiltPyramidEndsInSingleTexel() throws IOException {
+        HeightMapPyramid pyramid = HeightMapPyramid.build(heightMap);
+
+        HeightMap last = pyramid.getLevel(pyramid.getLevelCount() - 1);
+        assertEquals(1, last.getWidth());
+        assertEquals(1, last.getHeight());
+        assertEquals(19, pyramid.getLevel(1).getWidth());
+        assertEquals(12, pyramid.getLevel(1).getHeight());
+    }
+
+    private void assertMatchesReference(HeightMapSampler sampler, int terrainScale, boolean repeat,
+                                        int minX, int minZ, int sizeX, int sizeZ) {
+        float[] actual = new float[sizeX * sizeZ];
+        sampler.sample(minX, minZ, sizeX, sizeZ, 1, OFFSET, SCALE, actual);
+
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                float expected = reference(minX + x, minZ + z, terrainScale, repeat);
+                assertEquals(expected, actual[x + z * sizeX], EPSILON, "at " + (minX + x) + ", " + (minZ + z));
+            }
+        }
+    }
+
+    /**
+     * The per-column interpolation that the height map provider used before the sampler was introduced.
+     */
+    private float reference(int x, int z, int xzScale, boolean repeat) {
+        int mapWidth = heightMap.getWidth();
+        int mapHeight = heightMap.getHeight();
+
+        int mapX0;
+        int mapZ0;
+        int mapX1;
+        int mapZ1;
+        if (repeat) {
+            mapX0 = Math.floorMod(x, mapWidth * xzScale) / xzScale;
+            mapZ0 = Math.floorMod(z, mapHeight * xzScale) / xzScale;
+            mapX1 = Math.floorMod(mapX0 + 1, mapWidth);
+            mapZ1 = Math.floorMod(mapZ0 + 1, mapHeight);
+        } else {
+            mapX0 = Math.max(0, Math.min(x, mapWidth * xzScale - 1)) / xzScale;
+            mapZ0 = Math.max(0, Math.min(z, mapHeight * xzScale - 1)) / xzScale;
+            mapX1 = Math.max(0, Math.min(mapX0 + 1, mapWidth - 1));
+            mapZ1 = Math.max(0, Math.min(mapZ0 + 1, mapHeight - 1));
+        }
+
+        double p00 = heightMap.get(mapX0, mapZ0);
+        double p10 = heightMap.get(mapX1, mapZ0);
+        double p11 = heightMap.get(mapX1, mapZ1);
+        double p01 = heightMap.get(mapX0, mapZ1);
+
+        float relX = Math.floorMod(x, xzScale) / (float) xzScale;
+        float relZ = Math.floorMod(z, xzScale) / (float) xzScale;
+
+        float interpolatedHeight = (float) lerp(relX, lerp(relZ, p00, p01), lerp(relZ, p10, p11));
+        return OFFSET + SCALE * interpolatedHeight;
+    }
+
+    private static double lerp(double t, double a, double b) {
+        double fade = t * t * (3 - 2 * t);
+        return a + fade * (b - a);
+    }
+
+    private static HeightMap randomHeightMap(int width, int height, long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[width * height];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+
+        return new HeightMap() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public float get(int x, int z) {
+                return values[x + z * width];
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.heightmap.HeightMap;
+import org.terasology.core.world.generator.heightmap.HeightMapPyramid;
+import org.terasology.core.world.generator.heightmap.HeightMapSampler;
+import org.terasology.core.world.generator.heightmap.HeightMapSlopes;
+import org.terasology.core.world.generator.heightmap.TiledHeightMap;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HeightMapSlopesTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final float STEP_X = 0.003f;
+    private static final float STEP_Z = 0.004f;
+    /**
+     * The gradient length of the ramp, per texel of level 0
+     */
+    private static final float SLOPE = 0.005f;
+    private static final float EPSILON = 1e-6f;
+
+    private HeightMapPyramid heights;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        TiledHeightMap ramp = new TiledHeightMap(WIDTH, HEIGHT);
+        for (int z = 0; z < HEIGHT; z++) {
+            for (int x = 0; x < WIDTH; x++) {
+                ramp.set(x, z, x * STEP_X + z * STEP_Z);
+            }
+        }
+        heights = HeightMapPyramid.build(ramp);
+    }
+
+    @AfterEach
+    public void teardown() {
+        heights.release();
+    }
+
+    @Test
+    public void testLevelsArePerTexelOfLevelZero() throws IOException {
+        HeightMapPyramid slopes = HeightMapSlopes.precompute(heights);
+        try {
+            // a coarser texel spans more height, which the level scale compensates for
+            for (int level = 0; level < 4; level++) {
+                HeightMap map = slopes.getLevel(level);
+                for (int z = 0; z < map.getHeight(); z++) {
+                    for (int x = 0; x < map.getWidth(); x++) {
+                        assertEquals(SLOPE, map.get(x, z), EPSILON, "level " + level + " at " + x + ", " + z);
+                    }
+                }
+            }
+        } finally {
+            slopes.release();
+        }
+    }
+
+    @Test
+    public void testViewMatchesPrecomputedSlopes() throws IOException {
+        HeightMapPyramid precomputed = HeightMapSlopes.precompute(heights);
+        HeightMapPyramid view = HeightMapSlopes.view(heights);
+        try {
+            for (int level = 0; level < heights.getLevelCount(); level++) {
+                HeightMap expected = precomputed.getLevel(level);
+                HeightMap actual = view.getLevel(level);
+                int[] xs = new int[expected.getWidth()];
+                int[] zs = new int[expected.getHeight()];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = i;
+                }
+                for (int j = 0; j < zs.length; j++) {
+                    zs[j] = j;
+                }
+                float[] read = new float[xs.length * zs.length];
+                actual.read(xs, xs.length, zs, zs.length, read);
+                for (int z = 0; z < expected.getHeight(); z++) {
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        assertEquals(expected.get(x, z), actual.get(x, z), "level " + level);
+                        assertEquals(expected.get(x, z), read[x + z * xs.length], "level " + level);
+                    }
+                }
+            }
+        } finally {
+            view.release();
+            precomputed.release();
+        }
+    }
+
+    @Test
+    public void testSampledSlopeIsPerBlockAtEveryScale() throws IOException {
+        int terrainScale = 4;
+        float heightScale = 300;
+        HeightMapPyramid slopes = HeightMapSlopes.precompute(heights);
+        try {
+            HeightMapSampler sampler = new HeightMapSampler(slopes, terrainScale, false);
+            // a ramp that rises SLOPE * heightScale blocks per texel, which is terrainScale blocks wide
+            float expected = SLOPE * heightScale / terrainScale;
+            for (float scale : new float[]{1, 2, 4}) {
+                float[] values = new float[16 * 16];
+                sampler.sample(40, 40, 16, 16, scale, 0, heightScale / terrainScale, values);
+                for (float value : values) {
+                    assertEquals(expected, value, expected * 1e-4f, "scale " + scale);
+                }
+            }
+        } finally {
+            slopes.release();
+        }
+    }
+}
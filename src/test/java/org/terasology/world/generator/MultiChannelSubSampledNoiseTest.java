@@ -0,0 +1,97 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.MultiChannelSubSampledNoise;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.engine.world.block.BlockAreac;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MultiChannelSubSampledNoiseTest {
+
+    private static final int SAMPLE_RATE = 4;
+    private static final float EPSILON = 1e-5f;
+
+    private final Noise first = new WaveNoise(0.37f, 0.21f);
+    private final Noise second = new WaveNoise(0.05f, 0.43f);
+    private final Vector2fc[] zooms = {new Vector2f(0.5f, 0.25f), new Vector2f(0.1f, 0.1f)};
+    private final MultiChannelSubSampledNoise noise = new MultiChannelSubSampledNoise(new Noise[]{first, second}, zooms, SAMPLE_RATE);
+
+    @Test
+    public void testInterpolatesBetweenLatticePoints() {
+        for (float scale : new float[]{1, 4}) {
+            BlockAreac area = new BlockArea(-13, 6, 21, 30);
+            float[] actualFirst = new float[area.area()];
+            float[] actualSecond = new float[area.area()];
+            noise.noise(area, scale, actualFirst, actualSecond);
+
+            assertMatchesReference(first, zooms[0], area, scale, actualFirst);
+            assertMatchesReference(second, zooms[1], area, scale, actualSecond);
+        }
+    }
+
+    @Test
+    public void testChannelsAreIndependent() {
+        BlockAreac area = new BlockArea(-7, -9, 40, 3);
+        float[] both = new float[area.area()];
+        noise.noise(area, 1, both, new float[area.area()]);
+        float[] single = new float[area.area()];
+        noise.noise(area, 1, single, null);
+
+        assertArrayEquals(both, single);
+    }
+
+    private static void assertMatchesReference(Noise source, Vector2fc zoom, BlockAreac area, float scale, float[] actual) {
+        int index = 0;
+        for (int y = area.minY(); y <= area.maxY(); y++) {
+            for (int x = area.minX(); x <= area.maxX(); x++) {
+                int x0 = Math.floorDiv(x, SAMPLE_RATE) * SAMPLE_RATE;
+                int y0 = Math.floorDiv(y, SAMPLE_RATE) * SAMPLE_RATE;
+                float fx = (x - x0) / (float) SAMPLE_RATE;
+                float fy = (y - y0) / (float) SAMPLE_RATE;
+                float top = lerp(sample(source, zoom, scale, x0, y0), sample(source, zoom, scale, x0 + SAMPLE_RATE, y0), fx);
+                float bottom = lerp(sample(source, zoom, scale, x0, y0 + SAMPLE_RATE),
+                        sample(source, zoom, scale, x0 + SAMPLE_RATE, y0 + SAMPLE_RATE), fx);
+                assertEquals(lerp(top, bottom, fy), actual[index++], EPSILON, "at " + x + ", " + y);
+            }
+        }
+    }
+
+    private static float sample(Noise source, Vector2fc zoom, float scale, int x, int y) {
+        return source.noise(scale * zoom.x() * x, scale * zoom.y() * y);
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + t * (b - a);
+    }
+
+    /**
+     * A smooth function that is cheap and easy to reason about.
+     */
+    private static final class WaveNoise implements Noise {
+        private final float frequencyX;
+        private final float frequencyY;
+
+        WaveNoise(float frequencyX, float frequencyY) {
+            this.frequencyX = frequencyX;
+            this.frequencyY = frequencyY;
+        }
+
+        @Override
+        public float noise(float x, float y) {
+            return (float) (Math.sin(x * frequencyX) * Math.cos(y * frequencyY));
+        }
+
+        @Override
+        public float noise(float x, float y, float z) {
+            return noise(x, y);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.NoiseTileCache;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.engine.world.block.BlockAreac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NoiseTileCacheTest {
+
+    private static final int TILE_AREA = NoiseTileCache.TILE_SIZE * NoiseTileCache.TILE_SIZE;
+
+    /**
+     * Two channels that encode the position and scale of every sample.
+     */
+    private static final NoiseTileCache.TileSource SOURCE = (tile, scale, channels) -> {
+        int index = 0;
+        for (int y = tile.minY(); y <= tile.maxY(); y++) {
+            for (int x = tile.minX(); x <= tile.maxX(); x++) {
+                channels[0][index] = x * scale;
+                channels[1][index] = y * scale;
+                index++;
+            }
+        }
+    };
+
+    @Test
+    public void testCopiesTheRequestedArea() {
+        NoiseTileCache cache = new NoiseTileCache(1 << 20);
+        BlockAreac area = new BlockArea(-45, 13, 70, 40);
+        float[] xs = new float[area.area()];
+        float[] ys = new float[area.area()];
+        cache.fill(NoiseTileCache.newNoiseId(), 2, area, 2, SOURCE, xs, ys);
+
+        int index = 0;
+        for (int y = area.minY(); y <= area.maxY(); y++) {
+            for (int x = area.minX(); x <= area.maxX(); x++) {
+                assertEquals(x * 2f, xs[index]);
+                assertEquals(y * 2f, ys[index]);
+                index++;
+            }
+        }
+    }
+
+    @Test
+    public void testReusesOverlappingTiles() {
+        NoiseTileCache cache = new NoiseTileCache(1 << 20);
+        long noiseId = NoiseTileCache.newNoiseId();
+        BlockAreac first = new BlockArea(0, 0, 40, 40);
+        BlockAreac second = new BlockArea(10, 10, 50, 50);
+        float[] expected = new float[second.area()];
+        cache.fill(noiseId, 2, first, 1, SOURCE, new float[first.area()], null);
+        assertEquals(4, cache.getMisses());
+
+        float[] actual = new float[second.area()];
+        cache.fill(noiseId, 2, second, 1, SOURCE, actual, null);
+        assertEquals(4, cache.getHits());
+        assertEquals(4, cache.getMisses());
+
+        new NoiseTileCache(1 << 20).fill(noiseId, 2, second, 1, SOURCE, expected, null);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testKeepsToTheMemoryLimit() {
+        long maxBytes = 3L * 2 * TILE_AREA * Float.BYTES;
+        NoiseTileCache cache = new NoiseTileCache(maxBytes);
+        BlockAreac area = new BlockArea(0, 0, 10 * NoiseTileCache.TILE_SIZE - 1, 3 * NoiseTileCache.TILE_SIZE - 1);
+        cache.fill(NoiseTileCache.newNoiseId(), 2, area, 1, SOURCE, new float[area.area()], new float[area.area()]);
+
+        assertTrue(cache.getUsedBytes() <= maxBytes);
+        assertTrue(cache.getUsedBytes() > 0);
+    }
+
+    @Test
+    public void testReplacesTilesWithLargerOnesWhenFull() {
+        int tileSize = NoiseTileCache.TILE_SIZE;
+        long maxBytes = 4L * TILE_AREA * Float.BYTES;
+        NoiseTileCache cache = new NoiseTileCache(maxBytes);
+        NoiseTileCache.TileSource single = (tile, scale, channels) -> SOURCE.compute(tile, scale, new float[][]{channels[0], new float[TILE_AREA]});
+
+        // fills the cache up to its limit with single channel tiles
+        BlockAreac singles = new BlockArea(0, 0, 16 * tileSize - 1, tileSize - 1);
+        cache.fill(NoiseTileCache.newNoiseId(), 1, singles, 1, single, new float[singles.area()]);
+        assertEquals(maxBytes, cache.getUsedBytes());
+
+        long noiseId = NoiseTileCache.newNoiseId();
+        BlockAreac tile = new BlockArea(0, tileSize, tileSize - 1, 2 * tileSize - 1);
+        cache.fill(noiseId, 2, tile, 1, SOURCE, new float[tile.area()], null);
+        long misses = cache.getMisses();
+        cache.fill(noiseId, 2, tile, 1, SOURCE, new float[tile.area()], null);
+        assertEquals(misses, cache.getMisses(), "the larger tile was not stored");
+        assertTrue(cache.getUsedBytes() <= maxBytes);
+    }
+
+    @Test
+    public void testConcurrentFill() throws InterruptedException, ExecutionException {
+        // small enough that the threads keep replacing each other's tiles
+        NoiseTileCache cache = new NoiseTileCache(16L * 2 * TILE_AREA * Float.BYTES);
+        long[] noiseIds = {NoiseTileCache.newNoiseId(), NoiseTileCache.newNoiseId()};
+        int threads = 8;
+        int fillsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                results.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    long tiles = 0;
+                    for (int i = 0; i < fillsPerThread; i++) {
+                        int minX = random.nextInt(200) - 100;
+                        int minY = random.nextInt(200) - 100;
+                        BlockAreac area = new BlockArea(minX, minY, minX + random.nextInt(70), minY + random.nextInt(70));
+                        float scale = 1 + random.nextInt(2);
+                        float[] xs = new float[area.area()];
+                        float[] ys = new float[area.area()];
+                        cache.fill(noiseIds[random.nextInt(2)], 2, area, scale, SOURCE, xs, ys);
+                        tiles += tileCount(area);
+
+                        int index = 0;
+                        for (int y = area.minY(); y <= area.maxY(); y++) {
+                            for (int x = area.minX(); x <= area.maxX(); x++) {
+                                assertEquals(x * scale, xs[index]);
+                                assertEquals(y * scale, ys[index]);
+                                index++;
+                            }
+                        }
+                    }
+                    return tiles;
+                }));
+            }
+            long tiles = 0;
+            for (Future<Long> result : results) {
+                tiles += result.get();
+            }
+            assertEquals(tiles, cache.getHits() + cache.getMisses());
+            assertTrue(cache.getHits() > 0);
+            assertTrue(cache.getUsedBytes() <= cache.getMaxBytes(), "used " + cache.getUsedBytes());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long tileCount(BlockAreac area) {
+        int tileSize = NoiseTileCache.TILE_SIZE;
+        long columns = Math.floorDiv(area.maxX(), tileSize) - Math.floorDiv(area.minX(), tileSize) + 1;
+        long rows = Math.floorDiv(area.maxY(), tileSize) - Math.floorDiv(area.minY(), tileSize) + 1;
+        return columns * rows;
+    }
+}
@@ -0,0 +1,203 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.core.world.generator.facetProviders.QualityBlend;
+import org.terasology.core.world.generator.facetProviders.QualityBudget;
+import org.terasology.core.world.generator.facetProviders.QualityTier;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.engine.world.block.BlockAreac;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QualityBudgetTest {
+
+    private static final float TARGET_MILLIS = 10;
+    private static final long SLOW_CHUNK = 50_000_000;
+    private static final long FAST_CHUNK = 1_000_000;
+    private static final int REGION_BLOCKS = QualityBudget.CELL_SIZE * QualityBudget.REGION_CELLS;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testTierOctavesAndSampleRates() {
+        assertEquals(8, QualityTier.HIGH.octaves(8));
+        assertEquals(6, QualityTier.MEDIUM.octaves(8));
+        assertEquals(5, QualityTier.LOW.octaves(8));
+        assertEquals(1, QualityTier.LOW.octaves(2));
+        assertEquals(4, QualityTier.MEDIUM.sampleRate(4));
+        assertEquals(8, QualityTier.LOW.sampleRate(4));
+    }
+
+    @Test
+    public void testTierStepsStopAtTheEnds() {
+        assertEquals(QualityTier.MEDIUM, QualityTier.HIGH.lower());
+        assertEquals(QualityTier.LOW, QualityTier.MEDIUM.lower());
+        assertEquals(QualityTier.LOW, QualityTier.LOW.lower());
+        assertEquals(QualityTier.MEDIUM, QualityTier.LOW.higher());
+        assertEquals(QualityTier.HIGH, QualityTier.HIGH.higher());
+    }
+
+    @Test
+    public void testLowersAndRaisesTierWithChunkTimes() {
+        QualityBudget budget = new QualityBudget();
+        budget.setTargetMillis(TARGET_MILLIS);
+
+        record(budget, SLOW_CHUNK, 31);
+        assertEquals(QualityTier.HIGH, budget.getCurrentTier(), "the tier changes only after enough chunks");
+        record(budget, SLOW_CHUNK, 1);
+        assertEquals(QualityTier.MEDIUM, budget.getCurrentTier());
+        record(budget, SLOW_CHUNK, 32);
+        assertEquals(QualityTier.LOW, budget.getCurrentTier());
+        record(budget, SLOW_CHUNK, 32);
+        assertEquals(QualityTier.LOW, budget.getCurrentTier());
+
+        record(budget, FAST_CHUNK, 32);
+        assertEquals(QualityTier.MEDIUM, budget.getCurrentTier());
+        record(budget, FAST_CHUNK, 32);
+        assertEquals(QualityTier.HIGH, budget.getCurrentTier());
+    }
+
+    @Test
+    public void testKeepsFullQualityWithoutTarget() {
+        QualityBudget budget = new QualityBudget();
+        record(budget, SLOW_CHUNK, 100);
+        assertEquals(QualityTier.HIGH, budget.getCurrentTier());
+
+        budget.setTargetMillis(TARGET_MILLIS);
+        record(budget, SLOW_CHUNK, 32);
+        budget.setTargetMillis(0);
+        assertEquals(QualityTier.HIGH, budget.getCurrentTier());
+
+        QualityBudget fullQuality = QualityBudget.fullQuality();
+        assertEquals(QualityTier.HIGH, fullQuality.tierAt(0, 0));
+        assertThrows(IllegalStateException.class, () -> fullQuality.setTargetMillis(TARGET_MILLIS));
+    }
+
+    @Test
+    public void testRecordsCellsOnlyWithTarget() {
+        Path world = directory.resolve("world");
+        QualityBudget budget = new QualityBudget();
+        budget.setDirectory(world);
+        assertEquals(QualityTier.HIGH, budget.tierAt(0, 0));
+        assertEquals(0, budget.getLoadedRegionCount());
+        assertFalse(Files.exists(world), "nothing is stored without a target");
+
+        budget.setTargetMillis(TARGET_MILLIS);
+        record(budget, SLOW_CHUNK, 32);
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(0, 0));
+        budget.setTargetMillis(0);
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(0, 0), "recorded cells keep their tier");
+        assertEquals(QualityTier.HIGH, budget.tierAt(QualityBudget.CELL_SIZE, 0));
+
+        budget.setTargetMillis(TARGET_MILLIS);
+        record(budget, SLOW_CHUNK, 32);
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(QualityBudget.CELL_SIZE, 0),
+                "cells that were generated without a target were not recorded");
+    }
+
+    @Test
+    public void testCellsKeepTheirFirstTier() {
+        QualityBudget budget = new QualityBudget();
+        budget.setTargetMillis(TARGET_MILLIS);
+        assertEquals(QualityTier.HIGH, budget.tierAt(0, 0));
+
+        record(budget, SLOW_CHUNK, 32);
+        assertEquals(QualityTier.HIGH, budget.tierAt(0, 0));
+        assertEquals(QualityTier.HIGH, budget.tierAt(QualityBudget.CELL_SIZE - 32, 100), "same cell");
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(QualityBudget.CELL_SIZE, 0), "next cell");
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(-100, -5000), "negative cell");
+        QualityBlend preview = budget.blendFor(new BlockArea(REGION_BLOCKS * 3, 0, REGION_BLOCKS * 3 + 31, 31), 2);
+        assertEquals(Collections.singletonList(QualityTier.HIGH), preview.getTiers(), "previews are not budgeted");
+    }
+
+    @Test
+    public void testStoredTiersSurviveRestart() {
+        QualityBudget budget = new QualityBudget();
+        budget.setDirectory(directory);
+        budget.setTargetMillis(TARGET_MILLIS);
+        record(budget, SLOW_CHUNK, 32);
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(0, 0));
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(-REGION_BLOCKS, 7 * REGION_BLOCKS));
+
+        QualityBudget restarted = new QualityBudget();
+        restarted.setDirectory(directory);
+        restarted.setTargetMillis(TARGET_MILLIS);
+        assertEquals(QualityTier.MEDIUM, restarted.tierAt(0, 0));
+        assertEquals(QualityTier.MEDIUM, restarted.tierAt(-REGION_BLOCKS, 7 * REGION_BLOCKS));
+        assertEquals(QualityTier.HIGH, restarted.tierAt(QualityBudget.CELL_SIZE, 0));
+    }
+
+    @Test
+    public void testKeepsOnlyRecentRegionsInMemory() {
+        QualityBudget budget = new QualityBudget();
+        budget.setDirectory(directory);
+        budget.setTargetMillis(TARGET_MILLIS);
+        record(budget, SLOW_CHUNK, 32);
+        budget.tierAt(0, 0);
+        record(budget, SLOW_CHUNK, 32);
+
+        for (int i = 1; i <= 2 * QualityBudget.MAX_LOADED_REGIONS; i++) {
+            budget.tierAt(i * REGION_BLOCKS, 0);
+            assertTrue(budget.getLoadedRegionCount() <= QualityBudget.MAX_LOADED_REGIONS);
+        }
+        // read back from the directory after the region was dropped from memory
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(0, 0));
+        assertEquals(QualityTier.LOW, budget.tierAt(REGION_BLOCKS, 0));
+    }
+
+    @Test
+    public void testBlendsTiersAcrossCellEdges() {
+        QualityBudget budget = new QualityBudget();
+        budget.setTargetMillis(TARGET_MILLIS);
+        assertEquals(QualityTier.HIGH, budget.tierAt(0, 100));
+        record(budget, SLOW_CHUNK, 32);
+
+        // a row from the middle of a HIGH cell to the middle of the next cell, away from the other edges
+        BlockAreac row = new BlockArea(QualityBudget.CELL_SIZE / 2, 100, QualityBudget.CELL_SIZE * 3 / 2 - 1, 100);
+        float[] values = budget.blendFor(row, 1).blend(tier -> ordinals(tier, row));
+        assertEquals(QualityTier.MEDIUM, budget.tierAt(QualityBudget.CELL_SIZE, 100));
+        assertEquals(0, values[0]);
+        assertEquals(1, values[values.length - 1]);
+        for (int i = 1; i < values.length; i++) {
+            float step = values[i] - values[i - 1];
+            assertTrue(step >= 0 && step <= 1f / QualityBudget.BLEND_MARGIN + 1e-6f, "no jump at " + (row.minX() + i));
+        }
+
+        // a region whose border reaches over the edge gets the same values there
+        BlockAreac border = new BlockArea(QualityBudget.CELL_SIZE - 40, 90, QualityBudget.CELL_SIZE + 10, 110);
+        QualityBlend blend = budget.blendFor(border, 1);
+        assertEquals(Arrays.asList(QualityTier.HIGH, QualityTier.MEDIUM), blend.getTiers());
+        float[] borderValues = blend.blend(tier -> ordinals(tier, border));
+        for (int x = border.minX(); x <= border.maxX(); x++) {
+            assertEquals(values[x - row.minX()], borderValues[x - border.minX() + 10 * border.getSizeX()], 1e-6f);
+        }
+    }
+
+    /**
+     * @return the ordinal of the tier for every block of the area, as a stand-in for noise that differs by tier
+     */
+    private static float[] ordinals(QualityTier tier, BlockAreac area) {
+        float[] values = new float[area.area()];
+        Arrays.fill(values, tier.ordinal());
+        return values;
+    }
+
+    private static void record(QualityBudget budget, long nanos, int chunks) {
+        for (int i = 0; i < chunks; i++) {
+            budget.recordChunk(nanos);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.ScaleAdaptiveBrownianNoise;
+import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.SimplexNoise;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.utilities.procedural.RowBrownianNoise;
+import org.terasology.utilities.procedural.RowNoise;
+import org.terasology.utilities.procedural.RowSimplexNoise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the scalar engine noise with the row noise. Skipped unless the system property
+ * {@code terasology.benchmark} is set, e.g. {@code gradlew test --tests *RowNoiseBenchmark -Dterasology.benchmark=true},
+ * or run {@link #main(String[])} directly.
+ * <p>
+ * Every case runs a few warmup rounds and then reports the median time per sample over the measured rounds.
+ */
+public class RowNoiseBenchmark {
+
+    private static final int ROW_LENGTH = 66;
+    private static final int ROWS = 2000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURED_ROUNDS = 15;
+    private static final long SEED = 42;
+
+    /**
+     * Keeps the results alive, so that the JIT cannot drop the computation
+     */
+    private static volatile float sink;
+
+    public static void main(String[] args) {
+        new RowNoiseBenchmark().run();
+    }
+
+    @Test
+    public void benchmark() {
+        assumeTrue(Boolean.getBoolean("terasology.benchmark"), "benchmarks are only run on request");
+        run();
+    }
+
+    private void run() {
+        float[][] rows = lattice();
+
+        report("simplex, scalar", measure(rows, scalar(new SimplexNoise(SEED))));
+        report("simplex, row", measure(rows, row(new RowSimplexNoise(SEED))));
+        report("8 octaves, scalar", measure(rows, scalar(new BrownianNoise(new SimplexNoise(SEED), 8))));
+        report("8 octaves, row", measure(rows, row(new RowBrownianNoise(new RowSimplexNoise(SEED), 8))));
+
+        // the whole path of a provider: sub-sampling, octave selection and interpolation, without reusing cached tiles
+        report("64x64 area, scalar", measureAreas(new SimplexNoise(SEED)));
+        report("64x64 area, row", measureAreas(new RowSimplexNoise(SEED)));
+    }
+
+    /**
+     * @return rows of lattice coordinates like the ones the sub-sampled noise evaluates, with the y coordinate last
+     */
+    private static float[][] lattice() {
+        Random random = new Random(SEED);
+        float[][] rows = new float[ROWS][ROW_LENGTH + 1];
+        for (float[] row : rows) {
+            float x0 = (random.nextFloat() - 0.5f) * 100;
+            for (int i = 0; i < ROW_LENGTH; i++) {
+                row[i] = x0 + i * 0.0008f * 4;
+            }
+            row[ROW_LENGTH] = (random.nextFloat() - 0.5f) * 100;
+        }
+        return rows;
+    }
+
+    private static RowEvaluation scalar(Noise noise) {
+        return (xs, y, target) -> {
+            for (int i = 0; i < ROW_LENGTH; i++) {
+                target[i] = noise.noise(xs[i], y);
+            }
+        };
+    }
+
+    private static RowEvaluation row(RowNoise noise) {
+        return (xs, y, target) -> noise.noiseRow(xs, y, ROW_LENGTH, target);
+    }
+
+    /**
+     * @return the median time per sample in nanoseconds
+     */
+    private static double measure(float[][] rows, RowEvaluation evaluation) {
+        float[] target = new float[ROW_LENGTH];
+        double[] times = new double[MEASURED_ROUNDS];
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            float sum = 0;
+            for (float[] row : rows) {
+                evaluation.evaluate(row, row[ROW_LENGTH], target);
+                sum += target[0];
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = sum;
+            if (round >= WARMUP_ROUNDS) {
+                times[round - WARMUP_ROUNDS] = (double) elapsed / ((long) ROWS * ROW_LENGTH);
+            }
+        }
+        return median(times);
+    }
+
+    private static double measureAreas(Noise base) {
+        ScaleAdaptiveBrownianNoise noise = new ScaleAdaptiveBrownianNoise(base, 8, new Vector2f(0.0008f, 0.0008f), 4);
+        int areas = 50;
+        double[] times = new double[MEASURED_ROUNDS];
+        int offset = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            float sum = 0;
+            for (int i = 0; i < areas; i++) {
+                // never seen before, so that the tile cache cannot answer
+                offset += 1000;
+                sum += noise.noise(new BlockArea(offset, -offset, offset + 63, -offset + 63), 1)[0];
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = sum;
+            if (round >= WARMUP_ROUNDS) {
+                times[round - WARMUP_ROUNDS] = (double) elapsed / (areas * 64 * 64);
+            }
+        }
+        return median(times);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void report(String name, double nanosPerSample) {
+        System.out.printf("%-20s %8.1f ns/sample%n", name, nanosPerSample);
+    }
+
+    private interface RowEvaluation {
+        void evaluate(float[] xs, float y, float[] target);
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.SimplexNoise;
+import org.terasology.utilities.procedural.RowBrownianNoise;
+import org.terasology.utilities.procedural.RowNoise;
+import org.terasology.utilities.procedural.RowSimplexNoise;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RowSimplexNoiseTest {
+
+    private static final int ROW_LENGTH = 67;
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void testMatchesSimplexNoise() {
+        for (long seed : new long[]{-3, 0, 123456789L}) {
+            assertRowsMatch(new SimplexNoise(seed), new RowSimplexNoise(seed));
+        }
+    }
+
+    @Test
+    public void testMatchesBrownianNoise() {
+        for (int octaves : new int[]{1, 3, 8}) {
+            assertRowsMatch(new BrownianNoise(new SimplexNoise(42), octaves), new RowBrownianNoise(new RowSimplexNoise(42), octaves));
+        }
+    }
+
+    private static void assertRowsMatch(Noise expected, RowNoise actual) {
+        Random random = new Random(7);
+        float[] xs = new float[ROW_LENGTH];
+        float[] values = new float[ROW_LENGTH];
+        for (int row = 0; row < 50; row++) {
+            float y = (random.nextFloat() - 0.5f) * 1000;
+            for (int i = 0; i < ROW_LENGTH; i++) {
+                xs[i] = (random.nextFloat() - 0.5f) * 1000;
+            }
+            actual.noiseRow(xs, y, ROW_LENGTH, values);
+            for (int i = 0; i < ROW_LENGTH; i++) {
+                assertEquals(expected.noise(xs[i], y), values[i], EPSILON, "at " + xs[i] + ", " + y);
+                assertEquals(values[i], actual.noise(xs[i], y), EPSILON, "at " + xs[i] + ", " + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.ScaleAdaptiveBrownianNoise;
+import org.terasology.engine.world.block.BlockArea;
+import org.terasology.utilities.procedural.RowSimplexNoise;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScaleAdaptiveBrownianNoiseTest {
+
+    private static final int OCTAVES = 8;
+    private static final float BOUND = 0.05f;
+
+    private final ScaleAdaptiveBrownianNoise noise =
+            new ScaleAdaptiveBrownianNoise(new RowSimplexNoise(77), OCTAVES, new Vector2f(0.0008f, 0.0008f), 4);
+
+    @Test
+    public void testUsesFewerOctavesAtCoarseScales() {
+        assertEquals(OCTAVES, noise.octavesFor(1));
+        assertEquals(OCTAVES, noise.octavesFor(0.5f));
+        int previous = OCTAVES;
+        for (float scale = 2; scale <= 1024; scale *= 2) {
+            int octaves = noise.octavesFor(scale);
+            assertTrue(octaves >= 1 && octaves <= previous, "at scale " + scale);
+            previous = octaves;
+        }
+        assertTrue(previous < OCTAVES);
+    }
+
+    @Test
+    public void testBoundHoldsWhereItIsReported() {
+        int bounded = 0;
+        for (int tileY = -10; tileY < 10; tileY++) {
+            for (int tileX = -10; tileX < 10; tileX++) {
+                BlockArea area = new BlockArea(tileX * 32 + 3, tileY * 32 - 5, tileX * 32 + 30, tileY * 32 + 30);
+                if (noise.isBoundedAwayFromZero(area, 1, BOUND, OCTAVES)) {
+                    bounded++;
+                    for (float value : noise.noise(area, 1)) {
+                        assertTrue(Math.abs(value) >= BOUND, "in tile " + tileX + ", " + tileY);
+                    }
+                }
+            }
+        }
+        assertTrue(bounded > 0);
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.facetProviders.SeedScout;
+import org.terasology.core.world.generator.facetProviders.SimplexBaseSurfaceProvider;
+import org.terasology.engine.utilities.procedural.BrownianNoise;
+import org.terasology.engine.utilities.procedural.SimplexNoise;
+import org.terasology.engine.utilities.procedural.SubSampledNoise;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SeedScoutTest {
+
+    private static final long[] WORLD_SEEDS = {0, 1, 2, -7, 42, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+
+    @Test
+    public void testMatchesSerialSearchWhenManyCandidatesAreRejected() {
+        // accepts about one candidate in 200, so the search runs through many batches
+        AtomicInteger tested = new AtomicInteger();
+        LongPredicate rare = candidate -> {
+            tested.incrementAndGet();
+            return Math.floorMod(Long.rotateLeft(candidate * 0x9E3779B97F4A7C15L, 17), 200) == 0;
+        };
+        for (int batchSize : new int[]{1, 3, 8, 64}) {
+            SeedScout scout = new SeedScout(rare, candidate -> candidate * 3, batchSize);
+            for (long worldSeed : WORLD_SEEDS) {
+                long first = (worldSeed % 2 == 0) ? worldSeed - 1 : worldSeed;
+                tested.set(0);
+                long expected = serialSearch(first, rare);
+                int serialTests = tested.get();
+                assertEquals(expected, scout.find(first), "world seed " + worldSeed + " in batches of " + batchSize);
+                if (batchSize == 1) {
+                    assertTrue(serialTests > 10, "world seed " + worldSeed + " needs only " + serialTests + " candidates");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSurfaceSeedMatchesSerialSearch() {
+        Vector2f zoom = new Vector2f(0.0002f, 0.0002f);
+        LongPredicate goodSpawn = candidate -> {
+            BrownianNoise source = new BrownianNoise(new SimplexNoise(candidate), 8);
+            float spawnHeight = new SubSampledNoise(source, zoom, 4).noise(0, 0);
+            return spawnHeight >= 0 && spawnHeight <= 0.2;
+        };
+        for (long worldSeed : WORLD_SEEDS) {
+            SimplexBaseSurfaceProvider provider = new SimplexBaseSurfaceProvider();
+            provider.setSeed(worldSeed);
+            SimplexBaseSurfaceProvider.Configuration config = (SimplexBaseSurfaceProvider.Configuration) provider.getConfiguration();
+            long first = (worldSeed % 2 == 0) ? worldSeed - 1 : worldSeed;
+            assertEquals(Long.toString(serialSearch(first, goodSpawn)), config.surfaceSeed, "world seed " + worldSeed);
+        }
+    }
+
+    @Test
+    public void testInvalidSurfaceSeedKeepsOtherSettings() {
+        SimplexBaseSurfaceProvider provider = new SimplexBaseSurfaceProvider();
+        provider.setSeed(42);
+        String scouted = ((SimplexBaseSurfaceProvider.Configuration) provider.getConfiguration()).surfaceSeed;
+
+        SimplexBaseSurfaceProvider.Configuration edited = new SimplexBaseSurfaceProvider.Configuration();
+        edited.worldSeed = 42;
+        edited.surfaceSeed = "not a number";
+        edited.rowNoise = true;
+        provider.setConfiguration(edited);
+
+        SimplexBaseSurfaceProvider.Configuration effective = (SimplexBaseSurfaceProvider.Configuration) provider.getConfiguration();
+        assertEquals(scouted, effective.surfaceSeed);
+        assertTrue(effective.rowNoise);
+        assertEquals("not a number", edited.surfaceSeed, "the component of the caller is left unchanged");
+    }
+
+    /**
+     * The search as SimplexBaseSurfaceProvider ran it before it was parallelized
+     */
+    private static long serialSearch(long first, LongPredicate acceptance) {
+        long currentSeed = first;
+        long surfaceSeed = currentSeed;
+        boolean accepted = false;
+        while (!accepted) {
+            accepted = acceptance.test(currentSeed);
+            surfaceSeed = currentSeed;
+            currentSeed *= 3;
+        }
+        return surfaceSeed;
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.terasology.world.generator;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.generator.heightmap.HeightMapPyramid;
+import org.terasology.core.world.generator.heightmap.TiledHeightMap;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TiledHeightMapTest {
+
+    @Test
+    public void testValuesAcrossTiles() throws IOException {
+        int width = TiledHeightMap.TILE_SIZE * 2 + 5;
+        int height = TiledHeightMap.TILE_SIZE + 3;
+        TiledHeightMap map = new TiledHeightMap(width, height);
+        try {
+            for (int z = 0; z < height; z++) {
+                for (int x = 0; x < width; x++) {
+                    map.set(x, z, x * 1000 + z);
+                }
+            }
+            for (int z = 0; z < height; z++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(x * 1000 + z, map.get(x, z));
+                }
+            }
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void testCloseDropsMappings() throws IOException {
+        TiledHeightMap map = new TiledHeightMap(10, 10);
+        map.close();
+        map.close();
+        assertThrows(RuntimeException.class, () -> map.get(0, 0));
+    }
+
+    @Test
+    public void testPyramidClosesLevelsOnLastRelease() throws IOException {
+        TiledHeightMap base = new TiledHeightMap(8, 8);
+        HeightMapPyramid pyramid = HeightMapPyramid.build(base);
+
+        assertTrue(pyramid.retain());
+        pyramid.release();
+        assertEquals(0, base.get(0, 0));
+
+        pyramid.release();
+        assertFalse(pyramid.retain());
+        assertThrows(RuntimeException.class, () -> base.get(0, 0));
+    }
+}